@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.benchmarks;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * HDR histogram logs shaped like the ones of Rainfall: one interval per second,
+ * of response times in nanoseconds following a log-normal distribution
+ * around {@link #MEDIAN_NANOS}, with rare outliers of up to a second.
+ * <p>
+ * The logs are generated from a seed, so that the runs of a benchmark
+ * process the same bytes.
+ */
+public class HlogFixtures {
+
+  public static final long MEDIAN_NANOS = 200_000;
+
+  private static final long START_TIME_MILLIS = 1546881861935L;
+  private static final long INTERVAL_MILLIS = 1000;
+  private static final double SIGMA = 0.5;
+  private static final double OUTLIER_PROBABILITY = 0.001;
+  private static final long MAX_OUTLIER_NANOS = 1_000_000_000;
+
+  /**
+   * @param intervals         number of interval histograms in the log.
+   * @param valuesPerInterval number of response times recorded in each of them.
+   * @param seed              of the response times.
+   */
+  public static byte[] hlog(int intervals, int valuesPerInterval, long seed) {
+    Random random = new Random(seed);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (PrintStream ps = new PrintStream(out, false, US_ASCII.name())) {
+      HistogramLogWriter writer = new HistogramLogWriter(ps);
+      writer.outputLogFormatVersion();
+      writer.setBaseTime(START_TIME_MILLIS);
+      writer.outputBaseTime(START_TIME_MILLIS);
+      writer.outputLegend();
+      Histogram histogram = new Histogram(3);
+      for (int i = 0; i < intervals; i++) {
+        histogram.reset();
+        for (int j = 0; j < valuesPerInterval; j++) {
+          histogram.recordValue(responseTime(random));
+        }
+        long start = START_TIME_MILLIS + i * INTERVAL_MILLIS;
+        histogram.setStartTimeStamp(start);
+        histogram.setEndTimeStamp(start + INTERVAL_MILLIS);
+        writer.outputIntervalHistogram(histogram);
+      }
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * The logs of several clients of a run, over the same intervals.
+   */
+  public static List<byte[]> hlogs(int clients, int intervals, int valuesPerInterval) {
+    return IntStream.range(0, clients)
+        .mapToObj(client -> hlog(intervals, valuesPerInterval, client))
+        .collect(Collectors.toList());
+  }
+
+  private static long responseTime(Random random) {
+    if (random.nextDouble() < OUTLIER_PROBABILITY) {
+      return 1 + (long)(random.nextDouble() * MAX_OUTLIER_NANOS);
+    }
+    return Math.max(1, (long)(MEDIAN_NANOS * Math.exp(SIGMA * random.nextGaussian())));
+  }
+}
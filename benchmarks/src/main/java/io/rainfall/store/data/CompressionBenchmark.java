@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.data;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static io.rainfall.store.benchmarks.HlogFixtures.hlog;
+import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+
+/**
+ * Compressing and decompressing an HDR histogram log in every format.
+ * The compression reports the sizes of the log and of its payload as secondary results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+  @Param({ "RAW", "ZIP", "LZ4", "DEFLATE", "HLOG", "CHUNKED" })
+  public CompressionFormat format;
+
+  @Param({ "1800" })
+  public int intervals;
+
+  @Param({ "1000" })
+  public int valuesPerInterval;
+
+  private CompressionService compressionService;
+  private byte[] log;
+  private Payload payload;
+
+  @Setup
+  public void setUp() throws IOException {
+    compressionService = compressionService(format);
+    log = hlog(intervals, valuesPerInterval, 0);
+    payload = compressionService.compress(log);
+  }
+
+  @Benchmark
+  public Payload compress(Sizes sizes) throws IOException {
+    Payload compressed = compressionService.compress(log);
+    sizes.rawBytes = log.length;
+    sizes.compressedBytes = compressed.dataLength();
+    return compressed;
+  }
+
+  @Benchmark
+  public byte[] decompress() throws IOException {
+    return compressionService.decompress(payload);
+  }
+
+  /**
+   * The sizes of the last compression, the same at every invocation.
+   */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Sizes {
+
+    public long rawBytes;
+    public long compressedBytes;
+  }
+}
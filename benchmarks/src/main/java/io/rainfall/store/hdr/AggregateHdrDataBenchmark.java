@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static io.rainfall.store.benchmarks.HlogFixtures.hlogs;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Aggregating the output logs of the clients of a run, as for the run reports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregateHdrDataBenchmark {
+
+  @Param({ "1", "16", "128" })
+  public int clients;
+
+  @Param({ "300" })
+  public int intervals;
+
+  @Param({ "1000" })
+  public int valuesPerInterval;
+
+  private final HistogramService histogramService = new HistogramService();
+
+  private List<Supplier<InputStream>> logs;
+
+  @Setup
+  public void setUp() {
+    logs = hlogs(clients, intervals, valuesPerInterval)
+        .stream()
+        .<Supplier<InputStream>>map(log -> () -> new ByteArrayInputStream(log))
+        .collect(toList());
+  }
+
+  @TearDown
+  public void tearDown() {
+    histogramService.shutdown();
+  }
+
+  @Benchmark
+  public HdrData aggregateHdrData() {
+    return histogramService.aggregateHdrData(logs);
+  }
+}
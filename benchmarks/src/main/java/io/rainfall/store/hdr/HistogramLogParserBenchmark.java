@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.HdrHistogram.HistogramLogReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import static io.rainfall.store.benchmarks.HlogFixtures.hlog;
+
+/**
+ * Reading an HDR histogram log with {@link HistogramLogReader}
+ * and with {@link HistogramLogParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistogramLogParserBenchmark {
+
+  @Param({ "60", "1800" })
+  public int intervals;
+
+  @Param({ "10000" })
+  public int valuesPerInterval;
+
+  private byte[] log;
+
+  @Setup
+  public void setUp() {
+    log = hlog(intervals, valuesPerInterval, 0);
+  }
+
+  @Benchmark
+  public void logReader(Blackhole blackhole) {
+    HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(log));
+    while (reader.hasNext()) {
+      blackhole.consume(reader.nextIntervalHistogram());
+    }
+  }
+
+  @Benchmark
+  public void logParser(Blackhole blackhole) {
+    HistogramLogParser parser = new HistogramLogParser(new ByteArrayInputStream(log));
+    while (parser.hasNext()) {
+      blackhole.consume(parser.next());
+    }
+  }
+}
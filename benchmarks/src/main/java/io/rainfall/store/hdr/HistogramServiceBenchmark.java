@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.HdrHistogram.Histogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static io.rainfall.store.benchmarks.HlogFixtures.hlog;
+import static io.rainfall.store.hdr.HistogramService.DEFAULT_MAX_DATA_POINTS;
+
+/**
+ * Reading the HDR data of an output log, reducing its interval histograms
+ * to {@link HistogramService#DEFAULT_MAX_DATA_POINTS}, and comparing the
+ * percentiles of two logs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistogramServiceBenchmark {
+
+  @Param({ "60", "1800" })
+  public int intervals;
+
+  @Param({ "10000" })
+  public int valuesPerInterval;
+
+  private final HistogramService histogramService = new HistogramService();
+
+  private byte[] log;
+  private List<Histogram> histograms;
+  private HdrData hdrData;
+  private HdrData otherHdrData;
+
+  @Setup
+  public void setUp() {
+    log = hlog(intervals, valuesPerInterval, 0);
+    histograms = new ArrayList<>();
+    HistogramService.intervalHistograms(new ByteArrayInputStream(log))
+        .forEachRemaining(histograms::add);
+    hdrData = histogramService.readHdrData(() -> new ByteArrayInputStream(log));
+    byte[] otherLog = hlog(intervals, valuesPerInterval, 1);
+    otherHdrData = histogramService.readHdrData(() -> new ByteArrayInputStream(otherLog));
+  }
+
+  @TearDown
+  public void tearDown() {
+    histogramService.shutdown();
+  }
+
+  @Benchmark
+  public HdrData readHdrData() {
+    return histogramService.readHdrData(() -> new ByteArrayInputStream(log));
+  }
+
+  @Benchmark
+  public void compactTo(Blackhole blackhole) {
+    try (Stream<Histogram> compacted = HistogramService.compactTo(
+        histograms.stream(), DEFAULT_MAX_DATA_POINTS, histograms::size)) {
+      compacted.forEach(blackhole::consume);
+    }
+  }
+
+  @Benchmark
+  public Double comparePercentiles() {
+    return histogramService.comparePercentiles(hdrData, otherHdrData);
+  }
+}
@@ -18,17 +18,20 @@ package io.rainfall.store.client;
 
 import io.rainfall.store.core.ChangeReport;
 import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
 import io.rainfall.store.core.OperationOutput;
 import io.rainfall.store.core.StatsLog;
 import io.rainfall.store.core.TestRun;
-import io.rainfall.store.data.CompressionService;
+import io.rainfall.store.data.Compressor;
 import io.rainfall.store.data.Payload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -42,11 +45,11 @@ public class DefaultStoreClientService implements StoreClientService {
   private static final Set<String> outputFileExtensions = OperationOutput.allFormats();
 
   private final StoreClient writer;
-  private final CompressionService compressionService;
+  private final Compressor compressor;
 
-  DefaultStoreClientService(StoreClient writer, CompressionService compressionService) {
+  DefaultStoreClientService(StoreClient writer, Compressor compressor) {
     this.writer = writer;
-    this.compressionService = compressionService;
+    this.compressor = compressor;
   }
 
   @Override
@@ -104,9 +107,13 @@ public class DefaultStoreClientService implements StoreClientService {
           .symbolicName(clientName)
           .details(String.join("\n", details))
           .build();
-      long jobId = writer.addClientJob(runId, clientJob);
-      LOGGER.info("Client job created: ID={}, job={}, run ID = {}.", new Object[] { jobId, clientJob, runId });
-      uploadOutputs(jobId, outputPath);
+      ClientJobBatch batch = ClientJobBatch.builder()
+          .job(clientJob)
+          .outputs(readOutputs(runId, outputPath))
+          .build();
+      long jobId = writer.addClientJobBatch(runId, batch);
+      LOGGER.info("Client job created with its outputs: ID={}, job={}, run ID = {}.",
+          new Object[] { jobId, clientJob, runId });
       return jobId;
     } catch (Exception e) {
       LOGGER.error("Failed to add client job to run {}: {}.", runId, e.getMessage());
@@ -114,37 +121,39 @@ public class DefaultStoreClientService implements StoreClientService {
     }
   }
 
-  private void uploadOutputs(long jobId, String outputPath) {
+  /**
+   * The output files are compressed one at a time, as the batch is sent.
+   */
+  private Stream<OperationOutput> readOutputs(long runId, String outputPath) {
     File[] files = new File(outputPath).listFiles(
         f -> !f.isDirectory() && f.getName().contains("."));
     if (files == null) {
-      String msg = String.format("Failed to locate the output for client job %d in %s.",
-          jobId, outputPath);
+      String msg = String.format("Failed to locate the output for the client job of run %d in %s.",
+          runId, outputPath);
       LOGGER.error(msg);
       throw new IllegalStateException(msg);
     }
-    Stream.of(files).forEach(file -> {
-      String[] toks = file.getName().split("\\.", 2);
-      String extension = toks[1];
-      if (outputFileExtensions.contains(extension)) {
-        try {
-          byte[] data = Files.readAllBytes(file.toPath());
-          Payload payload = compressionService.compress(data);
-          OperationOutput output = OperationOutput.builder()
-              .operation(toks[0])
-              .format(extension)
-              .payload(payload)
-              .build();
-          long outputId = writer.addOutput(jobId, output);
-          LOGGER.info("Output file {} uploaded: ID={}, job ID = {}.",
-              new Object[] { file, outputId, jobId });
-        } catch (IOException e) {
-          LOGGER.error("Output upload failed for client job {}, file is {}.",
-              jobId, file.getPath());
-          throw new IllegalStateException("Output upload failed.", e);
-        }
-      }
-    });
+    return Arrays.stream(files)
+        .filter(file -> outputFileExtensions.contains(file.getName().split("\\.", 2)[1]))
+        .map(file -> readOutput(runId, file));
+  }
+
+  private OperationOutput readOutput(long runId, File file) {
+    String[] toks = file.getName().split("\\.", 2);
+    try (InputStream is = Files.newInputStream(file.toPath())) {
+      Payload payload = compressor.compress(is);
+      LOGGER.info("Output file {} compressed in {}, run ID = {}.",
+          new Object[] { file, payload.getFormat(), runId });
+      return OperationOutput.builder()
+          .operation(toks[0])
+          .format(toks[1])
+          .payload(payload)
+          .build();
+    } catch (IOException e) {
+      LOGGER.error("Output compression failed for the client job of run {}, file is {}.",
+          runId, file.getPath());
+      throw new IllegalStateException("Output upload failed.", e);
+    }
   }
 
   @Override
@@ -152,7 +161,7 @@ public class DefaultStoreClientService implements StoreClientService {
     try {
 
       String fileNameBase = filename.replaceAll("\\.log$", "");
-      Payload payload = compressionService.compress(content);
+      Payload payload = compressor.compress(content);
       StatsLog statsLog = StatsLog.builder()
           .host(host)
           .type(fileNameBase)
@@ -17,10 +17,11 @@
 package io.rainfall.store.client;
 
 import io.rainfall.store.client.resteasy.RestEasyStoreClient;
-import io.rainfall.store.data.CompressionService;
+import io.rainfall.store.data.CompressionPolicy;
+import io.rainfall.store.data.Compressor;
 
-import static io.rainfall.store.data.CompressionFormat.LZ4;
-import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static io.rainfall.store.data.CompressionPolicy.BALANCED;
+import static io.rainfall.store.data.CompressionServiceFactory.adaptiveService;
 
 @SuppressWarnings("WeakerAccess")
 public class StoreClientServiceFactory {
@@ -37,12 +38,25 @@ public class StoreClientServiceFactory {
    * Otherwise, a StoreClientService connecting to the given URL.
    */
   public static StoreClientService defaultService(String URL) {
-    return URL == null ? NOOP : forURL(URL);
+    return defaultService(URL, BALANCED);
   }
 
-  private static StoreClientService forURL(String URL) {
+  /**
+   * Create a StoreClientService compressing each file in the format
+   * which suits it best under a policy.
+   *
+   * @param URL    URL of the store REST service, or null.
+   * @param policy balance of the compression time and of the upload size.
+   * @return if url is null, a noop service which doesn't store anything.
+   * Otherwise, a StoreClientService connecting to the given URL.
+   */
+  public static StoreClientService defaultService(String URL, CompressionPolicy policy) {
+    return URL == null ? NOOP : forURL(URL, policy);
+  }
+
+  private static StoreClientService forURL(String URL, CompressionPolicy policy) {
     StoreClient client = new RestEasyStoreClient(URL);
-    CompressionService compressionService = compressionService(LZ4);
-    return new DefaultStoreClientService(client, compressionService);
+    Compressor compressor = adaptiveService(policy);
+    return new DefaultStoreClientService(client, compressor);
   }
 }
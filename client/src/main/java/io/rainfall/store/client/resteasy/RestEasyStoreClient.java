@@ -19,23 +19,32 @@ package io.rainfall.store.client.resteasy;
 import io.rainfall.store.client.StoreClient;
 import io.rainfall.store.core.ChangeReport;
 import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
 import io.rainfall.store.core.MetricsLog;
 import io.rainfall.store.core.OperationOutput;
 import io.rainfall.store.core.StatsLog;
 import io.rainfall.store.core.TestCase;
 import io.rainfall.store.core.TestRun;
+import io.rainfall.store.data.Payload;
 import io.rainfall.store.record.MetricsRec;
+import org.jboss.resteasy.client.jaxrs.internal.ClientInvocationBuilder;
 import org.jboss.resteasy.client.jaxrs.internal.ResteasyClientBuilderImpl;
 import org.zalando.jersey.gson.internal.GsonJsonProvider;
 
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.StreamingOutput;
 
+import static javax.ws.rs.client.Entity.entity;
 import static javax.ws.rs.client.Entity.json;
+import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM_TYPE;
 import static org.slf4j.LoggerFactory.getLogger;
 
 public class RestEasyStoreClient implements StoreClient {
@@ -68,14 +77,27 @@ public class RestEasyStoreClient implements StoreClient {
     return add("jobs", runId, job);
   }
 
+  /**
+   * Post the job and its outputs framed in one octet stream, written as the
+   * outputs are read, in chunks rather than buffered whole for its length.
+   */
+  @Override
+  public long addClientJobBatch(long runId, ClientJobBatch batch) {
+    StreamingOutput body = batch::write;
+    return post("batches/{" + PARENT_PARAM + "}",
+        runId, entity(body, APPLICATION_OCTET_STREAM_TYPE), UnaryOperator.identity(), Long::valueOf);
+  }
+
   @Override
   public long addOutput(long jobId, OperationOutput output) {
-    return add("outputs", jobId, output);
+    return upload("outputs", jobId, output.getPayload(), target ->
+        param(param(target, "operation", output.getOperation()), "format", output.getFormat()));
   }
 
   @Override
   public long addStatsLog(long runId, StatsLog log) {
-    return add("stats", runId, log);
+    return upload("stats", runId, log.getPayload(), target ->
+        param(param(target, "host", log.getHost()), "type", log.getType()));
   }
 
   @Override
@@ -107,10 +129,31 @@ public class RestEasyStoreClient implements StoreClient {
 
   private long add(String path, Object parentId, Object value) {
     return post(path + "/{" + PARENT_PARAM + "}",
-        parentId, value, Long::valueOf);
+        parentId, json(value), UnaryOperator.identity(), Long::valueOf);
+  }
+
+  /**
+   * Post the bytes of the payload as they are compressed, rather than encoded in JSON.
+   */
+  private long upload(String path, Object parentId, Payload payload, UnaryOperator<WebTarget> params) {
+    Entity<byte[]> entity = entity(payload.getData(), APPLICATION_OCTET_STREAM_TYPE);
+    return post(path + "/{" + PARENT_PARAM + "}",
+        parentId, entity, target -> params.apply(target)
+            .queryParam("compression", payload.getFormat())
+            .queryParam("originalLength", payload.getOriginalLength()),
+        Long::valueOf);
+  }
+
+  private static WebTarget param(WebTarget target, String name, Object value) {
+    return value == null ? target : target.queryParam(name, value);
   }
 
   private <V> V post(String path, Object id, Object value, Function<String, V> parser) {
+    return post(path, id, json(value), UnaryOperator.identity(), parser);
+  }
+
+  private <V> V post(String path, Object id, Entity<?> entity, UnaryOperator<WebTarget> params,
+                     Function<String, V> parser) {
     Client client = new ResteasyClientBuilderImpl()
         .register(GsonJsonProvider.class)
         .build();
@@ -118,9 +161,12 @@ public class RestEasyStoreClient implements StoreClient {
       client.register(LOGGING_FILTER);
       WebTarget target = client.target(contextUrl)
           .path(path);
-      String result = target.resolveTemplate(PARENT_PARAM, id)
-          .request()
-          .post(json(value))
+      Invocation.Builder request = params.apply(target.resolveTemplate(PARENT_PARAM, id))
+          .request();
+      if (entity.getEntity() instanceof StreamingOutput) {
+        ((ClientInvocationBuilder)request).setChunked(true);
+      }
+      String result = request.post(entity)
           .readEntity(String.class);
       return parser.apply(result);
     } finally {
@@ -17,6 +17,7 @@
 package io.rainfall.store.client;
 
 import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
 import io.rainfall.store.core.OperationOutput;
 import io.rainfall.store.core.StatsLog;
 import io.rainfall.store.core.TestCase;
@@ -187,6 +188,36 @@ public abstract class AbstractStoreClientTest {
     assertThat(added, is(output));
   }
 
+  @Test
+  public void testAddClientJobBatch() throws Exception {
+    String file = AbstractStoreClientTest.class
+        .getResource("/outputs/1_scenario/GET.hlog")
+        .getFile();
+    store.addTestCase("Test1", testCase);
+    long runId = store.addRun("Test1", run);
+    Payload payload = compressionService(RAW).compress(readAllBytes(get(file)));
+    OperationOutput output = OperationOutput.builder()
+        .operation("GET")
+        .payload(payload)
+        .build();
+    ClientJobBatch batch = ClientJobBatch.builder()
+        .job(job)
+        .output(output)
+        .build();
+
+    long ID = client.addClientJobBatch(runId, batch);
+    assertThat(ID, is(1L));
+
+    ClientJob added = store.getClientJob(ID)
+        .map(Rec::getValue)
+        .orElse(null);
+    assertThat(added, is(job));
+    OperationOutput addedOutput = store.getOutput(1L)
+        .map(Rec::getValue)
+        .orElse(null);
+    assertThat(addedOutput, is(output));
+  }
+
   @Test
   public void testAddStatsLog() {
     store.addTestCase("Test1", testCase);
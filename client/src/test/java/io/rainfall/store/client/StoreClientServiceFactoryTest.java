@@ -19,6 +19,7 @@ package io.rainfall.store.client;
 
 import org.junit.Test;
 
+import static io.rainfall.store.data.CompressionPolicy.MIN_SIZE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
@@ -31,6 +32,13 @@ public class StoreClientServiceFactoryTest {
     assertThat(service, instanceOf(DefaultStoreClientService.class));
   }
 
+  @Test
+  public void testPolicy() {
+    StoreClientService service = StoreClientServiceFactory.defaultService("http://localhost:8080", MIN_SIZE);
+    assertThat(service, instanceOf(DefaultStoreClientService.class));
+    assertThat(StoreClientServiceFactory.defaultService(null, MIN_SIZE), is(StoreClientServiceFactory.NOOP));
+  }
+
   @Test
   public void testNoop() {
     StoreClientService service = StoreClientServiceFactory.defaultService(null);
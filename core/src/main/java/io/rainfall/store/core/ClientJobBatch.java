@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.core;
+
+import io.rainfall.store.data.CompressionFormat;
+import io.rainfall.store.data.Payload;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A client job along with all its outputs, uploaded in a single request.
+ * The outputs are produced, or read, one at a time as they are consumed,
+ * so that a batch holds a single payload at a time, and is consumed once.
+ * <p>
+ * A batch is framed as:
+ * <ul>
+ * <li>the length of the job in JSON, then its UTF-8 bytes;</li>
+ * <li>for each output, a true boolean, its operation, its format and the format
+ * of its compression in modified UTF-8, the length of its uncompressed data
+ * and that of its payload, then the bytes of its payload;</li>
+ * <li>a false boolean.</li>
+ * </ul>
+ */
+public class ClientJobBatch {
+
+  private static final Gson GSON = new Gson();
+
+  private final ClientJob job;
+  private final Stream<OperationOutput> outputs;
+
+  private ClientJobBatch(Builder builder) {
+    job = builder.job;
+    outputs = concat(builder.outputs);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public ClientJob getJob() {
+    return job;
+  }
+
+  /**
+   * @return the outputs, which can be consumed once.
+   */
+  public Stream<OperationOutput> getOutputs() {
+    return outputs;
+  }
+
+  /**
+   * Frame the batch, producing its outputs as they are written.
+   */
+  public void write(OutputStream os) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+    byte[] json = GSON.toJson(job, ClientJob.class).getBytes(UTF_8);
+    out.writeInt(json.length);
+    out.write(json);
+    WritableByteChannel channel = Channels.newChannel(out);
+    Iterator<OperationOutput> iterator = outputs.iterator();
+    while (iterator.hasNext()) {
+      OperationOutput output = iterator.next();
+      Payload payload = output.getPayload();
+      out.writeBoolean(true);
+      out.writeUTF(output.getOperation());
+      out.writeUTF(output.getFormat() == null ? "" : output.getFormat());
+      out.writeUTF(payload.getFormat().name());
+      out.writeInt(payload.getOriginalLength());
+      out.writeInt(payload.dataLength());
+      ByteBuffer data = payload.asBuffer();
+      while (data.hasRemaining()) {
+        channel.write(data);
+      }
+    }
+    out.writeBoolean(false);
+    out.flush();
+  }
+
+  /**
+   * Read the job of a framed batch, then its outputs as they are consumed.
+   * A failure to read an output is thrown as an {@link UncheckedIOException}.
+   */
+  public static ClientJobBatch read(InputStream is) throws IOException {
+    DataInputStream in = new DataInputStream(is);
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid length of the job: " + length);
+    }
+    ClientJob job = GSON.fromJson(
+        new String(Payload.read(in, length, CompressionFormat.RAW, length).getData(), UTF_8),
+        ClientJob.class);
+    Iterator<OperationOutput> outputs = new Iterator<OperationOutput>() {
+
+      private Boolean hasNext;
+
+      @Override
+      public boolean hasNext() {
+        if (hasNext == null) {
+          try {
+            hasNext = in.readBoolean();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+        return hasNext;
+      }
+
+      @Override
+      public OperationOutput next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        hasNext = null;
+        try {
+          return readOutput(in);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+    return builder()
+        .job(job)
+        .outputs(StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(outputs, Spliterator.ORDERED | Spliterator.NONNULL), false))
+        .build();
+  }
+
+  /**
+   * Flatten the added streams at once, rather than nesting one concatenation per addition,
+   * advancing each of them only as its outputs are consumed.
+   */
+  private static Stream<OperationOutput> concat(List<Stream<OperationOutput>> streams) {
+    if (streams.size() == 1) {
+      return streams.get(0);
+    }
+    Iterator<Stream<OperationOutput>> iterator = streams.iterator();
+    Spliterator<OperationOutput> outputs = new Spliterators.AbstractSpliterator<OperationOutput>(
+        Long.MAX_VALUE, Spliterator.ORDERED) {
+
+      private Spliterator<OperationOutput> current = Spliterators.emptySpliterator();
+
+      @Override
+      public boolean tryAdvance(Consumer<? super OperationOutput> action) {
+        while (!current.tryAdvance(action)) {
+          if (!iterator.hasNext()) {
+            return false;
+          }
+          current = iterator.next().spliterator();
+        }
+        return true;
+      }
+    };
+    return StreamSupport.stream(outputs, false)
+        .onClose(() -> streams.forEach(Stream::close));
+  }
+
+  private static OperationOutput readOutput(DataInputStream in) throws IOException {
+    String operation = in.readUTF();
+    String format = in.readUTF();
+    CompressionFormat compression;
+    try {
+      compression = CompressionFormat.valueOf(in.readUTF());
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid compression of the output of " + operation, e);
+    }
+    int originalLength = in.readInt();
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid length of the output of " + operation + ": " + length);
+    }
+    OperationOutput.Builder builder = OperationOutput.builder()
+        .operation(operation)
+        .payload(Payload.read(in, length, compression, originalLength));
+    if (!format.isEmpty()) {
+      builder.format(format);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Without the outputs, which are produced as they are consumed.
+   */
+  @Override
+  public String toString() {
+    return "ClientJobBatch{" +
+           "job=" + job +
+           '}';
+  }
+
+  public static class Builder implements io.rainfall.store.core.Builder<ClientJobBatch> {
+
+    private ClientJob job;
+    private final List<Stream<OperationOutput>> outputs = new ArrayList<>();
+
+    public Builder job(ClientJob job) {
+      this.job = job;
+      return this;
+    }
+
+    public Builder output(OperationOutput output) {
+      return outputs(Stream.of(output));
+    }
+
+    /**
+     * @param outputs produced as they are consumed, after the ones already added.
+     */
+    public Builder outputs(Stream<OperationOutput> outputs) {
+      this.outputs.add(outputs);
+      return this;
+    }
+
+    @Override
+    public ClientJobBatch build() {
+      return new ClientJobBatch(this);
+    }
+  }
+}
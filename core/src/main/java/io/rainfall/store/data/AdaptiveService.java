@@ -0,0 +1,119 @@
+package io.rainfall.store.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compresses each payload in the format chosen by a policy, among several candidates.
+ * The choice is estimated by compressing the first lines of the payload,
+ * up to {@link #SAMPLE_SIZE} bytes, in every candidate format;
+ * the smaller payloads are compressed whole, and the best result is kept.
+ * <p>
+ * When the policy weighs the compression time, each candidate compresses
+ * the first sample once more before it is timed, so that its first use
+ * isn't timed cold; the later payloads are timed on warm candidates.
+ * <p>
+ * The payloads record their format, so that they are decompressed by its service.
+ */
+class AdaptiveService implements Compressor {
+
+  static final int SAMPLE_SIZE = 64 * 1024;
+
+  private final List<CompressionService> candidates;
+  private final CompressionPolicy policy;
+  private final Set<CompressionService> warm = ConcurrentHashMap.newKeySet();
+
+  AdaptiveService(List<CompressionService> candidates, CompressionPolicy policy) {
+    if (candidates.isEmpty()) {
+      throw new IllegalArgumentException("No candidate format");
+    }
+    this.candidates = new ArrayList<>(candidates);
+    this.policy = policy;
+  }
+
+  @Override
+  public Payload compress(byte[] bytes) throws IOException {
+    if (bytes.length <= SAMPLE_SIZE) {
+      return choose(bytes).payload;
+    }
+    return choose(sample(bytes)).service.compress(bytes);
+  }
+
+  @Override
+  public Payload compress(InputStream is) throws IOException {
+    byte[] head = new byte[SAMPLE_SIZE + 1];
+    int length = readFully(is, head);
+    if (length <= SAMPLE_SIZE) {
+      return choose(Arrays.copyOf(head, length)).payload;
+    }
+    CompressionService service = choose(sample(head)).service;
+    return service.compress(new SequenceInputStream(new ByteArrayInputStream(head, 0, length), is));
+  }
+
+  private Estimate choose(byte[] sample) throws IOException {
+    Estimate best = null;
+    for (CompressionService service : candidates) {
+      if (policy.isTimed() && warm.add(service)) {
+        service.compress(sample);
+      }
+      long start = System.nanoTime();
+      Payload payload = service.compress(sample);
+      Estimate estimate = new Estimate(service, payload, System.nanoTime() - start);
+      if (best == null || policy.comparator().compare(estimate, best) < 0) {
+        best = estimate;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @return the first {@link #SAMPLE_SIZE} bytes, without the last incomplete line if any.
+   */
+  private static byte[] sample(byte[] bytes) {
+    int length = SAMPLE_SIZE;
+    while (length > 0 && bytes[length - 1] != '\n') {
+      length--;
+    }
+    return Arrays.copyOf(bytes, length == 0 ? SAMPLE_SIZE : length);
+  }
+
+  private static int readFully(InputStream is, byte[] buffer) throws IOException {
+    int length = 0;
+    int n;
+    while (length < buffer.length && (n = is.read(buffer, length, buffer.length - length)) >= 0) {
+      length += n;
+    }
+    return length;
+  }
+
+  /**
+   * The compression of a sample in a candidate format.
+   */
+  static class Estimate {
+
+    private final CompressionService service;
+    private final Payload payload;
+    private final long nanos;
+
+    Estimate(CompressionService service, Payload payload, long nanos) {
+      this.service = service;
+      this.payload = payload;
+      this.nanos = nanos;
+    }
+
+    long getCompressedLength() {
+      return payload.dataLength();
+    }
+
+    long getNanos() {
+      return nanos;
+    }
+  }
+}
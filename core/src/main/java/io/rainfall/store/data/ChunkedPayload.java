@@ -0,0 +1,587 @@
+package io.rainfall.store.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static io.rainfall.store.data.CompressionFormat.CHUNKED;
+import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Payload split into chunks of whole lines, compressed independently,
+ * so that they can be decompressed in parallel, or only some of them.
+ * <p>
+ * The index before the chunks holds their lengths and the range of the
+ * time stamps of the HDR log intervals they contain, along with the
+ * leading comments of the log, which a reader of a time window needs
+ * to find the base time of the intervals.
+ * <p>
+ * A store may keep the chunks apart from the index, and read them only
+ * as they are decompressed. The chunks of a whole payload are decompressed
+ * from views of it, without copying them.
+ */
+public class ChunkedPayload {
+
+  private static final int VERSION = 1;
+  private static final long NO_TIME_STAMP = -1;
+  private static final int INDEX_HEADER_LENGTH = 1 + 1 + 4 + 4;
+  private static final int INDEX_ENTRY_LENGTH = 4 + 4 + 8 + 8;
+
+  private final ByteBuffer index;
+  private final ChunkReader reader;
+  private final CompressionFormat chunkFormat;
+  private final byte[] preamble;
+  private final List<Chunk> chunks;
+  private final int originalLength;
+
+  /**
+   * Reads the compressed bytes of a chunk stored apart from the index.
+   */
+  @FunctionalInterface
+  public interface ChunkReader {
+
+    ByteBuffer read(int chunk) throws IOException;
+  }
+
+  private ChunkedPayload(ByteBuffer index, ChunkReader reader, CompressionFormat chunkFormat, byte[] preamble,
+                         List<Chunk> chunks, int originalLength) {
+    this.index = index;
+    this.reader = reader;
+    this.chunkFormat = chunkFormat;
+    this.preamble = preamble;
+    this.chunks = chunks;
+    this.originalLength = originalLength;
+  }
+
+  public static ChunkedPayload of(Payload payload) throws IOException {
+    return parse(checkFormat(payload), null);
+  }
+
+  /**
+   * A payload whose chunks are stored apart from its index.
+   *
+   * @param index  as returned by {@link #index()}.
+   * @param reader reads the chunks as they are decompressed.
+   */
+  public static ChunkedPayload of(Payload index, ChunkReader reader) throws IOException {
+    return parse(checkFormat(index), reader);
+  }
+
+  private static Payload checkFormat(Payload payload) {
+    if (payload.getFormat() != CHUNKED) {
+      throw new IllegalArgumentException("Not a chunked payload: " + payload.getFormat());
+    }
+    return payload;
+  }
+
+  /**
+   * @param reader null if the chunks follow the index in the data.
+   */
+  private static ChunkedPayload parse(Payload payload, ChunkReader reader) throws IOException {
+    ByteBuffer data = payload.buffer().slice();
+    int length = data.remaining();
+    DataInputStream in = new DataInputStream(new ByteBufferInputStream(data));
+    if (in.readUnsignedByte() != VERSION) {
+      throw new IOException("Unsupported chunked payload version");
+    }
+    CompressionFormat[] formats = CompressionFormat.values();
+    int ordinal = in.readUnsignedByte();
+    if (ordinal >= formats.length || formats[ordinal] == CHUNKED) {
+      throw new IOException("Invalid chunk format: " + ordinal);
+    }
+    byte[] preamble = new byte[checkLength(in.readInt(), length)];
+    in.readFully(preamble);
+    int count = checkLength(in.readInt(), length / INDEX_ENTRY_LENGTH);
+    List<Chunk> chunks = new ArrayList<>(count);
+    long originalOffset = 0;
+    long offset = 0;
+    for (int i = 0; i < count; i++) {
+      int chunkOriginalLength = checkLength(in.readInt(), Integer.MAX_VALUE);
+      int compressedLength = checkLength(in.readInt(), Integer.MAX_VALUE);
+      long first = in.readLong();
+      long last = in.readLong();
+      chunks.add(new Chunk(i, offset, compressedLength, originalOffset, chunkOriginalLength, first, last));
+      originalOffset += chunkOriginalLength;
+      offset += compressedLength;
+    }
+    int indexLength = INDEX_HEADER_LENGTH + preamble.length + count * INDEX_ENTRY_LENGTH;
+    if (originalOffset > Integer.MAX_VALUE) {
+      throw new IOException("Chunked payload doesn't match its index");
+    }
+    if (reader == null) {
+      if (indexLength + offset != length) {
+        throw new IOException("Chunked payload doesn't match its index");
+      }
+      reader = chunk -> {
+        int from = indexLength + (int)chunks.get(chunk).offset;
+        return CompressionService.range(data, from, from + chunks.get(chunk).compressedLength);
+      };
+    } else if (indexLength != length) {
+      throw new IOException("Not the index of a chunked payload");
+    }
+    return new ChunkedPayload(CompressionService.range(data, 0, indexLength), reader, formats[ordinal], preamble,
+        chunks, (int)originalOffset);
+  }
+
+  public int getChunkCount() {
+    return chunks.size();
+  }
+
+  public int getOriginalLength() {
+    return originalLength;
+  }
+
+  /**
+   * @return the index alone, for a store to keep apart from the chunks.
+   */
+  public Payload index() {
+    return Payload.of(index, CHUNKED, originalLength);
+  }
+
+  /**
+   * @return the compressed bytes of a chunk.
+   */
+  public ByteBuffer chunk(int chunk) throws IOException {
+    return read(chunks.get(chunk));
+  }
+
+  /**
+   * @return the whole payload, with the chunks read and joined after the index.
+   */
+  public Payload join() throws IOException {
+    long length = index.remaining() + chunks.stream()
+        .mapToLong(chunk -> chunk.compressedLength)
+        .sum();
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Chunked payload too large: " + length + " bytes");
+    }
+    byte[] joined = new byte[(int)length];
+    int offset = index.remaining();
+    index.duplicate().get(joined, 0, offset);
+    for (Chunk chunk : chunks) {
+      read(chunk).duplicate().get(joined, offset, chunk.compressedLength);
+      offset += chunk.compressedLength;
+    }
+    return Payload.of(joined, CHUNKED, originalLength);
+  }
+
+  /**
+   * Decompress all the chunks in parallel.
+   */
+  public byte[] decompress(Executor executor) throws IOException {
+    byte[] decompressed = new byte[originalLength];
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks.size()];
+    for (Chunk chunk : chunks) {
+      ByteBuffer compressed = read(chunk);
+      futures[chunk.number] = CompletableFuture.runAsync(() -> {
+        byte[] bytes = decompress(chunk, compressed);
+        System.arraycopy(bytes, 0, decompressed, (int)chunk.originalOffset, bytes.length);
+      }, executor);
+    }
+    join(CompletableFuture.allOf(futures));
+    return decompressed;
+  }
+
+  /**
+   * Decompress the chunks in order, up to {@code readAhead} of them in parallel.
+   */
+  public InputStream decompressingStream(Executor executor, int readAhead) {
+    return new ChunkInputStream(Collections.emptyList(), chunks, executor, readAhead);
+  }
+
+  /**
+   * Decompress only the chunks holding intervals which start within a time window,
+   * after the leading comments of the log. The other chunks aren't read.
+   *
+   * @param fromMillis start of the window, as the time stamps of the intervals
+   *                   in the log, relative to its base time.
+   * @param toMillis   end of the window, included.
+   */
+  public InputStream decompressingStream(long fromMillis, long toMillis, Executor executor, int readAhead) {
+    List<Chunk> selected = chunks.stream()
+        .filter(chunk -> chunk.first != NO_TIME_STAMP)
+        .filter(chunk -> chunk.last >= fromMillis && chunk.first <= toMillis)
+        .collect(toList());
+    boolean withPreamble = selected.isEmpty() || selected.get(0) != chunks.get(0);
+    List<byte[]> prefix = withPreamble
+        ? Collections.singletonList(preamble)
+        : Collections.emptyList();
+    return new ChunkInputStream(prefix, selected, executor, readAhead);
+  }
+
+  /**
+   * Called by the reading thread only, so that a store may read the chunks
+   * within its transaction, while they are decompressed by the executor.
+   */
+  private ByteBuffer read(Chunk chunk) throws IOException {
+    ByteBuffer bytes = reader.read(chunk.number);
+    if (bytes == null || bytes.remaining() != chunk.compressedLength) {
+      throw new IOException("Chunk " + chunk.number + " doesn't match its index");
+    }
+    return bytes;
+  }
+
+  private byte[] decompress(Chunk chunk, ByteBuffer compressed) {
+    try {
+      byte[] bytes = compressionService(chunkFormat)
+          .decompress(Payload.of(compressed, chunkFormat, chunk.originalLength));
+      if (bytes.length != chunk.originalLength) {
+        throw new IOException("Chunk doesn't match its original length " + chunk.originalLength);
+      }
+      return bytes;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Compress the chunks in parallel as they are read, up to {@code parallelism} at once.
+   *
+   * @param is read to the end but not closed.
+   */
+  static byte[] encode(InputStream is, CompressionService chunkService, int chunkSize,
+                       Executor executor, int parallelism) throws IOException {
+    LineChunker chunker = new LineChunker(is, chunkSize);
+    List<CompletableFuture<EncodedChunk>> encoded = new ArrayList<>();
+    Deque<CompletableFuture<EncodedChunk>> inFlight = new ArrayDeque<>();
+    byte[] preamble = null;
+    byte[] chunk;
+    while ((chunk = chunker.next()) != null) {
+      if (preamble == null) {
+        preamble = preamble(chunk);
+      }
+      byte[] bytes = chunk;
+      CompletableFuture<EncodedChunk> future = CompletableFuture.supplyAsync(() -> encode(bytes, chunkService),
+          executor);
+      encoded.add(future);
+      inFlight.add(future);
+      if (inFlight.size() >= parallelism) {
+        join(inFlight.poll());
+      }
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DataOutputStream index = new DataOutputStream(out);
+    index.writeByte(VERSION);
+    index.writeByte(chunkService.getFormat().ordinal());
+    preamble = preamble == null ? new byte[0] : preamble;
+    index.writeInt(preamble.length);
+    index.write(preamble);
+    index.writeInt(encoded.size());
+    List<EncodedChunk> results = new ArrayList<>(encoded.size());
+    for (CompletableFuture<EncodedChunk> future : encoded) {
+      EncodedChunk result = join(future);
+      index.writeInt(result.originalLength);
+      index.writeInt(result.compressed.length);
+      index.writeLong(result.first);
+      index.writeLong(result.last);
+      results.add(result);
+    }
+    for (EncodedChunk result : results) {
+      index.write(result.compressed);
+    }
+    index.flush();
+    return out.toByteArray();
+  }
+
+  private static EncodedChunk encode(byte[] chunk, CompressionService chunkService) {
+    try {
+      long[] range = timeStampRange(chunk);
+      byte[] compressed = chunkService.compress(chunk).getData();
+      return new EncodedChunk(compressed, chunk.length, range[0], range[1]);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * The leading comment lines and legend of a log.
+   */
+  private static byte[] preamble(byte[] chunk) {
+    int end = 0;
+    while (end < chunk.length && (chunk[end] == '#' || chunk[end] == '"')) {
+      int lineEnd = indexOf(chunk, (byte)'\n', end);
+      end = lineEnd < 0 ? chunk.length : lineEnd + 1;
+    }
+    return Arrays.copyOf(chunk, end);
+  }
+
+  /**
+   * @return the lowest and the highest start time stamps of the intervals, in ms,
+   * or {@link #NO_TIME_STAMP} if there's no interval line.
+   */
+  private static long[] timeStampRange(byte[] chunk) {
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    int start = 0;
+    while (start < chunk.length) {
+      int end = indexOf(chunk, (byte)'\n', start);
+      end = end < 0 ? chunk.length : end;
+      long timeStamp = intervalTimeStamp(chunk, start, end);
+      if (timeStamp != NO_TIME_STAMP) {
+        first = Math.min(first, timeStamp);
+        last = Math.max(last, timeStamp);
+      }
+      start = end + 1;
+    }
+    return first <= last
+        ? new long[] { first, last }
+        : new long[] { NO_TIME_STAMP, NO_TIME_STAMP };
+  }
+
+  /**
+   * Parse the start time stamp of an interval line, as the milliseconds
+   * of the seconds written in its first field, after the optional tag.
+   */
+  private static long intervalTimeStamp(byte[] line, int from, int to) {
+    if (from < to && line[from] == 'T') {
+      int comma = indexOf(line, (byte)',', from);
+      if (comma < 0 || comma >= to) {
+        return NO_TIME_STAMP;
+      }
+      from = comma + 1;
+    }
+    long millis = 0;
+    int fractionDigits = -1;
+    int i = from;
+    for (; i < to && line[i] != ','; i++) {
+      byte b = line[i];
+      if (b == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+      } else if (b >= '0' && b <= '9' && millis < Long.MAX_VALUE / 100) {
+        if (fractionDigits < 0) {
+          millis = 10 * millis + (b - '0');
+        } else if (fractionDigits < 3) {
+          millis = 10 * millis + (b - '0');
+          fractionDigits++;
+        }
+      } else {
+        return NO_TIME_STAMP;
+      }
+    }
+    if (i == from || i == to) {
+      return NO_TIME_STAMP;
+    }
+    for (int digits = Math.max(fractionDigits, 0); digits < 3; digits++) {
+      millis *= 10;
+    }
+    return millis;
+  }
+
+  private static int indexOf(byte[] bytes, byte b, int from) {
+    for (int i = from; i < bytes.length; i++) {
+      if (bytes[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int checkLength(int length, int max) throws IOException {
+    if (length < 0 || length > max) {
+      throw new IOException("Invalid length in chunked payload: " + length);
+    }
+    return length;
+  }
+
+  private static <T> T join(CompletableFuture<T> future) throws IOException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException)cause).getCause();
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      throw e;
+    }
+  }
+
+  private static class Chunk {
+
+    private final int number;
+    private final long offset;
+    private final int compressedLength;
+    private final long originalOffset;
+    private final int originalLength;
+    private final long first;
+    private final long last;
+
+    /**
+     * @param offset from the first chunk.
+     */
+    Chunk(int number, long offset, int compressedLength, long originalOffset, int originalLength,
+          long first, long last) {
+      this.number = number;
+      this.offset = offset;
+      this.compressedLength = compressedLength;
+      this.originalOffset = originalOffset;
+      this.originalLength = originalLength;
+      this.first = first;
+      this.last = last;
+    }
+  }
+
+  private static class EncodedChunk {
+
+    private final byte[] compressed;
+    private final int originalLength;
+    private final long first;
+    private final long last;
+
+    EncodedChunk(byte[] compressed, int originalLength, long first, long last) {
+      this.compressed = compressed;
+      this.originalLength = originalLength;
+      this.first = first;
+      this.last = last;
+    }
+  }
+
+  /**
+   * Reads chunks of at least {@code chunkSize} bytes, up to the end of a line.
+   */
+  private static class LineChunker {
+
+    private final InputStream is;
+    private final int chunkSize;
+    private byte[] buffer;
+    private int length = 0;
+    private boolean eof = false;
+
+    LineChunker(InputStream is, int chunkSize) {
+      this.is = is;
+      this.chunkSize = chunkSize;
+      this.buffer = new byte[chunkSize];
+    }
+
+    byte[] next() throws IOException {
+      int scanned = 0;
+      while (true) {
+        if (length >= chunkSize) {
+          int newLine = indexOf(buffer, (byte)'\n', Math.max(scanned, chunkSize - 1), length);
+          if (newLine >= 0) {
+            return take(newLine + 1);
+          }
+          scanned = length;
+        }
+        if (eof) {
+          return length > 0 ? take(length) : null;
+        }
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+        }
+        int n = is.read(buffer, length, buffer.length - length);
+        if (n < 0) {
+          eof = true;
+        } else {
+          length += n;
+        }
+      }
+    }
+
+    private byte[] take(int n) {
+      byte[] chunk = Arrays.copyOf(buffer, n);
+      System.arraycopy(buffer, n, buffer, 0, length - n);
+      length -= n;
+      return chunk;
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int from, int to) {
+      for (int i = from; i < to; i++) {
+        if (bytes[i] == b) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Streams the prefix, then the chunks, decompressing the next ones ahead.
+   */
+  private class ChunkInputStream extends InputStream {
+
+    private final Iterator<byte[]> prefix;
+    private final Iterator<Chunk> pending;
+    private final Deque<CompletableFuture<byte[]>> ahead = new ArrayDeque<>();
+    private final Executor executor;
+    private final int readAhead;
+
+    private byte[] current = new byte[0];
+    private int position = 0;
+
+    ChunkInputStream(List<byte[]> prefix, List<Chunk> chunks, Executor executor, int readAhead) {
+      this.prefix = prefix.iterator();
+      this.pending = chunks.iterator();
+      this.executor = executor;
+      this.readAhead = Math.max(readAhead, 1);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return fill() ? current[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!fill()) {
+        return -1;
+      }
+      int n = Math.min(len, current.length - position);
+      System.arraycopy(current, position, b, off, n);
+      position += n;
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return current.length - position;
+    }
+
+    @Override
+    public void close() {
+      ahead.forEach(future -> future.cancel(false));
+      ahead.clear();
+    }
+
+    private boolean fill() throws IOException {
+      while (position == current.length) {
+        if (prefix.hasNext()) {
+          current = prefix.next();
+        } else {
+          while (ahead.size() < readAhead && pending.hasNext()) {
+            Chunk chunk = pending.next();
+            ByteBuffer bytes = ChunkedPayload.this.read(chunk);
+            ahead.add(CompletableFuture.supplyAsync(() -> ChunkedPayload.this.decompress(chunk, bytes), executor));
+          }
+          if (ahead.isEmpty()) {
+            return false;
+          }
+          current = join(ahead.poll());
+        }
+        position = 0;
+      }
+      return true;
+    }
+  }
+}
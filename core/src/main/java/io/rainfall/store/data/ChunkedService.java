@@ -0,0 +1,64 @@
+package io.rainfall.store.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import static io.rainfall.store.data.CompressionFormat.CHUNKED;
+
+/**
+ * Compresses the chunks of a {@link ChunkedPayload} with another format,
+ * in parallel on an executor, as they are decompressed.
+ */
+class ChunkedService extends CompressionService {
+
+  private final CompressionService chunkService;
+  private final int chunkSize;
+  private final Executor executor;
+  private final int parallelism;
+
+  ChunkedService(CompressionFormat format, CompressionService chunkService, int chunkSize,
+                 Executor executor, int parallelism) {
+    super(format);
+    if (chunkService.getFormat() == CHUNKED) {
+      throw new IllegalArgumentException("Chunks can't be chunked");
+    }
+    if (chunkSize <= 0 || parallelism <= 0) {
+      throw new IllegalArgumentException("Invalid chunk size " + chunkSize + " or parallelism " + parallelism);
+    }
+    this.chunkService = chunkService;
+    this.chunkSize = chunkSize;
+    this.executor = executor;
+    this.parallelism = parallelism;
+  }
+
+  @Override
+  protected byte[] compressBytes(byte[] bytes) throws IOException {
+    return compressStream(new ByteArrayInputStream(bytes));
+  }
+
+  @Override
+  protected byte[] compressStream(InputStream is) throws IOException {
+    return ChunkedPayload.encode(is, chunkService, chunkSize, executor, parallelism);
+  }
+
+  @Override
+  protected byte[] decompressBytes(ByteBuffer bytes, int originalLength) throws IOException {
+    byte[] decompressed = chunkedPayload(bytes, originalLength).decompress(executor);
+    if (originalLength >= 0 && decompressed.length != originalLength) {
+      throw new IOException("Chunked payload doesn't match its original length " + originalLength);
+    }
+    return decompressed;
+  }
+
+  @Override
+  protected InputStream decompressStream(ByteBuffer bytes, int originalLength) throws IOException {
+    return chunkedPayload(bytes, originalLength).decompressingStream(executor, parallelism);
+  }
+
+  private ChunkedPayload chunkedPayload(ByteBuffer bytes, int originalLength) throws IOException {
+    return ChunkedPayload.of(Payload.of(bytes, getFormat(), originalLength));
+  }
+}
@@ -3,5 +3,8 @@ package io.rainfall.store.data;
 public enum CompressionFormat {
   RAW,
   ZIP,
-  LZ4
+  LZ4,
+  DEFLATE,
+  HLOG,
+  CHUNKED
 }
@@ -0,0 +1,56 @@
+package io.rainfall.store.data;
+
+import java.util.Comparator;
+
+import static java.util.Comparator.comparingDouble;
+import static java.util.Comparator.comparingLong;
+
+/**
+ * How the format of a payload is chosen by an adaptive {@link Compressor},
+ * from the size and the compression time estimated for each format.
+ */
+public enum CompressionPolicy {
+
+  /**
+   * The smallest payload, the fastest one among the smallest.
+   */
+  MIN_SIZE(false, comparingLong(AdaptiveService.Estimate::getCompressedLength)
+      .thenComparingLong(AdaptiveService.Estimate::getNanos)),
+
+  /**
+   * The fastest compression, the smallest payload among the fastest.
+   */
+  MIN_CPU(true, comparingLong(AdaptiveService.Estimate::getNanos)
+      .thenComparingLong(AdaptiveService.Estimate::getCompressedLength)),
+
+  /**
+   * The shortest time to compress the payload and to upload it,
+   * at {@link #UPLOAD_BYTES_PER_SECOND}.
+   */
+  BALANCED(true, comparingDouble(estimate -> estimate.getNanos() +
+                                       estimate.getCompressedLength() * 1e9 / CompressionPolicy.UPLOAD_BYTES_PER_SECOND));
+
+  /**
+   * Nominal bandwidth of the uploads to the store, 100 Mbit/s.
+   */
+  public static final long UPLOAD_BYTES_PER_SECOND = 100_000_000 / 8;
+
+  private final boolean timed;
+  private final Comparator<AdaptiveService.Estimate> comparator;
+
+  CompressionPolicy(boolean timed, Comparator<AdaptiveService.Estimate> comparator) {
+    this.timed = timed;
+    this.comparator = comparator;
+  }
+
+  /**
+   * @return whether the compression time is weighed, rather than the size alone.
+   */
+  boolean isTimed() {
+    return timed;
+  }
+
+  Comparator<AdaptiveService.Estimate> comparator() {
+    return comparator;
+  }
+}
@@ -1,8 +1,20 @@
 package io.rainfall.store.data;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
-public abstract class CompressionService {
+import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+
+public abstract class CompressionService implements Compressor {
+
+  private static final int BUFFER_SIZE = 8192;
 
   private final CompressionFormat format;
 
@@ -18,15 +30,190 @@ public abstract class CompressionService {
     return new Payload(compressBytes(bytes), format, bytes.length);
   }
 
+  /**
+   * Compress a stream, without holding all of its bytes at once
+   * when the format doesn't need them.
+   *
+   * @param is uncompressed bytes, read to the end but not closed.
+   */
+  public Payload compress(InputStream is) throws IOException {
+    CountingInputStream counting = new CountingInputStream(is);
+    byte[] compressed = compressStream(counting);
+    return new Payload(compressed, format, counting.getCount());
+  }
+
+  /**
+   * @param buffer uncompressed bytes, from its position to its limit, which doesn't move.
+   *               They may be held by the payload without a copy, so they must not change.
+   */
+  public Payload compress(ByteBuffer buffer) throws IOException {
+    return compress(new ByteBufferInputStream(buffer));
+  }
+
+  public Payload compress(ReadableByteChannel channel) throws IOException {
+    return compress(Channels.newInputStream(channel));
+  }
+
+  /**
+   * Re-encode a payload in this format.
+   *
+   * @return the payload as it is when it's already in this format,
+   * or when the re-encoded one isn't smaller.
+   */
+  public Payload recompress(Payload payload) throws IOException {
+    if (payload.getFormat() == format) {
+      return payload;
+    }
+    Payload recompressed;
+    try (InputStream is = compressionService(payload.getFormat()).decompressingStream(payload)) {
+      recompressed = compress(is);
+    }
+    return recompressed.dataLength() < payload.dataLength()
+        ? recompressed
+        : payload;
+  }
+
   protected abstract byte[] compressBytes(byte[] bytes) throws IOException;
 
+  protected byte[] compressStream(InputStream is) throws IOException {
+    return compressBytes(readAllBytes(is));
+  }
+
   public byte[] decompress(Payload payload) throws IOException {
+    checkFormat(payload);
+    return decompressBytes(payload.buffer(), payload.getOriginalLength());
+  }
+
+  /**
+   * Decompress a payload into a buffer, which is a read-only view of the payload itself
+   * when it needs no decompression.
+   *
+   * @return the same bytes as {@link #decompress(Payload)}.
+   */
+  public ByteBuffer decompressToBuffer(Payload payload) throws IOException {
+    return ByteBuffer.wrap(decompress(payload));
+  }
+
+  /**
+   * Decompress a payload incrementally, when the format allows it.
+   *
+   * @return the same bytes as {@link #decompress(Payload)}.
+   */
+  public InputStream decompressingStream(Payload payload) throws IOException {
+    checkFormat(payload);
+    return decompressStream(payload.buffer(), payload.getOriginalLength());
+  }
+
+  public ReadableByteChannel decompressingChannel(Payload payload) throws IOException {
+    return Channels.newChannel(decompressingStream(payload));
+  }
+
+  /**
+   * @param out written but not closed.
+   */
+  public void decompressTo(Payload payload, OutputStream out) throws IOException {
+    try (InputStream is = decompressingStream(payload)) {
+      copy(is, out);
+    }
+  }
+
+  /**
+   * @param bytes the payload, from its position to its limit, backed by its array if it has one.
+   */
+  protected abstract byte[] decompressBytes(ByteBuffer bytes, int originalLength) throws IOException;
+
+  protected InputStream decompressStream(ByteBuffer bytes, int originalLength) throws IOException {
+    return new ByteBufferInputStream(ByteBuffer.wrap(decompressBytes(bytes, originalLength)));
+  }
+
+  private void checkFormat(Payload payload) {
     if (payload.getFormat() != this.format) {
       throw new IllegalArgumentException("Data format " + payload.getFormat() +
                                          " != CompressionService format " + format);
     }
-    return decompressBytes(payload.getData(), payload.getOriginalLength());
   }
 
-  protected abstract byte[] decompressBytes(byte[] bytes, int originalLength) throws IOException;
+  /**
+   * @return the array of the buffer when it holds all of it, otherwise a copy of its remaining bytes.
+   */
+  static byte[] toArray(ByteBuffer buffer) {
+    if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+        && buffer.limit() == buffer.array().length) {
+      return buffer.array();
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /**
+   * @return a view of the bytes of the buffer between two absolute indexes.
+   */
+  static ByteBuffer range(ByteBuffer buffer, int from, int to) {
+    ByteBuffer range = buffer.duplicate();
+    // Through Buffer, whose setters aren't overridden by ByteBuffer on Java 8
+    ((Buffer)range).limit(to);
+    ((Buffer)range).position(from);
+    return range;
+  }
+
+  static byte[] readAllBytes(InputStream is) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    copy(is, out);
+    return out.toByteArray();
+  }
+
+  private static void copy(InputStream is, OutputStream out) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int n;
+    while ((n = is.read(buffer)) >= 0) {
+      out.write(buffer, 0, n);
+    }
+  }
+
+  private static class CountingInputStream extends FilterInputStream {
+
+    private long count = 0;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    int getCount() {
+      if (count > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Payload too large: " + count + " bytes");
+      }
+      return (int)count;
+    }
+  }
 }
@@ -1,7 +1,22 @@
 package io.rainfall.store.data;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static io.rainfall.store.data.CompressionFormat.CHUNKED;
+import static io.rainfall.store.data.CompressionFormat.DEFLATE;
+import static io.rainfall.store.data.CompressionFormat.HLOG;
+import static io.rainfall.store.data.CompressionFormat.LZ4;
+import static io.rainfall.store.data.CompressionFormat.RAW;
+import static java.util.stream.Collectors.toList;
+import static java.util.zip.Deflater.DEFAULT_COMPRESSION;
+
 public class CompressionServiceFactory {
 
+  public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
   public static CompressionService compressionService(CompressionFormat format) {
     switch (format) {
       case RAW:
@@ -10,8 +25,51 @@ public class CompressionServiceFactory {
         return new ZipService(format);
       case LZ4:
         return new Lz4Service(format);
+      case DEFLATE:
+        return new DeflateService(format, DEFAULT_COMPRESSION);
+      case HLOG:
+        return new HlogService(format);
+      case CHUNKED:
+        return chunkedService(LZ4, DEFAULT_CHUNK_SIZE);
       default:
         throw new IllegalArgumentException("Unsupported compression format: " + format);
     }
   }
+
+  /**
+   * @param level from {@link java.util.zip.Deflater#BEST_SPEED} to
+   *              {@link java.util.zip.Deflater#BEST_COMPRESSION},
+   *              or {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}.
+   */
+  public static CompressionService deflateService(int level) {
+    return new DeflateService(CompressionFormat.DEFLATE, level);
+  }
+
+  /**
+   * Payloads split in chunks of about {@code chunkSize} bytes, compressed with another format
+   * on the common fork join pool.
+   */
+  public static CompressionService chunkedService(CompressionFormat chunkFormat, int chunkSize) {
+    return new ChunkedService(CHUNKED, compressionService(chunkFormat), chunkSize,
+        ForkJoinPool.commonPool(), PARALLELISM);
+  }
+
+  /**
+   * Payloads compressed in RAW, LZ4, DEFLATE or HLOG, whichever suits each of them best
+   * under the policy.
+   */
+  public static Compressor adaptiveService(CompressionPolicy policy) {
+    return new AdaptiveService(Stream.of(RAW, LZ4, DEFLATE, HLOG)
+        .map(CompressionServiceFactory::compressionService)
+        .collect(toList()), policy);
+  }
+
+  /**
+   * HLOG, in chunks for the logs larger than {@link #DEFAULT_CHUNK_SIZE}.
+   */
+  public static CompressionService hlogService(int originalLength) {
+    return originalLength > DEFAULT_CHUNK_SIZE
+        ? chunkedService(HLOG, DEFAULT_CHUNK_SIZE)
+        : compressionService(HLOG);
+  }
 }
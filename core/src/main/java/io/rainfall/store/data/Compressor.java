@@ -0,0 +1,18 @@
+package io.rainfall.store.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compresses payloads, which record their format, so that they are decompressed
+ * by the {@link CompressionService} of that format.
+ */
+public interface Compressor {
+
+  Payload compress(byte[] bytes) throws IOException;
+
+  /**
+   * @param is uncompressed bytes, read to the end but not closed.
+   */
+  Payload compress(InputStream is) throws IOException;
+}
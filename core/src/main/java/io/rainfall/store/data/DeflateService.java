@@ -0,0 +1,104 @@
+package io.rainfall.store.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static java.util.zip.Deflater.BEST_COMPRESSION;
+import static java.util.zip.Deflater.DEFAULT_COMPRESSION;
+import static java.util.zip.Deflater.NO_COMPRESSION;
+
+/**
+ * Deflate (zlib) compression of the bytes as they are, unlike {@link ZipService},
+ * which rewrites the lines of the text.
+ * The deflaters and the inflaters of the byte array operations are reused per thread;
+ * the decompressing streams, which may be read on other threads, have their own.
+ */
+class DeflateService extends CompressionService {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+  private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+  private final int level;
+
+  DeflateService(CompressionFormat format, int level) {
+    super(format);
+    if (level != DEFAULT_COMPRESSION && (level < NO_COMPRESSION || level > BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Invalid deflate level: " + level);
+    }
+    this.level = level;
+  }
+
+  @Override
+  protected byte[] compressBytes(byte[] bytes) throws IOException {
+    return compressStream(new ByteArrayInputStream(bytes));
+  }
+
+  @Override
+  protected byte[] compressStream(InputStream is) throws IOException {
+    Deflater deflater = DEFLATER.get();
+    deflater.reset();
+    deflater.setLevel(level);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater, BUFFER_SIZE)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int n;
+      while ((n = is.read(buffer)) >= 0) {
+        deflating.write(buffer, 0, n);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  @Override
+  protected byte[] decompressBytes(ByteBuffer bytes, int originalLength) throws IOException {
+    if (originalLength < 0 || !bytes.hasArray()) {
+      return readAllBytes(decompressStream(bytes, originalLength));
+    }
+    Inflater inflater = INFLATER.get();
+    inflater.reset();
+    inflater.setInput(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+    byte[] decompressed = new byte[originalLength];
+    try {
+      int length = 0;
+      while (length < originalLength && !inflater.finished()) {
+        int n = inflater.inflate(decompressed, length, originalLength - length);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += n;
+      }
+      if (length != originalLength || !inflater.finished() && inflater.inflate(new byte[1]) > 0) {
+        throw new IOException("Deflate payload doesn't match its original length " + originalLength);
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+    return decompressed;
+  }
+
+  @Override
+  protected InputStream decompressStream(ByteBuffer bytes, int originalLength) {
+    Inflater inflater = new Inflater();
+    return new FilterInputStream(new InflaterInputStream(new ByteBufferInputStream(bytes), inflater, BUFFER_SIZE)) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          inflater.end();
+        }
+      }
+    };
+  }
+}
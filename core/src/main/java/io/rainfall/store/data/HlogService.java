@@ -0,0 +1,420 @@
+package io.rainfall.store.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary encoding of HDR histogram logs, which restores the exact original text.
+ * <p>
+ * The text is split into lines. An interval line whose time stamps and maximum
+ * are plain decimals, and whose histogram is canonical base64, is encoded as the
+ * differences of its three numbers from those of the previous interval, as
+ * zigzag varints, followed by the histogram as raw bytes. Any other line, e.g.
+ * a comment, the legend or a tagged interval, is kept as is.
+ * A carriage return before a line feed is flagged in the record of the line.
+ * <p>
+ * The records are deflated, which mostly helps with the repeated histograms
+ * of idle intervals and with the lines kept as they are.
+ */
+class HlogService extends CompressionService {
+
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final int LITERAL = 0;
+  private static final int INTERVAL = 1;
+  private static final int INTERVAL_WITH_SCALES = 2;
+  private static final int END = 3;
+  private static final int CARRIAGE_RETURN = 0x80;
+
+  private static final int NUMBERS = 3;
+  private static final int MAX_FRACTION_DIGITS = 9;
+  private static final int MAX_DIGITS = 18;
+  private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+    }
+  }
+
+  HlogService(CompressionFormat format) {
+    super(format);
+  }
+
+  @Override
+  protected byte[] compressBytes(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+    out.write(VERSION);
+    Deflater deflater = new Deflater();
+    try (OutputStream deflating = new BufferedOutputStream(new DeflaterOutputStream(out, deflater, BUFFER_SIZE),
+        BUFFER_SIZE)) {
+      new Encoder(bytes, deflating).encode();
+    } finally {
+      deflater.end();
+    }
+    return out.toByteArray();
+  }
+
+  @Override
+  protected byte[] decompressBytes(ByteBuffer bytes, int originalLength) throws IOException {
+    byte[] decompressed;
+    try (InputStream is = decompressStream(bytes, originalLength)) {
+      decompressed = readAllBytes(is);
+    }
+    if (originalLength >= 0 && decompressed.length != originalLength) {
+      throw new IOException("HLOG payload doesn't match its original length " + originalLength);
+    }
+    return decompressed;
+  }
+
+  @Override
+  protected InputStream decompressStream(ByteBuffer bytes, int originalLength) throws IOException {
+    return new DecodingInputStream(bytes);
+  }
+
+  private static class Encoder {
+
+    private final byte[] text;
+    private final OutputStream out;
+    private final long[] numbers = new long[NUMBERS];
+    private final int[] scales = new int[NUMBERS];
+    private final long[] previousNumbers = new long[NUMBERS];
+    private final int[] previousScales = { -1, -1, -1 };
+
+    Encoder(byte[] text, OutputStream out) {
+      this.text = text;
+      this.out = out;
+    }
+
+    void encode() throws IOException {
+      int start = 0;
+      while (true) {
+        int end = indexOf(text, (byte)'\n', start, text.length);
+        int lineEnd = end < 0 ? text.length : end;
+        boolean carriageReturn = lineEnd > start && text[lineEnd - 1] == '\r';
+        int contentEnd = carriageReturn ? lineEnd - 1 : lineEnd;
+        int flag = carriageReturn ? CARRIAGE_RETURN : 0;
+        if (!writeInterval(start, contentEnd, flag)) {
+          out.write(LITERAL | flag);
+          writeVarint(out, contentEnd - start);
+          out.write(text, start, contentEnd - start);
+        }
+        if (end < 0) {
+          break;
+        }
+        start = end + 1;
+      }
+      out.write(END);
+    }
+
+    private boolean writeInterval(int from, int to, int flag) throws IOException {
+      int fieldStart = from;
+      for (int i = 0; i < NUMBERS; i++) {
+        int fieldEnd = indexOf(text, (byte)',', fieldStart, to);
+        if (fieldEnd < 0 || !parseNumber(fieldStart, fieldEnd, i)) {
+          return false;
+        }
+        fieldStart = fieldEnd + 1;
+      }
+      byte[] histogram = decodeCanonicalBase64(fieldStart, to);
+      if (histogram == null) {
+        return false;
+      }
+      if (Arrays.equals(scales, previousScales)) {
+        out.write(INTERVAL | flag);
+      } else {
+        out.write(INTERVAL_WITH_SCALES | flag);
+        for (int scale : scales) {
+          out.write(scale);
+        }
+        System.arraycopy(scales, 0, previousScales, 0, NUMBERS);
+      }
+      for (int i = 0; i < NUMBERS; i++) {
+        long delta = numbers[i] - previousNumbers[i];
+        writeVarint(out, (delta << 1) ^ (delta >> 63));
+        previousNumbers[i] = numbers[i];
+      }
+      writeVarint(out, histogram.length);
+      out.write(histogram, 0, histogram.length);
+      return true;
+    }
+
+    /**
+     * Parse a decimal with digits on both sides of the point and no superfluous
+     * leading zero, so that it is formatted back to the same text.
+     */
+    private boolean parseNumber(int from, int to, int index) {
+      int point = indexOf(text, (byte)'.', from, to);
+      int integerDigits = point - from;
+      int fractionDigits = to - point - 1;
+      if (point < 0 || integerDigits < 1 || fractionDigits < 1 || fractionDigits > MAX_FRACTION_DIGITS
+          || integerDigits + fractionDigits > MAX_DIGITS
+          || integerDigits > 1 && text[from] == '0') {
+        return false;
+      }
+      long value = 0;
+      for (int i = from; i < to; i++) {
+        if (i == point) {
+          continue;
+        }
+        byte b = text[i];
+        if (b < '0' || b > '9') {
+          return false;
+        }
+        value = 10 * value + (b - '0');
+      }
+      numbers[index] = value;
+      scales[index] = fractionDigits;
+      return true;
+    }
+
+    private byte[] decodeCanonicalBase64(int from, int to) {
+      if (from >= to || (to - from) % 4 != 0) {
+        return null;
+      }
+      byte[] base64 = Arrays.copyOfRange(text, from, to);
+      try {
+        byte[] decoded = Base64.getDecoder().decode(base64);
+        return Arrays.equals(Base64.getEncoder().encode(decoded), base64) ? decoded : null;
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Decodes one line at a time.
+   */
+  private static class DecodingInputStream extends InputStream {
+
+    private final Inflater inflater = new Inflater();
+    private final InputStream records;
+    private byte[] histogram = new byte[256];
+
+    private final long[] numbers = new long[NUMBERS];
+    private final int[] scales = new int[NUMBERS];
+
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+    private int linePosition = 0;
+    private boolean first = true;
+    private boolean ended = false;
+
+    DecodingInputStream(ByteBuffer bytes) throws IOException {
+      if (!bytes.hasRemaining() || bytes.get(bytes.position()) != VERSION) {
+        throw new IOException("Unsupported HLOG payload version");
+      }
+      ByteBuffer records = range(bytes, bytes.position() + 1, bytes.limit());
+      InputStream compressed = new ByteBufferInputStream(records);
+      this.records = new BufferedInputStream(new InflaterInputStream(compressed, inflater, BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        records.close();
+      } finally {
+        inflater.end();
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      return fill() ? line[linePosition++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!fill()) {
+        return -1;
+      }
+      int n = Math.min(len, lineLength - linePosition);
+      System.arraycopy(line, linePosition, b, off, n);
+      linePosition += n;
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return lineLength - linePosition;
+    }
+
+    private boolean fill() throws IOException {
+      while (linePosition == lineLength) {
+        if (ended) {
+          return false;
+        }
+        decodeLine();
+      }
+      return true;
+    }
+
+    private void decodeLine() throws IOException {
+      lineLength = 0;
+      linePosition = 0;
+      int tag = readByte();
+      if (tag == END) {
+        if (records.read() >= 0) {
+          throw new IOException("Trailing data in HLOG payload");
+        }
+        ended = true;
+        return;
+      }
+      if (!first) {
+        append((byte)'\n');
+      }
+      first = false;
+      switch (tag & ~CARRIAGE_RETURN) {
+        case LITERAL:
+          int length = readLength();
+          ensureCapacity(length);
+          readFully(line, lineLength, length);
+          lineLength += length;
+          break;
+        case INTERVAL_WITH_SCALES:
+          for (int i = 0; i < NUMBERS; i++) {
+            scales[i] = readByte();
+          }
+          decodeInterval();
+          break;
+        case INTERVAL:
+          decodeInterval();
+          break;
+        default:
+          throw new IOException("Invalid HLOG record: " + tag);
+      }
+      if ((tag & CARRIAGE_RETURN) != 0) {
+        append((byte)'\r');
+      }
+    }
+
+    private void decodeInterval() throws IOException {
+      for (int i = 0; i < NUMBERS; i++) {
+        long zigzag = readVarint();
+        numbers[i] += (zigzag >>> 1) ^ -(zigzag & 1);
+        appendNumber(numbers[i], scales[i]);
+        append((byte)',');
+      }
+      int length = readLength();
+      if (histogram.length < length) {
+        histogram = new byte[Math.max(length, 2 * histogram.length)];
+      }
+      readFully(histogram, 0, length);
+      byte[] base64 = Base64.getEncoder().encode(Arrays.copyOf(histogram, length));
+      append(base64, 0, base64.length);
+    }
+
+    private void appendNumber(long value, int scale) throws IOException {
+      if (scale < 1 || scale > MAX_FRACTION_DIGITS || value < 0) {
+        throw new IOException("Invalid HLOG number");
+      }
+      long power = POWERS_OF_TEN[scale];
+      appendDigits(value / power, 1);
+      append((byte)'.');
+      appendDigits(value % power, scale);
+    }
+
+    private void appendDigits(long value, int minDigits) {
+      int digits = 1;
+      while (digits < MAX_DIGITS && value >= POWERS_OF_TEN[digits]) {
+        digits++;
+      }
+      digits = Math.max(digits, minDigits);
+      ensureCapacity(digits);
+      for (int i = lineLength + digits - 1; i >= lineLength; i--) {
+        line[i] = (byte)('0' + value % 10);
+        value /= 10;
+      }
+      lineLength += digits;
+    }
+
+    private void append(byte b) {
+      ensureCapacity(1);
+      line[lineLength++] = b;
+    }
+
+    private void append(byte[] b, int off, int len) {
+      ensureCapacity(len);
+      System.arraycopy(b, off, line, lineLength, len);
+      lineLength += len;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (lineLength + extra > line.length) {
+        line = Arrays.copyOf(line, Math.max(2 * line.length, lineLength + extra));
+      }
+    }
+
+    private int readByte() throws IOException {
+      int b = records.read();
+      if (b < 0) {
+        throw new IOException("Truncated HLOG payload");
+      }
+      return b;
+    }
+
+    private void readFully(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        int n = records.read(b, off, len);
+        if (n < 0) {
+          throw new IOException("Truncated HLOG payload");
+        }
+        off += n;
+        len -= n;
+      }
+    }
+
+    private int readLength() throws IOException {
+      long length = readVarint();
+      if (length > Integer.MAX_VALUE - 16) {
+        throw new IOException("Invalid HLOG length: " + length);
+      }
+      return (int)length;
+    }
+
+    private long readVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        value |= (long)(b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Invalid HLOG varint");
+    }
+  }
+
+  private static void writeVarint(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int)((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int)value);
+  }
+
+  private static int indexOf(byte[] bytes, byte b, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (bytes[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
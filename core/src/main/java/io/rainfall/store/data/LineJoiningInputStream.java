@@ -0,0 +1,124 @@
+package io.rainfall.store.data;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Text read line by line and joined with '\n', as by
+ * {@code BufferedReader.lines().collect(joining("\n"))}: the line terminators
+ * ("\n", "\r" or "\r\n") are replaced by '\n', and the last one is dropped.
+ */
+class LineJoiningInputStream extends FilterInputStream {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private final byte[] single = new byte[1];
+  private int position = 0;
+  private int limit = 0;
+  private int pendingNewLines = 0;
+  private boolean afterCarriageReturn = false;
+
+  /**
+   * @param in read in bulk into a buffer of this stream.
+   */
+  LineJoiningInputStream(InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  /**
+   * The runs of bytes between the line terminators are copied at once.
+   * Returns the bytes read so far rather than waiting for more.
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    int n = 0;
+    while (n < len) {
+      if (position == limit) {
+        if (n > 0) {
+          break;
+        }
+        if (!fill()) {
+          // the last line terminator is dropped
+          while (n < len && pendingNewLines > 1) {
+            b[off + n++] = '\n';
+            pendingNewLines--;
+          }
+          if (pendingNewLines == 1) {
+            pendingNewLines = 0;
+          }
+          break;
+        }
+      }
+      byte c = buffer[position];
+      if (c == '\n' || c == '\r') {
+        if (c == '\r' || !afterCarriageReturn) {
+          pendingNewLines++;
+        }
+        afterCarriageReturn = c == '\r';
+        position++;
+      } else if (pendingNewLines > 0) {
+        afterCarriageReturn = false;
+        b[off + n++] = '\n';
+        pendingNewLines--;
+      } else {
+        afterCarriageReturn = false;
+        int end = position + 1;
+        int max = Math.min(limit, position + len - n);
+        while (end < max && buffer[end] != '\n' && buffer[end] != '\r') {
+          end++;
+        }
+        System.arraycopy(buffer, position, b, off + n, end - position);
+        n += end - position;
+        position = end;
+      }
+    }
+    return n == 0 ? -1 : n;
+  }
+
+  private boolean fill() throws IOException {
+    int read;
+    do {
+      read = in.read(buffer, 0, buffer.length);
+    } while (read == 0);
+    if (read < 0) {
+      return false;
+    }
+    position = 0;
+    limit = read;
+    return true;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    byte[] skipped = new byte[(int)Math.min(n, BUFFER_SIZE)];
+    long total = 0;
+    while (total < n) {
+      int read = read(skipped, 0, (int)Math.min(n - total, skipped.length));
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+  @Override
+  public int available() {
+    return 0;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+}
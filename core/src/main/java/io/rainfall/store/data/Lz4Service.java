@@ -4,6 +4,12 @@ import net.jpountz.lz4.LZ4Compressor;
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.lz4.LZ4FastDecompressor;
 
+import java.nio.ByteBuffer;
+
+/**
+ * The payload is a single LZ4 block, so it is decompressed at once,
+ * even when it is read as a stream.
+ */
 class Lz4Service extends CompressionService {
 
   private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
@@ -21,7 +27,9 @@ class Lz4Service extends CompressionService {
   }
 
   @Override
-  protected byte[] decompressBytes(byte[] bytes, int originalLength) {
-    return decompressor.decompress(bytes, originalLength);
+  protected byte[] decompressBytes(ByteBuffer bytes, int originalLength) {
+    byte[] decompressed = new byte[originalLength];
+    decompressor.decompress(bytes, bytes.position(), ByteBuffer.wrap(decompressed), 0, originalLength);
+    return decompressed;
   }
 }
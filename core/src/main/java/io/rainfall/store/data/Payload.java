@@ -1,17 +1,33 @@
 package io.rainfall.store.data;
 
+import com.google.gson.annotations.JsonAdapter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Objects;
 
 import static io.rainfall.store.data.CompressionFormat.RAW;
 
-
+/**
+ * The compressed bytes of a log, held in an array, or in a read-only buffer,
+ * which may be direct or memory-mapped.
+ * The payloads holding a buffer are serialized and persisted as arrays.
+ */
+@JsonAdapter(PayloadJsonAdapter.class)
 public class Payload {
 
   static Charset CHARSET = Charset.forName("UTF-8");
 
+  private static final int INITIAL_READ_LENGTH = 64 * 1024;
+
   private final byte[] data;
+  private final transient ByteBuffer buffer;
   private final CompressionFormat format;
   private final int originalLength;
 
@@ -35,14 +51,97 @@ public class Payload {
     return new Payload(data, format, originalLength);
   }
 
+  /**
+   * @param data the bytes from its position to its limit, which aren't copied:
+   *             they must not change while the payload is in use.
+   */
+  public static Payload of(ByteBuffer data, CompressionFormat format, int originalLength) {
+    if (data.hasArray() && data.arrayOffset() == 0 && data.position() == 0
+        && data.limit() == data.array().length) {
+      return new Payload(data.array(), format, originalLength);
+    }
+    return new Payload(data.slice().asReadOnlyBuffer(), format, originalLength);
+  }
+
+  /**
+   * Read the bytes of a payload uploaded as they were compressed,
+   * straight into the array it holds when their length is known.
+   * The length is the one declared by the client, so the array only
+   * grows to it as the bytes arrive.
+   *
+   * @param length the number of bytes to read, or -1 to read the stream to its end.
+   */
+  public static Payload read(InputStream is, int length, CompressionFormat format, int originalLength)
+      throws IOException {
+    if (length < 0) {
+      return new Payload(CompressionService.readAllBytes(is), format, originalLength);
+    }
+    byte[] data = new byte[Math.min(length, INITIAL_READ_LENGTH)];
+    int n = 0;
+    while (n < length) {
+      if (n == data.length) {
+        data = Arrays.copyOf(data, (int)Math.min(length, 2L * data.length));
+      }
+      int read = is.read(data, n, data.length - n);
+      if (read < 0) {
+        throw new EOFException("Payload truncated: " + n + " bytes read, " + length + " expected");
+      }
+      n += read;
+    }
+    return new Payload(data, format, originalLength);
+  }
+
   Payload(byte[] data, CompressionFormat format, int originalLength) {
     this.data = data;
+    this.buffer = null;
+    this.format = format;
+    this.originalLength = originalLength;
+  }
+
+  private Payload(ByteBuffer buffer, CompressionFormat format, int originalLength) {
+    this.data = null;
+    this.buffer = buffer;
     this.format = format;
     this.originalLength = originalLength;
   }
 
+  /**
+   * @return the bytes of the payload, copied if it holds a buffer.
+   */
   public byte[] getData() {
-    return data;
+    return buffer == null ? data : CompressionService.toArray(buffer);
+  }
+
+  /**
+   * @return a read-only view of the bytes of the payload, without copying them.
+   */
+  public ByteBuffer asBuffer() {
+    return buffer().asReadOnlyBuffer();
+  }
+
+  /**
+   * @return the number of bytes of the payload.
+   */
+  public int dataLength() {
+    return buffer == null
+        ? data == null ? 0 : data.length
+        : buffer.remaining();
+  }
+
+  /**
+   * @return this payload if it holds an array, or a copy of it which does.
+   */
+  public Payload toArrayBacked() {
+    return buffer == null ? this : new Payload(getData(), format, originalLength);
+  }
+
+  /**
+   * @return a view of the bytes, backed by the array of the payload if it holds one.
+   */
+  ByteBuffer buffer() {
+    return buffer == null
+        ? ByteBuffer.wrap(data == null ? new byte[0] : data)
+        : buffer.duplicate();
   }
 
   public CompressionFormat getFormat() {
@@ -59,14 +158,16 @@ public class Payload {
     if (o == null || getClass() != o.getClass()) return false;
     Payload payload = (Payload)o;
     return originalLength == payload.originalLength &&
-           Arrays.equals(data, payload.data) &&
+           (buffer == null && payload.buffer == null
+               ? Arrays.equals(data, payload.data)
+               : buffer().equals(payload.buffer())) &&
            format == payload.format;
   }
 
   @Override
   public int hashCode() {
     int result = Objects.hash(format, originalLength);
-    result = 31 * result + Arrays.hashCode(data);
+    result = 31 * result + buffer().hashCode();
     return result;
   }
 
@@ -78,7 +179,34 @@ public class Payload {
            '}';
   }
 
+  /**
+   * @return the SHA-256 of the format, the original length and the data, in hex,
+   * which identifies the identical uploads.
+   */
+  public String contentHash() {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(String.valueOf(format).getBytes(CHARSET));
+      digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, originalLength));
+      digest.update(buffer());
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest.digest()) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   public static String toUtfString(byte[] data) {
     return new String(data, CHARSET);
   }
+
+  public static String toUtfString(ByteBuffer data) {
+    if (data.hasArray()) {
+      return new String(data.array(), data.arrayOffset() + data.position(), data.remaining(), CHARSET);
+    }
+    return CHARSET.decode(data.duplicate()).toString();
+  }
 }
@@ -0,0 +1,85 @@
+package io.rainfall.store.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streams {@link Payload} to and from JSON straight from its bytes,
+ * whether they are held in an array or in a buffer,
+ * in the format Gson would produce by reflection.
+ */
+public class PayloadJsonAdapter extends TypeAdapter<Payload> {
+
+  private static final String DATA = "data";
+  private static final String FORMAT = "format";
+  private static final String ORIGINAL_LENGTH = "originalLength";
+
+  @Override
+  public void write(JsonWriter out, Payload payload) throws IOException {
+    if (payload == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name(DATA).beginArray();
+    ByteBuffer data = payload.buffer();
+    while (data.hasRemaining()) {
+      out.value(data.get());
+    }
+    out.endArray();
+    if (payload.getFormat() != null) {
+      out.name(FORMAT).value(payload.getFormat().name());
+    }
+    out.name(ORIGINAL_LENGTH).value(payload.getOriginalLength());
+    out.endObject();
+  }
+
+  @Override
+  public Payload read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    byte[] data = new byte[0];
+    CompressionFormat format = CompressionFormat.RAW;
+    int originalLength = 0;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case DATA:
+          data = readBytes(in);
+          break;
+        case FORMAT:
+          format = CompressionFormat.valueOf(in.nextString());
+          break;
+        case ORIGINAL_LENGTH:
+          originalLength = in.nextInt();
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return new Payload(data, format, originalLength);
+  }
+
+  private static byte[] readBytes(JsonReader in) throws IOException {
+    byte[] bytes = new byte[1024];
+    int length = 0;
+    in.beginArray();
+    while (in.hasNext()) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, 2 * length);
+      }
+      bytes[length++] = (byte)in.nextInt();
+    }
+    in.endArray();
+    return Arrays.copyOf(bytes, length);
+  }
+}
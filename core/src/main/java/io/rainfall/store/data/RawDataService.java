@@ -1,18 +1,42 @@
 package io.rainfall.store.data;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The payloads are the bytes themselves, so the buffers aren't copied.
+ */
 class RawDataService extends CompressionService {
 
   RawDataService(CompressionFormat format) {
     super(format);
   }
 
+  @Override
+  public Payload compress(ByteBuffer buffer) {
+    return Payload.of(buffer, getFormat(), buffer.remaining());
+  }
+
   @Override
   protected byte[] compressBytes(byte[] bytes) {
     return bytes;
   }
 
   @Override
-  protected byte[] decompressBytes(byte[] bytes, int originalLength) {
-    return bytes;
+  public ByteBuffer decompressToBuffer(Payload payload) throws IOException {
+    return payload.getFormat() == getFormat()
+        ? payload.asBuffer()
+        : super.decompressToBuffer(payload);
+  }
+
+  @Override
+  protected byte[] decompressBytes(ByteBuffer bytes, int originalLength) {
+    return toArray(bytes);
+  }
+
+  @Override
+  protected InputStream decompressStream(ByteBuffer bytes, int originalLength) {
+    return new ByteBufferInputStream(bytes);
   }
 }
@@ -5,8 +5,10 @@ import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -22,8 +24,12 @@ class ZipService extends CompressionService {
 
   @Override
   public byte[] compressBytes(byte[] bytes) throws IOException {
+    return compressStream(new ByteArrayInputStream(bytes));
+  }
+
+  @Override
+  protected byte[] compressStream(InputStream is) throws IOException {
     try (
-        ByteArrayInputStream is = new ByteArrayInputStream(bytes);
         BufferedReader br = new BufferedReader(new InputStreamReader(is, CHARSET));
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ZipOutputStream zs = new ZipOutputStream(baos);
@@ -48,10 +54,21 @@ class ZipService extends CompressionService {
     }
   }
 
-  protected byte[] decompressBytes(byte[] bytes, int originalLength) throws IOException {
+  /**
+   * The entry is read through {@link LineJoiningInputStream}, so that the stream
+   * holds the same bytes as {@link #decompressBytes(ByteBuffer, int)}.
+   */
+  @Override
+  protected InputStream decompressStream(ByteBuffer bytes, int originalLength) throws IOException {
+    ZipInputStream zs = new ZipInputStream(new ByteBufferInputStream(bytes));
+    zs.getNextEntry();
+    return new LineJoiningInputStream(zs);
+  }
+
+  protected byte[] decompressBytes(ByteBuffer bytes, int originalLength) throws IOException {
     try (
-        ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-        ZipInputStream zs = new ZipInputStream(bais);
+        InputStream is = new ByteBufferInputStream(bytes);
+        ZipInputStream zs = new ZipInputStream(is);
         BufferedReader br = new BufferedReader(new InputStreamReader(zs, CHARSET))
     ) {
       zs.getNextEntry();
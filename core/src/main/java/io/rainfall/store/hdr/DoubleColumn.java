@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Growable column of primitive doubles.
+ */
+final class DoubleColumn {
+
+  private static final double[] EMPTY = new double[0];
+
+  private double[] values;
+  private int size;
+
+  DoubleColumn() {
+    this(EMPTY);
+  }
+
+  private DoubleColumn(double[] values) {
+    this.values = values;
+    this.size = values.length;
+  }
+
+  void add(double value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(16, size * 2));
+    }
+    values[size++] = value;
+  }
+
+  double get(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return values[index];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return a copy of this column, which is not affected by further additions.
+   */
+  DoubleColumn copy() {
+    return new DoubleColumn(Arrays.copyOf(values, size));
+  }
+
+  /**
+   * @return unmodifiable view of this column, boxing the values on access.
+   */
+  List<Double> asList() {
+    return new View();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DoubleColumn that = (DoubleColumn)o;
+    if (size != that.size) return false;
+    for (int i = 0; i < size; i++) {
+      if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(that.values[i])) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 1;
+    for (int i = 0; i < size; i++) {
+      result = 31 * result + Double.hashCode(values[i]);
+    }
+    return result;
+  }
+
+  private class View extends AbstractList<Double> implements RandomAccess {
+
+    @Override
+    public Double get(int index) {
+      return DoubleColumn.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
@@ -16,38 +16,45 @@
 
 package io.rainfall.store.hdr;
 
-import java.util.ArrayList;
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 import static java.util.Collections.emptyList;
-import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
 
+/**
+ * HDR data series, held in primitive columns.
+ * The list getters are views, which box the values on access only.
+ */
+@JsonAdapter(HdrDataJsonAdapter.class)
 public class HdrData {
 
-  private final List<Long> startTimes;
-  private final List<Double> tps;
-  private final List<Double> errors;
-  private final List<Double> means;
-  private final Map<Percentile, List<Double>> timedPercentiles;
-  private final Map<Percentile, Long> roundedPercentiles;
-  private final List<Double> percentilePoints;
-  private final List<Long> percentileValues;
-  private final List<Long> fixedPercentileValues;
+  final LongColumn startTimes;
+  final DoubleColumn tps;
+  final DoubleColumn errors;
+  final DoubleColumn means;
+  final Map<Percentile, DoubleColumn> timedPercentiles;
+  final Map<Percentile, Long> roundedPercentiles;
+  final DoubleColumn percentilePoints;
+  final LongColumn percentileValues;
+  final LongColumn fixedPercentileValues;
 
   private HdrData(Builder builder) {
-    this.startTimes = unmodifiableList(builder.startTimes);
-    this.tps = unmodifiableList(builder.tps);
-    this.errors = unmodifiableList(builder.errors);
-    this.means = unmodifiableList(builder.means);
-    this.timedPercentiles = unmodifiableMap(builder.timedPercentiles);
-    this.roundedPercentiles = unmodifiableMap(builder.roundedPercentiles);
-    this.percentilePoints = unmodifiableList(builder.percentilePoints);
-    this.percentileValues = unmodifiableList(builder.percentileValues);
-    this.fixedPercentileValues = unmodifiableList(builder.fixedPercentileValues);
+    this.startTimes = builder.startTimes.copy();
+    this.tps = builder.tps.copy();
+    this.errors = builder.errors.copy();
+    this.means = builder.means.copy();
+    EnumMap<Percentile, DoubleColumn> timedPercentiles = new EnumMap<>(Percentile.class);
+    builder.timedPercentiles.forEach((p, column) -> timedPercentiles.put(p, column.copy()));
+    this.timedPercentiles = unmodifiableMap(timedPercentiles);
+    this.roundedPercentiles = unmodifiableMap(new EnumMap<>(builder.roundedPercentiles));
+    this.percentilePoints = builder.percentilePoints.copy();
+    this.percentileValues = builder.percentileValues.copy();
+    this.fixedPercentileValues = builder.fixedPercentileValues.copy();
   }
 
   public int size() {
@@ -55,23 +62,24 @@ public class HdrData {
   }
 
   public List<Long> getStartTimes() {
-    return startTimes;
+    return startTimes.asList();
   }
 
   public List<Double> getTps() {
-    return tps;
+    return tps.asList();
   }
 
   public List<Double> getTimedPercentiles(Percentile percentile) {
-    return timedPercentiles.getOrDefault(percentile, emptyList());
+    DoubleColumn column = timedPercentiles.get(percentile);
+    return column == null ? emptyList() : column.asList();
   }
 
   public List<Double> getMeans() {
-    return means;
+    return means.asList();
   }
 
   public List<Double> getErrors() {
-    return errors;
+    return errors.asList();
   }
 
   public long getValueAtPercentile(Percentile percentile) {
@@ -79,17 +87,15 @@ public class HdrData {
   }
 
   public List<Double> getPercentilePoints() {
-    return percentilePoints;
+    return percentilePoints.asList();
   }
 
   public List<Long> getPercentileValues() {
-    return percentileValues;
+    return percentileValues.asList();
   }
 
   public double[] getFixedPercentileValues() {
-    return fixedPercentileValues.stream()
-        .mapToDouble(n -> (double)n)
-        .toArray();
+    return fixedPercentileValues.toDoubleArray();
   }
 
   @Override
@@ -118,15 +124,15 @@ public class HdrData {
   }
 
   public static class Builder {
-    private final List<Long> startTimes = new ArrayList<>();
-    private final List<Double> tps = new ArrayList<>();
-    private final List<Double> means = new ArrayList<>();
-    private final List<Double> errors = new ArrayList<>();
-    private final EnumMap<Percentile, List<Double>> timedPercentiles = new EnumMap<>(Percentile.class);
+    private final LongColumn startTimes = new LongColumn();
+    private final DoubleColumn tps = new DoubleColumn();
+    private final DoubleColumn means = new DoubleColumn();
+    private final DoubleColumn errors = new DoubleColumn();
+    private final EnumMap<Percentile, DoubleColumn> timedPercentiles = new EnumMap<>(Percentile.class);
     private final EnumMap<Percentile, Long> roundedPercentiles = new EnumMap<>(Percentile.class);
-    private final List<Double> percentilePoints = new ArrayList<>();
-    private final List<Long> percentileValues = new ArrayList<>();
-    private final List<Long> fixedPercentileValues = new ArrayList<>();
+    private final DoubleColumn percentilePoints = new DoubleColumn();
+    private final LongColumn percentileValues = new LongColumn();
+    private final LongColumn fixedPercentileValues = new LongColumn();
 
     public Builder addStartTime(long startTime) {
       this.startTimes.add(startTime);
@@ -139,7 +145,7 @@ public class HdrData {
     }
 
     public Builder addTimedPercentile(Percentile percentile, double value) {
-      this.timedPercentiles.computeIfAbsent(percentile, p -> new ArrayList<>())
+      this.timedPercentiles.computeIfAbsent(percentile, p -> new DoubleColumn())
           .add(value);
       return this;
     }
@@ -159,17 +165,37 @@ public class HdrData {
       return this;
     }
 
+    public Builder roundedPercentile(Percentile percentile, long value) {
+      this.roundedPercentiles.put(percentile, value);
+      return this;
+    }
+
     public Builder addPercentile(double point, long value) {
       this.percentilePoints.add(point);
       this.percentileValues.add(value);
       return this;
     }
 
+    Builder addPercentilePoint(double point) {
+      this.percentilePoints.add(point);
+      return this;
+    }
+
+    Builder addPercentileValue(long value) {
+      this.percentileValues.add(value);
+      return this;
+    }
+
     public Builder fixedPercentileValues(List<Long> values) {
       this.fixedPercentileValues.addAll(values);
       return this;
     }
 
+    public Builder addFixedPercentileValue(long value) {
+      this.fixedPercentileValues.add(value);
+      return this;
+    }
+
     public HdrData build() {
       return new HdrData(this);
     }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Streams {@link HdrData} to and from JSON straight from its primitive columns,
+ * in the format Gson would produce by reflection.
+ */
+public class HdrDataJsonAdapter extends TypeAdapter<HdrData> {
+
+  private static final String START_TIMES = "startTimes";
+  private static final String TPS = "tps";
+  private static final String ERRORS = "errors";
+  private static final String MEANS = "means";
+  private static final String TIMED_PERCENTILES = "timedPercentiles";
+  private static final String ROUNDED_PERCENTILES = "roundedPercentiles";
+  private static final String PERCENTILE_POINTS = "percentilePoints";
+  private static final String PERCENTILE_VALUES = "percentileValues";
+  private static final String FIXED_PERCENTILE_VALUES = "fixedPercentileValues";
+
+  @Override
+  public void write(JsonWriter out, HdrData hdrData) throws IOException {
+    if (hdrData == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    writeColumn(out.name(START_TIMES), hdrData.startTimes);
+    writeColumn(out.name(TPS), hdrData.tps);
+    writeColumn(out.name(ERRORS), hdrData.errors);
+    writeColumn(out.name(MEANS), hdrData.means);
+    out.name(TIMED_PERCENTILES).beginObject();
+    for (Map.Entry<Percentile, DoubleColumn> entry : hdrData.timedPercentiles.entrySet()) {
+      writeColumn(out.name(entry.getKey().name()), entry.getValue());
+    }
+    out.endObject();
+    out.name(ROUNDED_PERCENTILES).beginObject();
+    for (Map.Entry<Percentile, Long> entry : hdrData.roundedPercentiles.entrySet()) {
+      out.name(entry.getKey().name()).value((long)entry.getValue());
+    }
+    out.endObject();
+    writeColumn(out.name(PERCENTILE_POINTS), hdrData.percentilePoints);
+    writeColumn(out.name(PERCENTILE_VALUES), hdrData.percentileValues);
+    writeColumn(out.name(FIXED_PERCENTILE_VALUES), hdrData.fixedPercentileValues);
+    out.endObject();
+  }
+
+  private static void writeColumn(JsonWriter out, LongColumn column) throws IOException {
+    out.beginArray();
+    for (int i = 0; i < column.size(); i++) {
+      out.value(column.get(i));
+    }
+    out.endArray();
+  }
+
+  private static void writeColumn(JsonWriter out, DoubleColumn column) throws IOException {
+    out.beginArray();
+    for (int i = 0; i < column.size(); i++) {
+      double value = column.get(i);
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        throw new IllegalArgumentException(value
+                                           + " is not a valid double value as per JSON specification.");
+      }
+      out.value(value);
+    }
+    out.endArray();
+  }
+
+  @Override
+  public HdrData read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    HdrData.Builder builder = HdrData.builder();
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case START_TIMES:
+          readLongs(in, builder::addStartTime);
+          break;
+        case TPS:
+          readDoubles(in, builder::addTps);
+          break;
+        case ERRORS:
+          readDoubles(in, builder::addError);
+          break;
+        case MEANS:
+          readDoubles(in, builder::addMean);
+          break;
+        case TIMED_PERCENTILES:
+          in.beginObject();
+          while (in.hasNext()) {
+            Percentile percentile = Percentile.valueOf(in.nextName());
+            readDoubles(in, value -> builder.addTimedPercentile(percentile, value));
+          }
+          in.endObject();
+          break;
+        case ROUNDED_PERCENTILES:
+          in.beginObject();
+          while (in.hasNext()) {
+            Percentile percentile = Percentile.valueOf(in.nextName());
+            builder.roundedPercentile(percentile, in.nextLong());
+          }
+          in.endObject();
+          break;
+        case PERCENTILE_POINTS:
+          readDoubles(in, builder::addPercentilePoint);
+          break;
+        case PERCENTILE_VALUES:
+          readLongs(in, builder::addPercentileValue);
+          break;
+        case FIXED_PERCENTILE_VALUES:
+          readLongs(in, builder::addFixedPercentileValue);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return builder.build();
+  }
+
+  private static void readLongs(JsonReader in, LongConsumer consumer) throws IOException {
+    in.beginArray();
+    while (in.hasNext()) {
+      consumer.accept(in.nextLong());
+    }
+    in.endArray();
+  }
+
+  private static void readDoubles(JsonReader in, DoubleConsumer consumer) throws IOException {
+    in.beginArray();
+    while (in.hasNext()) {
+      consumer.accept(in.nextDouble());
+    }
+    in.endArray();
+  }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Byte-level reader of an HDR histogram log, yielding the interval histograms
+ * of {@link org.HdrHistogram.HistogramLogReader}, with the same time stamps and tags.
+ * <p>
+ * The lines are read into a reused buffer and the payloads are decoded from base64
+ * into another, so that only the histograms themselves are allocated per interval.
+ * The lines that can't be parsed are skipped, as in {@link IntervalScanner}.
+ */
+class HistogramLogParser implements Iterator<Histogram> {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final byte[] START_TIME = ascii("#[StartTime:");
+  private static final byte[] BASE_TIME = ascii("#[BaseTime:");
+  private static final byte[] LEGEND = ascii("\"StartTimestamp\"");
+  private static final byte[] TAG = ascii("Tag=");
+  private static final double ONE_YEAR_IN_SECONDS = 365 * 24 * 3600.0;
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final double[] POWERS_OF_TEN = new double[23];
+  private static final byte[] BASE64 = new byte[128];
+
+  static {
+    POWERS_OF_TEN[0] = 1.0;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+    Arrays.fill(BASE64, (byte)-1);
+    byte[] alphabet = ascii("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+    for (int i = 0; i < alphabet.length; i++) {
+      BASE64[alphabet[i]] = (byte)i;
+    }
+  }
+
+  private final InputStream is;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position = 0;
+  private int limit = 0;
+
+  private byte[] line = new byte[256];
+  private int lineStart;
+  private int lineEnd;
+  private int cursor;
+
+  private byte[] decoded = new byte[256];
+  private ByteBuffer decodedBuffer = ByteBuffer.wrap(decoded);
+
+  private double startTimeSec = 0.0;
+  private boolean observedStartTime = false;
+  private double baseTimeSec = 0.0;
+  private boolean observedBaseTime = false;
+
+  private Histogram next;
+
+  HistogramLogParser(InputStream is) {
+    this.is = is;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      next = readHistogram();
+    }
+    return next != null;
+  }
+
+  @Override
+  public Histogram next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Histogram histogram = next;
+    next = null;
+    return histogram;
+  }
+
+  private Histogram readHistogram() {
+    while (readLine()) {
+      if (lineStart == lineEnd || startsWith(LEGEND)) {
+        continue;
+      }
+      try {
+        if (line[lineStart] == '#') {
+          readComment();
+        } else {
+          return parseInterval();
+        }
+      } catch (NumberFormatException | DataFormatException e) {
+        // not a valid interval line, skipped
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Read the next line, trimmed, into the line buffer.
+   *
+   * @return false at the end of the log.
+   */
+  private boolean readLine() {
+    int length = 0;
+    boolean read = false;
+    while (true) {
+      if (position == limit && !fill()) {
+        break;
+      }
+      read = true;
+      byte b = buffer[position++];
+      if (b == '\n') {
+        break;
+      }
+      if (length == line.length) {
+        line = Arrays.copyOf(line, 2 * length);
+      }
+      line[length++] = b;
+    }
+    lineStart = 0;
+    lineEnd = length;
+    while (lineStart < lineEnd && line[lineStart] <= ' ') {
+      lineStart++;
+    }
+    while (lineEnd > lineStart && line[lineEnd - 1] <= ' ') {
+      lineEnd--;
+    }
+    return read;
+  }
+
+  private boolean fill() {
+    try {
+      int n;
+      do {
+        n = is.read(buffer);
+      } while (n == 0);
+      position = 0;
+      limit = Math.max(n, 0);
+      return n > 0;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void readComment() {
+    if (startsWith(START_TIME)) {
+      startTimeSec = parseTime(START_TIME);
+      observedStartTime = true;
+    } else if (startsWith(BASE_TIME)) {
+      baseTimeSec = parseTime(BASE_TIME);
+      observedBaseTime = true;
+    }
+  }
+
+  private double parseTime(byte[] prefix) {
+    int from = lineStart + prefix.length;
+    while (from < lineEnd && line[from] == ' ') {
+      from++;
+    }
+    int to = from;
+    while (to < lineEnd && line[to] != ' ') {
+      to++;
+    }
+    return parseDouble(from, to);
+  }
+
+  private Histogram parseInterval() throws DataFormatException {
+    cursor = lineStart;
+    String tag = null;
+    if (startsWith(TAG)) {
+      int end = fieldEnd();
+      tag = new String(line, lineStart + TAG.length, end - lineStart - TAG.length, US_ASCII);
+      cursor = end + 1;
+    }
+    double logTimeStampInSec = nextDouble();
+    double intervalLengthSec = nextDouble();
+    nextDouble(); // max value, deduced from the histogram
+    int payloadStart = cursor;
+    int payloadEnd = fieldEnd();
+    if (payloadStart >= payloadEnd) {
+      throw new NumberFormatException("Missing histogram payload");
+    }
+
+    if (!observedStartTime) {
+      startTimeSec = logTimeStampInSec;
+      observedStartTime = true;
+    }
+    if (!observedBaseTime) {
+      baseTimeSec = logTimeStampInSec < startTimeSec - ONE_YEAR_IN_SECONDS
+          ? startTimeSec
+          : 0.0;
+      observedBaseTime = true;
+    }
+    double absoluteStartTimeStampSec = logTimeStampInSec + baseTimeSec;
+    double absoluteEndTimeStampSec = absoluteStartTimeStampSec + intervalLengthSec;
+
+    int length = decodeBase64(payloadStart, payloadEnd);
+    decodedBuffer.clear();
+    decodedBuffer.limit(length);
+    Histogram histogram = Histogram.decodeFromCompressedByteBuffer(decodedBuffer, 0);
+    histogram.setStartTimeStamp((long)(absoluteStartTimeStampSec * 1000.0));
+    histogram.setEndTimeStamp((long)(absoluteEndTimeStampSec * 1000.0));
+    histogram.setTag(tag);
+    return histogram;
+  }
+
+  private double nextDouble() {
+    int end = fieldEnd();
+    double value = parseDouble(cursor, end);
+    cursor = end + 1;
+    return value;
+  }
+
+  private int fieldEnd() {
+    int end = cursor;
+    while (end < lineEnd && line[end] != ',') {
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * Parse a decimal number without allocating, when it is exactly the quotient
+   * of two doubles, so that it is rounded as by {@link Double#parseDouble(String)}.
+   */
+  private double parseDouble(int from, int to) {
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean fraction = false;
+    boolean negative = from < to && line[from] == '-';
+    for (int i = negative ? from + 1 : from; i < to; i++) {
+      byte b = line[i];
+      if (b >= '0' && b <= '9') {
+        mantissa = 10 * mantissa + (b - '0');
+        if (mantissa >= MAX_EXACT_MANTISSA) {
+          return parseDoubleString(from, to);
+        }
+        digits++;
+        if (fraction) {
+          fractionDigits++;
+        }
+      } else if (b == '.' && !fraction) {
+        fraction = true;
+      } else {
+        return parseDoubleString(from, to);
+      }
+    }
+    if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+      return parseDoubleString(from, to);
+    }
+    double value = mantissa / POWERS_OF_TEN[fractionDigits];
+    return negative ? -value : value;
+  }
+
+  private double parseDoubleString(int from, int to) {
+    return Double.parseDouble(new String(line, from, to - from, US_ASCII));
+  }
+
+  /**
+   * Decode the base64 payload into the reused buffer.
+   *
+   * @return the length of the decoded payload.
+   */
+  private int decodeBase64(int from, int to) throws DataFormatException {
+    int capacity = (to - from) / 4 * 3 + 3;
+    if (decoded.length < capacity) {
+      decoded = new byte[Math.max(capacity, 2 * decoded.length)];
+      decodedBuffer = ByteBuffer.wrap(decoded);
+    }
+    int length = 0;
+    int bits = 0;
+    int accumulator = 0;
+    for (int i = from; i < to; i++) {
+      byte b = line[i];
+      if (b == '=') {
+        break;
+      }
+      int value = b >= 0 ? BASE64[b] : -1;
+      if (value < 0) {
+        throw new DataFormatException("Invalid base64 character: " + (char)(b & 0xFF));
+      }
+      accumulator = (accumulator << 6) | value;
+      bits += 6;
+      if (bits >= 8) {
+        bits -= 8;
+        decoded[length++] = (byte)(accumulator >> bits);
+        accumulator &= (1 << bits) - 1;
+      }
+    }
+    return length;
+  }
+
+  private boolean startsWith(byte[] prefix) {
+    if (lineEnd - lineStart < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (line[lineStart + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(US_ASCII);
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.zip.DataFormatException;
+
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.stream.StreamSupport.longStream;
+import static java.util.zip.Deflater.DEFAULT_COMPRESSION;
+
+/**
+ * Binary sequence of interval histograms, decoded once from an HDR histogram log,
+ * so that they can be read back without parsing the log text.
+ * <p>
+ * The sequence starts with a magic number, which can't start a log,
+ * followed by, for each interval: the start and end time stamps, the length of the
+ * compressed histogram, and the histogram itself, compressed as in the log.
+ */
+public class HistogramSequence {
+
+  private static final int MAGIC = 0x89485351;
+
+  private HistogramSequence() {
+  }
+
+  /**
+   * @param log HDR histogram log.
+   * @return the sequence of interval histograms of the log.
+   */
+  public static byte[] encode(InputStream log) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(MAGIC);
+      HistogramLogParser parser = new HistogramLogParser(log);
+      ByteBuffer buffer = ByteBuffer.allocate(0);
+      while (parser.hasNext()) {
+        Histogram histogram = parser.next();
+        int capacity = histogram.getNeededByteBufferCapacity();
+        if (buffer.capacity() < capacity) {
+          buffer = ByteBuffer.allocate(capacity);
+        }
+        buffer.clear();
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer, DEFAULT_COMPRESSION);
+        out.writeLong(histogram.getStartTimeStamp());
+        out.writeLong(histogram.getEndTimeStamp());
+        out.writeInt(length);
+        out.write(buffer.array(), 0, length);
+      }
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Check, without consuming it, whether the stream holds a sequence.
+   *
+   * @param is stream supporting mark and reset.
+   */
+  static boolean isSequence(InputStream is) {
+    if (!is.markSupported()) {
+      throw new IllegalArgumentException("Mark not supported by " + is);
+    }
+    try {
+      is.mark(Integer.BYTES);
+      try {
+        return new DataInputStream(is).readInt() == MAGIC;
+      } catch (EOFException e) {
+        return false;
+      } finally {
+        is.reset();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static Iterator<Histogram> histograms(InputStream is) {
+    DataInputStream in = open(is);
+    return new Iterator<Histogram>() {
+
+      private boolean hasNext = readStartTimeStamp();
+      private long startTimeStamp;
+
+      private boolean readStartTimeStamp() {
+        try {
+          startTimeStamp = in.readLong();
+          return true;
+        } catch (EOFException e) {
+          return false;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        return hasNext;
+      }
+
+      @Override
+      public Histogram next() {
+        if (!hasNext) {
+          throw new NoSuchElementException();
+        }
+        try {
+          long endTimeStamp = in.readLong();
+          byte[] compressed = new byte[in.readInt()];
+          in.readFully(compressed);
+          Histogram histogram = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(compressed), 0);
+          histogram.setStartTimeStamp(startTimeStamp);
+          histogram.setEndTimeStamp(endTimeStamp);
+          hasNext = readStartTimeStamp();
+          return histogram;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } catch (DataFormatException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Start time stamps of the intervals, read without decoding the histograms.
+   */
+  static LongStream startTimeStamps(InputStream is) {
+    DataInputStream in = open(is);
+    return longStream(new Spliterators.AbstractLongSpliterator(Long.MAX_VALUE, ORDERED | NONNULL) {
+      @Override
+      public boolean tryAdvance(LongConsumer action) {
+        try {
+          long startTimeStamp;
+          try {
+            startTimeStamp = in.readLong();
+          } catch (EOFException e) {
+            return false;
+          }
+          in.readLong();
+          skipFully(in, in.readInt());
+          action.accept(startTimeStamp);
+          return true;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }, false).onClose(() -> close(in));
+  }
+
+  private static DataInputStream open(InputStream is) {
+    try {
+      DataInputStream in = new DataInputStream(is);
+      if (in.readInt() != MAGIC) {
+        throw new IllegalArgumentException("Not a histogram sequence.");
+      }
+      return in;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void skipFully(DataInputStream in, int length) throws IOException {
+    int remaining = length;
+    while (remaining > 0) {
+      int skipped = in.skipBytes(remaining);
+      if (skipped <= 0) {
+        throw new EOFException();
+      }
+      remaining -= skipped;
+    }
+  }
+
+  private static void close(InputStream is) {
+    try {
+      is.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -18,57 +18,110 @@ package io.rainfall.store.hdr;
 
 import org.HdrHistogram.Histogram;
 import org.HdrHistogram.HistogramIterationValue;
-import org.HdrHistogram.HistogramLogReader;
 import org.apache.commons.math3.stat.inference.KolmogorovSmirnovTest;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
-import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import static java.util.Collections.unmodifiableSet;
-import static java.util.Spliterator.ORDERED;
 import static java.util.concurrent.CompletableFuture.supplyAsync;
-import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
-import static java.util.stream.Collectors.toSet;
 import static java.util.stream.StreamSupport.stream;
 
 public class HistogramService {
 
+  public static final int DEFAULT_MAX_DATA_POINTS = 200;
+
   private static final int NUMBER_OF_SIGNIFICANT_VALUE_DIGITS = 3;
-  private static final int DEFAULT_MAX_DATA_POINTS = 200;
   private static final int N_THREADS = 1;
   private static final int NUM_FIXED_PERCENTILE_POINTS = 10;
+  private static final int DECODE_BATCH_SIZE = 16;
 
-  private final Executor executor = Executors.newFixedThreadPool(N_THREADS);
+  private final ExecutorService executor;
+  private final ExecutorService decodeExecutor;
 
   private final KolmogorovSmirnovTest statisticsTest = new KolmogorovSmirnovTest();
 
+  public HistogramService() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param decodeThreads number of threads decoding the logs,
+   *                      so that the logs aggregated together are decoded in parallel.
+   */
+  public HistogramService(int decodeThreads) {
+    this(decodeThreads, N_THREADS);
+  }
+
+  /**
+   * @param decodeThreads      number of threads decoding the logs,
+   *                           so that the logs aggregated together are decoded in parallel.
+   * @param aggregationThreads number of HDR data sets computed concurrently,
+   *                           e.g. for the runs of a comparison.
+   */
+  public HistogramService(int decodeThreads, int aggregationThreads) {
+    if (decodeThreads <= 0) {
+      throw new IllegalArgumentException("decodeThreads must be positive, was " + decodeThreads);
+    }
+    if (aggregationThreads <= 0) {
+      throw new IllegalArgumentException("aggregationThreads must be positive, was " + aggregationThreads);
+    }
+    this.decodeExecutor = Executors.newFixedThreadPool(decodeThreads, daemonThreads("rainfall-decode-"));
+    this.executor = Executors.newFixedThreadPool(aggregationThreads, daemonThreads("rainfall-aggregate-"));
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Stop the decoding and aggregation threads, once the service isn't used anymore.
+   */
+  public void shutdown() {
+    decodeExecutor.shutdown();
+    executor.shutdown();
+  }
+
+  /**
+   * @param supplier HDR histogram log, or {@link HistogramSequence} decoded from one.
+   */
   public HdrData readHdrData(Supplier<InputStream> supplier) {
     return readHdrData(supplier, DEFAULT_MAX_DATA_POINTS);
   }
 
   HdrData readHdrData(Supplier<InputStream> supplier, int maxDataPoints) {
     checkMaxDataPoints(maxDataPoints);
-    return supplyAndGet(() -> toHdrData(compactTo(readLog(supplier), maxDataPoints)));
+    return supplyAndGet(() -> {
+      try (Stream<Histogram> compacted = compactTo(readLog(supplier), maxDataPoints, () -> countIntervals(supplier))) {
+        return toHdrData(compacted);
+      }
+    });
   }
 
   private HdrData supplyAndGet(Supplier<HdrData> hdrSupplier) {
@@ -82,14 +135,25 @@ public class HistogramService {
   }
 
   private Stream<Histogram> readLog(Supplier<InputStream> supplier) {
-    return histograms(supplier.get());
+    return histograms(open(supplier));
+  }
+
+  /**
+   * The logs are either HDR histogram logs or {@link HistogramSequence}s.
+   */
+  private static InputStream open(Supplier<InputStream> supplier) {
+    return markable(supplier.get());
+  }
+
+  static InputStream markable(InputStream is) {
+    return is.markSupported() ? is : new BufferedInputStream(is);
   }
 
   private Stream<Histogram> histograms(InputStream is) {
-    HistogramLogReader logReader = new HistogramLogReader(is);
-    Iterator<Histogram> iterator = histogramIterator(logReader);
-    Spliterator<Histogram> spliterator = Spliterators.spliteratorUnknownSize(iterator, ORDERED);
+    PrefetchingSpliterator<Histogram> spliterator = new PrefetchingSpliterator<>(
+        intervalHistograms(is), decodeExecutor, DECODE_BATCH_SIZE);
     return stream(spliterator, false).onClose(() -> {
+      spliterator.awaitPending();
       try {
         is.close();
       } catch (IOException e) {
@@ -98,18 +162,13 @@ public class HistogramService {
     });
   }
 
-  private Iterator<Histogram> histogramIterator(HistogramLogReader logReader) {
-    return new Iterator<Histogram>() {
-      @Override
-      public boolean hasNext() {
-        return logReader.hasNext();
-      }
-
-      @Override
-      public Histogram next() {
-        return (Histogram)logReader.nextIntervalHistogram();
-      }
-    };
+  /**
+   * @param is HDR histogram log or {@link HistogramSequence}, supporting mark and reset.
+   */
+  static Iterator<Histogram> intervalHistograms(InputStream is) {
+    return HistogramSequence.isSequence(is)
+        ? HistogramSequence.histograms(is)
+        : new HistogramLogParser(is);
   }
 
   private HdrData toHdrData(Stream<Histogram> reducedList) {
@@ -119,20 +178,35 @@ public class HistogramService {
       addDatapoint(builder, histogram);
       total.add(histogram);
     });
-    builder.roundedPercentiles(percentiles(total));
-    builder.fixedPercentileValues(fixedPercentileValues(total));
+    addPercentiles(builder, total);
+    addDistribution(builder, total);
+    return builder.build();
+  }
+
+  /**
+   * HDR data holding the percentiles of a {@link TotalHistogram}, without time series.
+   */
+  public HdrData readTotalHdrData(byte[] totalHistogram) {
+    Histogram total = TotalHistogram.decode(totalHistogram);
+    HdrData.Builder builder = HdrData.builder();
+    addPercentiles(builder, total);
+    addDistribution(builder, total);
+    return builder.build();
+  }
+
+  private void addDistribution(HdrData.Builder builder, Histogram total) {
     for (HistogramIterationValue value : total.percentiles(5)) {
       double point = value.getPercentileLevelIteratedTo() / 100.0D;
       builder.addPercentile(point, value.getValueIteratedTo());
     }
-    return builder.build();
   }
 
-  private List<Long> fixedPercentileValues(Histogram total) {
-    return fixedPercentilePoints(NUM_FIXED_PERCENTILE_POINTS)
-        .map(n -> n * 100)
-        .map(total::getValueAtPercentile)
-        .collect(toList());
+  private void addPercentiles(HdrData.Builder builder, Histogram total) {
+    for (Percentile percentile : Percentile.values()) {
+      builder.roundedPercentile(percentile, total.getValueAtPercentile(percentile.getValue()));
+    }
+    fixedPercentilePoints(NUM_FIXED_PERCENTILE_POINTS)
+        .forEach(n -> builder.addFixedPercentileValue(total.getValueAtPercentile(n * 100)));
   }
 
   static Stream<Double> fixedPercentilePoints(int num) {
@@ -140,11 +214,6 @@ public class HistogramService {
         .limit(num);
   }
 
-  private Map<Percentile, Long> percentiles(Histogram acc) {
-    return Percentile.all()
-        .collect(toMap(identity(), p -> acc.getValueAtPercentile(p.getValue())));
-  }
-
   private void addDatapoint(HdrData.Builder builder, Histogram histogram) {
     long startTimeStamp = histogram.getStartTimeStamp();
     long durationInMs = histogram.getEndTimeStamp() - startTimeStamp;
@@ -155,10 +224,14 @@ public class HistogramService {
         .addTps(tps)
         .addMean(mean)
         .addError(error);
-    Percentile.all()
-        .forEach(p -> builder.addTimedPercentile(p, histogram.getValueAtPercentile(p.getValue())));
+    for (Percentile percentile : Percentile.values()) {
+      builder.addTimedPercentile(percentile, histogram.getValueAtPercentile(percentile.getValue()));
+    }
   }
 
+  /**
+   * @param inputStreams HDR histogram logs, or {@link HistogramSequence}s decoded from them.
+   */
   public HdrData aggregateHdrData(List<Supplier<InputStream>> inputStreams) {
     return aggregateHdrData(inputStreams, DEFAULT_MAX_DATA_POINTS);
   }
@@ -175,50 +248,89 @@ public class HistogramService {
   }
 
   private HdrData blankHdrData() {
-    Histogram blank = new Histogram(0);
-    return HdrData.builder()
-        .roundedPercentiles(percentiles(blank))
-        .fixedPercentileValues(fixedPercentileValues(blank))
-        .build();
+    HdrData.Builder builder = HdrData.builder();
+    addPercentiles(builder, new Histogram(0));
+    return builder.build();
   }
 
   private HdrData readAndAggregate(List<Supplier<InputStream>> suppliers, int maxDataPoints) {
     return supplyAndGet(() -> {
       List<Stream<Histogram>> components = suppliers.stream().map(this::readLog).collect(toList());
-      return toHdrData(compactTo(aggregate(components), maxDataPoints));
+      try (Stream<Histogram> compacted = compactTo(aggregate(components), maxDataPoints, () -> countAggregatedIntervals(suppliers))) {
+        return toHdrData(compacted);
+      }
     });
   }
 
+  private static long countIntervals(Supplier<InputStream> supplier) {
+    try (LongStream startTimeStamps = startTimeStamps(supplier)) {
+      return startTimeStamps.count();
+    }
+  }
+
+  private static long countAggregatedIntervals(List<Supplier<InputStream>> suppliers) {
+    List<Stream<Long>> components = suppliers.stream()
+        .map(supplier -> startTimeStamps(supplier).boxed())
+        .collect(toList());
+    try (Stream<List<Long>> assemblies = assemble(components, Comparator.naturalOrder())) {
+      return assemblies.count();
+    }
+  }
+
+  private static LongStream startTimeStamps(Supplier<InputStream> supplier) {
+    InputStream is = open(supplier);
+    return HistogramSequence.isSequence(is)
+        ? HistogramSequence.startTimeStamps(is)
+        : IntervalScanner.startTimeStamps(is);
+  }
+
   private static Stream<Histogram> aggregate(List<Stream<Histogram>> inputs) {
-    Stream.Builder<Supplier<Spliterator<Histogram>>> builder = Stream.builder();
+    return assemble(inputs, Comparator.comparing(Histogram::getStartTimeStamp))
+        .map(assembly -> {
+          Histogram h = new Histogram(NUMBER_OF_SIGNIFICANT_VALUE_DIGITS);
+          assembly.forEach(h::add);
+          return h;
+        });
+  }
+
+  /**
+   * Merges the sorted inputs and groups their elements into assemblies
+   * holding one element of each input.
+   * An assembly is restarted when an input repeats before it is complete.
+   */
+  private static <T> Stream<List<T>> assemble(List<Stream<T>> inputs, Comparator<? super T> order) {
+    Stream.Builder<Supplier<Spliterator<Indexed<T>>>> builder = Stream.builder();
     for (int i = 0; i < inputs.size(); i++) {
-      final String tag = Integer.toString(i);
-      builder.add(inputs.get(i).peek(histogram -> histogram.setTag(tag))::spliterator);
+      final int index = i;
+      builder.add(inputs.get(i).map(value -> new Indexed<>(index, value))::spliterator);
     }
-    SortedSpliterator<Histogram> sortedComponents = new SortedSpliterator<>(builder.build(), Comparator.comparing(Histogram::getStartTimeStamp), 0);
+    Comparator<Indexed<T>> indexedOrder = Comparator.comparing(indexed -> indexed.value, order);
+    SortedSpliterator<Indexed<T>> sortedComponents = new SortedSpliterator<>(builder.build(), indexedOrder, 0);
+
+    int completeSize = inputs.size();
 
-    Set<String> completeSet = unmodifiableSet(IntStream.range(0, inputs.size()).mapToObj(Integer::toString).collect(toSet()));
+    Spliterator<List<T>> assembler = new Spliterator<List<T>>() {
 
-    Spliterator<Histogram> aggregator = new Spliterator<Histogram>() {
+      private final Object[] currentAssembly = new Object[completeSize];
+      private final BitSet present = new BitSet(completeSize);
+      private int presentCount = 0;
 
-      private final Map<String, Histogram> currentAssembly = new HashMap<>();
       @Override
-      public boolean tryAdvance(Consumer<? super Histogram> action) {
+      public boolean tryAdvance(Consumer<? super List<T>> action) {
         AtomicBoolean collected = new AtomicBoolean();
         do {
-          if (!sortedComponents.tryAdvance(histogram -> {
-            Histogram existing = currentAssembly.putIfAbsent(histogram.getTag(), histogram);
-            if (existing == null) {
-              if (currentAssembly.keySet().equals(completeSet)) {
-                Histogram h = new Histogram(NUMBER_OF_SIGNIFICANT_VALUE_DIGITS);
-                currentAssembly.values().forEach(h::add);
-                currentAssembly.clear();
-                collected.set(true);
-                action.accept(h);
-              }
-            } else {
-              currentAssembly.clear();
-              currentAssembly.putIfAbsent(histogram.getTag(), histogram);
+          if (!sortedComponents.tryAdvance(indexed -> {
+            if (present.get(indexed.index)) {
+              clear();
+            }
+            present.set(indexed.index);
+            presentCount++;
+            currentAssembly[indexed.index] = indexed.value;
+            if (presentCount == completeSize) {
+              List<T> assembly = assembly();
+              clear();
+              collected.set(true);
+              action.accept(assembly);
             }
           })) {
             return false;
@@ -228,8 +340,19 @@ public class HistogramService {
         return true;
       }
 
+      @SuppressWarnings("unchecked")
+      private List<T> assembly() {
+        return (List<T>)new ArrayList<>(Arrays.asList(currentAssembly));
+      }
+
+      private void clear() {
+        Arrays.fill(currentAssembly, null);
+        present.clear();
+        presentCount = 0;
+      }
+
       @Override
-      public Spliterator<Histogram> trySplit() {
+      public Spliterator<List<T>> trySplit() {
         return null;
       }
 
@@ -239,7 +362,7 @@ public class HistogramService {
         if (unaggregatedSize == Long.MAX_VALUE) {
           return Long.MAX_VALUE;
         } else {
-          return unaggregatedSize / completeSet.size();
+          return unaggregatedSize / completeSize;
         }
       }
 
@@ -249,23 +372,48 @@ public class HistogramService {
       }
     };
 
-    return StreamSupport.stream(aggregator, false);
+    return StreamSupport.stream(assembler, false)
+        .onClose(() -> inputs.forEach(Stream::close));
+  }
+
+  private static final class Indexed<T> {
+    private final int index;
+    private final T value;
+
+    private Indexed(int index, T value) {
+      this.index = index;
+      this.value = value;
+    }
   }
 
-  private static Stream<Histogram> compactTo(Stream<Histogram> histograms, int maxDataPoints) {
+  /**
+   * Reduces the histograms to at most maxDataPoints, in a single pass.
+   * Only the first maxDataPoints + 1 histograms are buffered: if there are more,
+   * the reduction ratio is computed from the interval count, which is much cheaper
+   * to get than collecting the decoded histograms.
+   * The returned stream must be closed, which closes the given one.
+   */
+  static Stream<Histogram> compactTo(Stream<Histogram> histograms, int maxDataPoints, LongSupplier intervalCount) {
+    Spliterator<Histogram> source = histograms.spliterator();
+    List<Histogram> head = new ArrayList<>();
     try {
-      List<Histogram> collected = histograms.collect(toList());
-      if (collected.size() <= maxDataPoints) {
-        return collected.stream();
-      } else {
-        int ratio = (int) Math.ceil(((double) collected.size()) / maxDataPoints);
-        return StreamSupport.stream(new ReducingSpliterator<>(collected.stream().spliterator(), () -> new Histogram(NUMBER_OF_SIGNIFICANT_VALUE_DIGITS), (a, b) -> {
-          a.add(b);
-          return a;
-        }, ratio), false);
+      while (head.size() <= maxDataPoints && source.tryAdvance(head::add)) {
+        // buffering the head
+      }
+      if (head.size() <= maxDataPoints) {
+        histograms.close();
+        return head.stream();
       }
-    } finally {
+      int ratio = (int) Math.ceil(((double) intervalCount.getAsLong()) / maxDataPoints);
+      Stream<Histogram> all = Stream.concat(head.stream(), StreamSupport.stream(source, false));
+      return StreamSupport.stream(new ReducingSpliterator<>(all.spliterator(), () -> new Histogram(NUMBER_OF_SIGNIFICANT_VALUE_DIGITS), (a, b) -> {
+        a.add(b);
+        return a;
+      }, Math.max(1, ratio)), false)
+          .onClose(histograms::close);
+    } catch (RuntimeException e) {
       histograms.close();
+      throw e;
     }
   }
 
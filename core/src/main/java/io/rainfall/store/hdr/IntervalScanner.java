@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.stream.StreamSupport.longStream;
+
+/**
+ * Cheap scan of an HDR histogram log, which reads the interval
+ * start time stamps without decoding the histograms.
+ * The time stamps are computed as in {@link org.HdrHistogram.HistogramLogReader}.
+ */
+class IntervalScanner extends Spliterators.AbstractLongSpliterator {
+
+  private static final String START_TIME = "#[StartTime:";
+  private static final String BASE_TIME = "#[BaseTime:";
+  private static final String LEGEND = "\"StartTimestamp\"";
+  private static final String TAG = "Tag=";
+  private static final double ONE_YEAR_IN_SECONDS = 365 * 24 * 3600.0;
+
+  private final BufferedReader reader;
+
+  private double startTimeSec = 0.0;
+  private boolean observedStartTime = false;
+  private double baseTimeSec = 0.0;
+  private boolean observedBaseTime = false;
+
+  private IntervalScanner(InputStream is) {
+    super(Long.MAX_VALUE, ORDERED | NONNULL);
+    this.reader = new BufferedReader(new InputStreamReader(is, US_ASCII));
+  }
+
+  /**
+   * Start time stamps of the intervals, in milliseconds.
+   *
+   * @param is HDR histogram log; closed when the stream is closed.
+   * @return stream of start time stamps.
+   */
+  static LongStream startTimeStamps(InputStream is) {
+    IntervalScanner scanner = new IntervalScanner(is);
+    return longStream(scanner, false)
+        .onClose(scanner::close);
+  }
+
+  @Override
+  public boolean tryAdvance(LongConsumer action) {
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith(LEGEND)) {
+          continue;
+        }
+        try {
+          if (line.startsWith("#")) {
+            readComment(line);
+          } else {
+            action.accept(startTimeStamp(line));
+            return true;
+          }
+        } catch (NumberFormatException e) {
+          // not a valid interval line, skipped as in HistogramLogReader
+        }
+      }
+      return false;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void readComment(String line) {
+    if (line.startsWith(START_TIME)) {
+      startTimeSec = parseTime(line, START_TIME);
+      observedStartTime = true;
+    } else if (line.startsWith(BASE_TIME)) {
+      baseTimeSec = parseTime(line, BASE_TIME);
+      observedBaseTime = true;
+    }
+  }
+
+  private static double parseTime(String line, String prefix) {
+    return Double.parseDouble(firstField(line.substring(prefix.length()).trim(), ' '));
+  }
+
+  private long startTimeStamp(String line) {
+    if (line.startsWith(TAG)) {
+      line = line.substring(line.indexOf(',') + 1);
+    }
+    double logTimeStampInSec = Double.parseDouble(firstField(line, ','));
+    if (!observedStartTime) {
+      startTimeSec = logTimeStampInSec;
+      observedStartTime = true;
+    }
+    if (!observedBaseTime) {
+      baseTimeSec = logTimeStampInSec < startTimeSec - ONE_YEAR_IN_SECONDS
+          ? startTimeSec
+          : 0.0;
+      observedBaseTime = true;
+    }
+    return (long)((logTimeStampInSec + baseTimeSec) * 1000.0);
+  }
+
+  private static String firstField(String s, char separator) {
+    int end = s.indexOf(separator);
+    return end < 0 ? s : s.substring(0, end);
+  }
+
+  private void close() {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
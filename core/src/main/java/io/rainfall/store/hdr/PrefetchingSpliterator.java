@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+/**
+ * Spliterator reading its source in batches on an executor,
+ * one batch ahead of the consumer.
+ * At most one batch is decoded at a time, so the source is never
+ * accessed concurrently, and the batches never block each other,
+ * so any number of these can share a pool of any size.
+ */
+class PrefetchingSpliterator<T> implements Spliterator<T> {
+
+  private final Iterator<T> source;
+  private final Executor executor;
+  private final int batchSize;
+
+  private Iterator<T> current = Collections.emptyIterator();
+  private CompletableFuture<List<T>> next;
+
+  PrefetchingSpliterator(Iterator<T> source, Executor executor, int batchSize) {
+    this.source = source;
+    this.executor = executor;
+    this.batchSize = batchSize;
+    this.next = prefetch();
+  }
+
+  private CompletableFuture<List<T>> prefetch() {
+    return supplyAsync(this::readBatch, executor);
+  }
+
+  private List<T> readBatch() {
+    List<T> batch = new ArrayList<>(batchSize);
+    while (batch.size() < batchSize && source.hasNext()) {
+      batch.add(source.next());
+    }
+    return batch;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (!current.hasNext()) {
+      if (next == null) {
+        return false;
+      }
+      List<T> batch = join(next);
+      next = batch.size() < batchSize ? null : prefetch();
+      current = batch.iterator();
+      if (!current.hasNext()) {
+        return false;
+      }
+    }
+    action.accept(current.next());
+    return true;
+  }
+
+  private static <T> List<T> join(CompletableFuture<List<T>> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      } else {
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Wait for the batch in progress, if any, so that the source
+   * can be safely released.
+   */
+  void awaitPending() {
+    CompletableFuture<List<T>> pending = next;
+    next = null;
+    if (pending != null) {
+      pending.handle((batch, e) -> null).join();
+    }
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    return null;
+  }
+
+  @Override
+  public long estimateSize() {
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED;
+  }
+}
@@ -5,7 +5,6 @@
 
 package io.rainfall.store.hdr;
 
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Spliterator;
@@ -14,6 +13,7 @@ import java.util.function.Function;
 import java.util.function.IntBinaryOperator;
 import java.util.function.IntUnaryOperator;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.util.Collections.singletonList;
@@ -46,22 +46,29 @@ public class SortedSpliterator<T> implements Spliterator<T> {
   private final Comparator<Head<T>> headComparator;
   private final Comparator<? super T> valueComparator;
 
+  /*
+   * Binary min-heap of the non-empty heads, built on the first advance so that
+   * no shard is read before it is needed. Ties are broken on the shard index,
+   * so equal elements are still returned in shard order.
+   */
+  private Head<T>[] heap;
+  private int heapSize;
+
   public SortedSpliterator(Stream<? extends Supplier<? extends Spliterator<T>>> spliterators, Comparator<? super T> comparator, int characteristics) {
-    List<Head<T>> suppliedHeads = spliterators
+    List<? extends Spliterator<T>> suppliedSpliterators = spliterators
             .map((Function<Supplier<? extends Spliterator<T>>, ? extends Spliterator<T>>) Supplier::get)
-            .map(Head::of).collect(toList());
+            .collect(toList());
+    List<Head<T>> suppliedHeads = IntStream.range(0, suppliedSpliterators.size())
+            .mapToObj(i -> Head.of(i, suppliedSpliterators.get(i))).collect(toList());
     if (suppliedHeads.isEmpty()) {
-      this.heads = singletonList(Head.of(emptySpliterator()));
+      this.heads = singletonList(Head.of(0, emptySpliterator()));
     } else {
       this.heads = suppliedHeads;
     }
     this.valueComparator = requireNonNull(comparator);
     this.headComparator = (a, b) -> {
-      if (a.empty() || b.empty()) {
-        return a.empty() ? 1 : -1;
-      } else {
-        return valueComparator.compare(a.peek(), b.peek());
-      }
+      int c = valueComparator.compare(a.peek(), b.peek());
+      return c == 0 ? Integer.compare(a.index, b.index) : c;
     };
     this.characteristics = heads.stream().mapToInt(h -> h.spliterator().characteristics())
             .reduce(CHARACTERISTIC_IDENTITY.applyAsInt(characteristics) , CHARACTERISTIC_MERGE);
@@ -74,15 +81,51 @@ public class SortedSpliterator<T> implements Spliterator<T> {
 
   @Override
   public boolean tryAdvance(Consumer<? super T> action) {
-    Head<T> minHead = Collections.min(heads, headComparator);
-    if (minHead.empty()) {
+    if (heap == null) {
+      buildHeap();
+    }
+    if (heapSize == 0) {
       return false;
     } else {
-      action.accept(minHead.retrieve());
+      Head<T> minHead = heap[0];
+      T value = minHead.retrieve();
+      if (minHead.empty()) {
+        heap[0] = heap[--heapSize];
+        heap[heapSize] = null;
+      }
+      siftDown(0);
+      action.accept(value);
       return true;
     }
   }
 
+  @SuppressWarnings("unchecked")
+  private void buildHeap() {
+    heap = heads.stream().filter(h -> !h.empty()).toArray(Head[]::new);
+    heapSize = heap.length;
+    for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+      siftDown(i);
+    }
+  }
+
+  private void siftDown(int i) {
+    Head<T> head = heap[i];
+    int half = heapSize >>> 1;
+    while (i < half) {
+      int child = (i << 1) + 1;
+      int right = child + 1;
+      if (right < heapSize && headComparator.compare(heap[right], heap[child]) < 0) {
+        child = right;
+      }
+      if (headComparator.compare(head, heap[child]) <= 0) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = head;
+  }
+
   @Override
   public Spliterator<T> trySplit() {
     return null;
@@ -112,15 +155,17 @@ public class SortedSpliterator<T> implements Spliterator<T> {
     private final Object EMPTY_SENTINEL = new Object();
     private final Object CLEAN_SENTINEL = new Object();
 
-    public static <T> Head<T> of(Spliterator<T> spliterator) {
-      return new Head<>(spliterator);
+    public static <T> Head<T> of(int index, Spliterator<T> spliterator) {
+      return new Head<>(index, spliterator);
     }
 
+    private final int index;
     private final Spliterator<T> spliterator;
 
     private Object value = CLEAN_SENTINEL;
 
-    private Head(Spliterator<T> spliterator) {
+    private Head(int index, Spliterator<T> spliterator) {
+      this.index = index;
       this.spliterator = spliterator;
     }
 
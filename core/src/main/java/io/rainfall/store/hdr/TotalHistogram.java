@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.DataFormatException;
+
+import static java.util.zip.Deflater.DEFAULT_COMPRESSION;
+
+/**
+ * Compressed histogram totalling all the intervals of one or more outputs,
+ * so that the percentiles of a whole run can be read without its outputs.
+ */
+public class TotalHistogram {
+
+  private static final int NUMBER_OF_SIGNIFICANT_VALUE_DIGITS = 3;
+
+  private TotalHistogram() {
+  }
+
+  /**
+   * @param total      compressed total, or null for none.
+   * @param histograms HDR histogram log, or {@link HistogramSequence}.
+   * @return the compressed total with all the intervals of the histograms added.
+   */
+  public static byte[] add(byte[] total, InputStream histograms) {
+    Histogram histogram = total == null
+        ? new Histogram(NUMBER_OF_SIGNIFICANT_VALUE_DIGITS)
+        : decode(total);
+    Iterator<Histogram> intervals = HistogramService.intervalHistograms(HistogramService.markable(histograms));
+    while (intervals.hasNext()) {
+      histogram.add(intervals.next());
+    }
+    return encode(histogram);
+  }
+
+  static Histogram decode(byte[] total) {
+    try {
+      Histogram histogram = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(total), 0);
+      histogram.setAutoResize(true);
+      return histogram;
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Invalid total histogram.", e);
+    }
+  }
+
+  private static byte[] encode(Histogram histogram) {
+    ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+    int length = histogram.encodeIntoCompressedByteBuffer(buffer, DEFAULT_COMPRESSION);
+    return Arrays.copyOf(buffer.array(), length);
+  }
+}
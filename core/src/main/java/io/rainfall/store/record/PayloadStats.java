@@ -0,0 +1,84 @@
+package io.rainfall.store.record;
+
+import java.util.Objects;
+
+/**
+ * Deduplication of the payloads: the identical uploads are stored once,
+ * with the number of logs referencing them.
+ */
+public class PayloadStats {
+
+  private final long payloads;
+  private final long references;
+  private final long storedBytes;
+  private final long referencedBytes;
+  private final double dedupRatio;
+
+  /**
+   * @param payloads        number of payloads stored.
+   * @param references      number of logs referencing them.
+   * @param storedBytes     size of the payloads stored.
+   * @param referencedBytes size the payloads would take if stored for each log.
+   */
+  public PayloadStats(long payloads, long references, long storedBytes, long referencedBytes) {
+    this.payloads = payloads;
+    this.references = references;
+    this.storedBytes = storedBytes;
+    this.referencedBytes = referencedBytes;
+    this.dedupRatio = storedBytes == 0 ? 1.0 : (double)referencedBytes / storedBytes;
+  }
+
+  public long getPayloads() {
+    return payloads;
+  }
+
+  public long getReferences() {
+    return references;
+  }
+
+  public long getStoredBytes() {
+    return storedBytes;
+  }
+
+  public long getReferencedBytes() {
+    return referencedBytes;
+  }
+
+  /**
+   * @return the referenced bytes per stored byte, 1 without duplicates.
+   */
+  public double getDedupRatio() {
+    return dedupRatio;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PayloadStats that = (PayloadStats)o;
+    return payloads == that.payloads &&
+           references == that.references &&
+           storedBytes == that.storedBytes &&
+           referencedBytes == that.referencedBytes;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(payloads, references, storedBytes, referencedBytes);
+  }
+
+  @Override
+  public String toString() {
+    return "PayloadStats{" +
+           "payloads=" + payloads +
+           ", references=" + references +
+           ", storedBytes=" + storedBytes +
+           ", referencedBytes=" + referencedBytes +
+           ", dedupRatio=" + dedupRatio +
+           '}';
+  }
+}
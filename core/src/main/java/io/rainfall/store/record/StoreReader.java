@@ -1,8 +1,16 @@
 package io.rainfall.store.record;
 
+import io.rainfall.store.data.ChunkedPayload;
+import io.rainfall.store.data.CompressionFormat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
 
+import static io.rainfall.store.data.CompressionFormat.CHUNKED;
+import static java.util.stream.Collectors.toList;
+
 public interface StoreReader {
 
   Optional<TestCaseRec> getTestCase(String uniqueName);
@@ -26,6 +34,66 @@ public interface StoreReader {
 
   List<OutputRec> getOutputsForOperation(long runId, String operation);
 
+  /**
+   * @return the IDs of the outputs of an operation in a run, which a store may list
+   * without reading the outputs.
+   */
+  default List<Long> getOutputIDsForOperation(long runId, String operation) {
+    return getOutputsForOperation(runId, operation)
+        .stream()
+        .map(Rec::getID)
+        .collect(toList());
+  }
+
+  /**
+   * @return the content hash of the payload of the output, which a store may read
+   * without reading the payload, or empty if the output doesn't exist.
+   */
+  default Optional<String> getOutputPayloadHash(long id) {
+    return getOutput(id)
+        .map(rec -> rec.getValue().getPayload().contentHash());
+  }
+
+  /**
+   * @return the compression format of the payload of the output as stored, which a store
+   * may read without reading the payload, or empty if the output doesn't exist.
+   */
+  default Optional<CompressionFormat> getOutputPayloadFormat(long id) {
+    return getOutput(id)
+        .map(rec -> rec.getValue().getPayload().getFormat());
+  }
+
+  /**
+   * @return the chunks of the payload of the output, which a store keeping them apart
+   * reads only as they are decompressed, or empty if the output doesn't exist
+   * or its payload isn't chunked.
+   */
+  default Optional<ChunkedPayload> getOutputChunks(long id) {
+    return getOutput(id)
+        .map(rec -> rec.getValue().getPayload())
+        .filter(payload -> payload.getFormat() == CHUNKED)
+        .map(payload -> {
+          try {
+            return ChunkedPayload.of(payload);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  /**
+   * @return the interval histograms of the output, decoded when it was added,
+   * or empty if the output could not be decoded.
+   */
+  Optional<byte[]> getHistogramSequence(long outputId);
+
+  /**
+   * @return the total histogram of all the outputs of an operation in a run,
+   * or empty unless every output of the operation was decoded and added to it,
+   * in which case the outputs are to be aggregated instead.
+   */
+  Optional<byte[]> getTotalHistogram(long runId, String operation);
+
 
   Optional<StatsRec> getStatsLog(long id);
 
@@ -34,4 +102,9 @@ public interface StoreReader {
   List<StatsRec> getStats(long runId, String localhost);
 
   Optional<Long> getLastBaselineID(String testName);
+
+  /**
+   * @return the counts of the payloads stored once per content and of the logs referencing them.
+   */
+  PayloadStats getPayloadStats();
 }
@@ -2,13 +2,17 @@ package io.rainfall.store.record;
 
 
 import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
 import io.rainfall.store.core.MetricsLog;
 import io.rainfall.store.core.OperationOutput;
 import io.rainfall.store.core.StatsLog;
 import io.rainfall.store.core.TestCase;
 import io.rainfall.store.core.TestRun;
+import io.rainfall.store.data.Payload;
 
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
 
 public interface StoreWriter {
 
@@ -18,8 +22,41 @@ public interface StoreWriter {
 
   long addClientJob(long runId, ClientJob job);
 
+  /**
+   * Add a client job along with its outputs.
+   *
+   * @return the ID of the job.
+   */
+  default long addClientJobBatch(long runId, ClientJobBatch batch) {
+    return addClientJobBatch(runId, batch, (output, payload) -> payload);
+  }
+
+  /**
+   * Add a client job along with its outputs, as they are read, re-encoding
+   * their payloads unless the same contents are already stored.
+   *
+   * @param encoder applied to the payload of each output as uploaded.
+   * @return the ID of the job.
+   */
+  default long addClientJobBatch(long runId, ClientJobBatch batch,
+                                 BiFunction<OperationOutput, Payload, Payload> encoder) {
+    long jobId = addClientJob(runId, batch.getJob());
+    batch.getOutputs()
+        .forEachOrdered(output -> addOutput(jobId, output, payload -> encoder.apply(output, payload)));
+    return jobId;
+  }
+
   long addOutput(long jobId, OperationOutput output);
 
+  /**
+   * Add an output, re-encoding its payload unless the same content is already stored.
+   *
+   * @param encoder applied to the payload as uploaded.
+   */
+  default long addOutput(long jobId, OperationOutput output, UnaryOperator<Payload> encoder) {
+    return addOutput(jobId, output.withPayload(encoder.apply(output.getPayload())));
+  }
+
   long addStatsLog(long runId, StatsLog log);
 
   long addMetricsLog(MetricsLog metricsLog);
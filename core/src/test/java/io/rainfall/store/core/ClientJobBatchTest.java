@@ -0,0 +1,131 @@
+package io.rainfall.store.core;
+
+import io.rainfall.store.data.Payload;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static io.rainfall.store.data.CompressionFormat.LZ4;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ClientJobBatchTest {
+
+  private final ClientJob job = ClientJob.builder()
+      .clientNumber(1)
+      .host("localhost")
+      .symbolicName("localhost-1")
+      .details("details")
+      .build();
+
+  private final OperationOutput get = OperationOutput.builder()
+      .operation("GET")
+      .data("DATA")
+      .build();
+
+  private final OperationOutput miss = OperationOutput.builder()
+      .operation("MISS")
+      .format("csv")
+      .payload(Payload.of(new byte[] { 1, -2, 127 }, LZ4, 10))
+      .build();
+
+  @Test
+  public void testReadWritten() throws IOException {
+    ClientJobBatch batch = ClientJobBatch.builder()
+        .job(job)
+        .output(get)
+        .output(miss)
+        .build();
+
+    ClientJobBatch read = ClientJobBatch.read(new ByteArrayInputStream(write(batch)));
+
+    assertThat(read.getJob(), is(job));
+    assertThat(read.getOutputs().collect(toList()), contains(get, miss));
+  }
+
+  @Test
+  public void testReadWrittenWithoutOutputs() throws IOException {
+    ClientJobBatch batch = ClientJobBatch.builder()
+        .job(job)
+        .build();
+
+    ClientJobBatch read = ClientJobBatch.read(new ByteArrayInputStream(write(batch)));
+
+    assertThat(read.getJob(), is(job));
+    assertThat(read.getOutputs().count(), is(0L));
+  }
+
+  @Test
+  public void testOutputsProducedAsTheyAreWritten() throws IOException {
+    AtomicInteger produced = new AtomicInteger();
+    ClientJobBatch batch = ClientJobBatch.builder()
+        .job(job)
+        .outputs(Stream.of(get, miss).peek(output -> produced.incrementAndGet()))
+        .build();
+    assertThat(produced.get(), is(0));
+
+    byte[] bytes = write(batch);
+    assertThat(produced.get(), is(2));
+
+    Iterator<OperationOutput> outputs = ClientJobBatch.read(new ByteArrayInputStream(bytes))
+        .getOutputs()
+        .iterator();
+    assertThat(outputs.next(), is(get));
+    assertThat(outputs.next(), is(miss));
+    assertThat(outputs.hasNext(), is(false));
+  }
+
+  @Test
+  public void testManyOutputsAddedOneAtATime() throws IOException {
+    ClientJobBatch.Builder builder = ClientJobBatch.builder()
+        .job(job);
+    for (int i = 0; i < 100_000; i++) {
+      builder.output(get);
+    }
+    ClientJobBatch batch = builder.build();
+
+    ClientJobBatch read = ClientJobBatch.read(new ByteArrayInputStream(write(batch)));
+
+    assertThat(read.getOutputs().count(), is(100_000L));
+  }
+
+  @Test
+  public void testReadTruncated() throws IOException {
+    ClientJobBatch batch = ClientJobBatch.builder()
+        .job(job)
+        .output(get)
+        .output(miss)
+        .build();
+    byte[] bytes = write(batch);
+    byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+    Iterator<OperationOutput> outputs = ClientJobBatch.read(new ByteArrayInputStream(truncated))
+        .getOutputs()
+        .iterator();
+    assertThat(outputs.next(), is(get));
+    try {
+      outputs.next();
+      fail();
+    } catch (UncheckedIOException e) {
+      assertThat(e.getCause(), instanceOf(EOFException.class));
+    }
+  }
+
+  private static byte[] write(ClientJobBatch batch) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    batch.write(out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,110 @@
+package io.rainfall.store.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static io.rainfall.store.data.CompressionFormat.DEFLATE;
+import static io.rainfall.store.data.CompressionFormat.HLOG;
+import static io.rainfall.store.data.CompressionFormat.LZ4;
+import static io.rainfall.store.data.CompressionFormat.RAW;
+import static io.rainfall.store.data.CompressionPolicy.BALANCED;
+import static io.rainfall.store.data.CompressionPolicy.MIN_CPU;
+import static io.rainfall.store.data.CompressionPolicy.MIN_SIZE;
+import static io.rainfall.store.data.CompressionServiceFactory.adaptiveService;
+import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Paths.get;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class AdaptiveServiceTest {
+
+  private final Compressor compressor = adaptiveService(MIN_SIZE);
+
+  @Test
+  public void testData() throws IOException {
+    byte[] bytes = "Some data\nto compress\n".getBytes(UTF_8);
+    Payload payload = compressor.compress(bytes);
+    assertArrayEquals(bytes, compressionService(payload.getFormat()).decompress(payload));
+    assertEquals(payload, compressor.compress(new ByteArrayInputStream(bytes)));
+  }
+
+  @Test
+  public void testSmallestFormatChosen() throws IOException {
+    String path = AdaptiveServiceTest.class
+        .getResource("/" + "GET.hlog")
+        .getPath();
+    byte[] bytes = readAllBytes(get(path));
+    Payload payload = compressor.compress(bytes);
+    for (CompressionFormat format : new CompressionFormat[] { RAW, LZ4, DEFLATE, HLOG }) {
+      assertThat(payload.getData().length,
+          lessThanOrEqualTo(compressionService(format).compress(bytes).getData().length));
+    }
+    assertArrayEquals(bytes, compressionService(payload.getFormat()).decompress(payload));
+  }
+
+  @Test
+  public void testRawFormatChosenForRandomBytes() throws IOException {
+    byte[] bytes = new byte[1024];
+    new Random(0).nextBytes(bytes);
+    Payload payload = compressor.compress(bytes);
+    assertThat(payload.getFormat(), is(RAW));
+    assertArrayEquals(bytes, payload.getData());
+  }
+
+  @Test
+  public void testSampledPayload() throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; text.length() <= 4 * AdaptiveService.SAMPLE_SIZE; i++) {
+      text.append("line ").append(i % 100).append('\n');
+    }
+    byte[] bytes = text.toString().getBytes(UTF_8);
+    Payload payload = compressor.compress(bytes);
+    assertThat(payload.getFormat(), not(RAW));
+    assertThat(payload.getData().length, lessThan(bytes.length / 10));
+    assertEquals(payload, compressor.compress(new ByteArrayInputStream(bytes)));
+    assertArrayEquals(bytes, compressionService(payload.getFormat()).decompress(payload));
+  }
+
+  @Test
+  public void testFormatChosenPerPayload() throws IOException {
+    byte[] random = new byte[1024];
+    new Random(0).nextBytes(random);
+    byte[] text = new String(new char[4 * AdaptiveService.SAMPLE_SIZE]).replace('\0', 'a').getBytes(UTF_8);
+    Compressor timed = adaptiveService(BALANCED);
+    for (byte[] bytes : new byte[][] { random, text, random }) {
+      Payload payload = timed.compress(new ByteArrayInputStream(bytes));
+      assertArrayEquals(bytes, compressionService(payload.getFormat()).decompress(payload));
+    }
+
+    assertThat(compressor.compress(random).getFormat(), is(RAW));
+    assertThat(compressor.compress(text).getFormat(), not(RAW));
+    assertThat(compressor.compress(random).getFormat(), is(RAW));
+  }
+
+  @Test
+  public void testPolicies() {
+    AdaptiveService.Estimate raw = estimate(RAW, 10_000, 1_000);
+    AdaptiveService.Estimate fast = estimate(LZ4, 5_000, 100_000);
+    AdaptiveService.Estimate small = estimate(HLOG, 1_000, 10_000_000);
+    assertThat(MIN_SIZE.comparator().compare(small, fast), lessThan(0));
+    assertThat(MIN_CPU.comparator().compare(raw, fast), lessThan(0));
+    assertThat(BALANCED.comparator().compare(fast, raw), lessThan(0));
+    assertThat(BALANCED.comparator().compare(small, fast), greaterThan(0));
+  }
+
+  private static AdaptiveService.Estimate estimate(CompressionFormat format, int length, long nanos) {
+    return new AdaptiveService.Estimate(compressionService(format),
+        Payload.of(new byte[length], format, 2 * length), nanos);
+  }
+}
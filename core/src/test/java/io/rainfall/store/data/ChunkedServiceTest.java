@@ -0,0 +1,134 @@
+package io.rainfall.store.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static io.rainfall.store.data.CompressionFormat.CHUNKED;
+import static io.rainfall.store.data.CompressionFormat.HLOG;
+import static io.rainfall.store.data.CompressionFormat.LZ4;
+import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static io.rainfall.store.data.Payload.toUtfString;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class ChunkedServiceTest extends CompressionServiceTest {
+
+  private static final int CHUNK_SIZE = 64;
+
+  @Override
+  CompressionService createCompressor() {
+    return new ChunkedService(CHUNKED, compressionService(LZ4), CHUNK_SIZE, ForkJoinPool.commonPool(), 2);
+  }
+
+  @Test
+  public void testChunksOfWholeLines() throws IOException {
+    byte[] bytes = "a\nbb\r\nccc\n".getBytes(UTF_8);
+    CompressionService compressionService = new ChunkedService(CHUNKED, compressionService(LZ4), 2,
+        ForkJoinPool.commonPool(), 1);
+    Payload payload = compressionService.compress(bytes);
+    assertThat(ChunkedPayload.of(payload).getChunkCount(), is(3));
+    assertArrayEquals(bytes, compressionService.decompress(payload));
+    assertArrayEquals(bytes, compressionService(CHUNKED).decompress(payload));
+  }
+
+  @Test
+  public void testParallelDecompression() throws IOException, URISyntaxException {
+    byte[] bytes = readLog();
+    CompressionService compressionService = CompressionServiceFactory.chunkedService(HLOG, 64 * 1024);
+    Payload payload = compressionService.compress(bytes);
+    ChunkedPayload chunked = ChunkedPayload.of(payload);
+    assertThat(chunked.getChunkCount(), greaterThan(1));
+    assertArrayEquals(bytes, chunked.decompress(ForkJoinPool.commonPool()));
+    try (InputStream is = chunked.decompressingStream(ForkJoinPool.commonPool(), 4)) {
+      assertArrayEquals(bytes, CompressionService.readAllBytes(is));
+    }
+  }
+
+  @Test
+  public void testTimeWindow() throws IOException, URISyntaxException {
+    byte[] bytes = readLog();
+    Payload payload = CompressionServiceFactory.chunkedService(LZ4, 64 * 1024).compress(bytes);
+    ChunkedPayload chunked = ChunkedPayload.of(payload);
+
+    String log = toUtfString(bytes);
+    String window = read(chunked, 600_000, 601_000);
+    assertThat(window, startsWith("#[Histogram log format version"));
+    assertThat(window, containsString("\n600."));
+    assertThat(window, not(containsString("\n1.")));
+    assertThat(window.length(), lessThan(log.length() / 2));
+
+    assertEquals(log, read(chunked, 0, Long.MAX_VALUE));
+    assertEquals(read(chunked, -2, -1), read(chunked, Long.MAX_VALUE, Long.MAX_VALUE));
+    assertThat(log, startsWith(read(chunked, -2, -1)));
+  }
+
+  @Test
+  public void testChunksStoredApart() throws IOException, URISyntaxException {
+    byte[] bytes = readLog();
+    Payload payload = CompressionServiceFactory.chunkedService(LZ4, 64 * 1024).compress(bytes);
+    ChunkedPayload whole = ChunkedPayload.of(payload);
+    List<ByteBuffer> stored = new ArrayList<>();
+    for (int i = 0; i < whole.getChunkCount(); i++) {
+      stored.add(whole.chunk(i));
+    }
+    Set<Integer> read = ConcurrentHashMap.newKeySet();
+    ChunkedPayload apart = ChunkedPayload.of(whole.index(), chunk -> {
+      read.add(chunk);
+      return stored.get(chunk);
+    });
+
+    assertEquals(read(whole, 600_000, 601_000), read(apart, 600_000, 601_000));
+    assertThat(read.size(), lessThan(apart.getChunkCount() / 2));
+    assertArrayEquals(payload.getData(), apart.join().getData());
+    assertArrayEquals(bytes, apart.decompress(ForkJoinPool.commonPool()));
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingChunk() throws IOException {
+    Payload payload = createCompressor().compress("abc\n".getBytes(UTF_8));
+    ChunkedPayload.of(ChunkedPayload.of(payload).index(), chunk -> ByteBuffer.allocate(0)).join();
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidIndex() throws IOException {
+    Payload payload = createCompressor().compress("abc\n".getBytes(UTF_8));
+    byte[] data = payload.getData();
+    byte[] truncated = new byte[data.length - 1];
+    System.arraycopy(data, 0, truncated, 0, truncated.length);
+    ChunkedPayload.of(Payload.of(truncated, CHUNKED, 4));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testChunkedChunks() {
+    CompressionServiceFactory.chunkedService(CHUNKED, CHUNK_SIZE);
+  }
+
+  private static byte[] readLog() throws IOException, URISyntaxException {
+    return Files.readAllBytes(Paths.get(ChunkedServiceTest.class.getResource("/io/rainfall/store/hdr/150.hlog").toURI()));
+  }
+
+  private static String read(ChunkedPayload chunked, long fromMillis, long toMillis) throws IOException {
+    try (InputStream is = chunked.decompressingStream(fromMillis, toMillis, ForkJoinPool.commonPool(), 2)) {
+      return toUtfString(CompressionService.readAllBytes(is));
+    }
+  }
+}
@@ -2,10 +2,16 @@ package io.rainfall.store.data;
 
 import org.junit.Test;
 
+import static io.rainfall.store.data.CompressionFormat.CHUNKED;
+import static io.rainfall.store.data.CompressionFormat.DEFLATE;
+import static io.rainfall.store.data.CompressionFormat.HLOG;
 import static io.rainfall.store.data.CompressionFormat.LZ4;
 import static io.rainfall.store.data.CompressionFormat.RAW;
 import static io.rainfall.store.data.CompressionFormat.ZIP;
+import static io.rainfall.store.data.CompressionServiceFactory.DEFAULT_CHUNK_SIZE;
+import static io.rainfall.store.data.CompressionServiceFactory.adaptiveService;
 import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static io.rainfall.store.data.CompressionServiceFactory.hlogService;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertThat;
 
@@ -23,6 +29,35 @@ public class CompressionServiceFactoryTest {
     assertThat(lz4Service, instanceOf(Lz4Service.class));
   }
 
+  @Test
+  public void testDeflate() {
+    CompressionService deflateService = compressionService(DEFLATE);
+    assertThat(deflateService, instanceOf(DeflateService.class));
+  }
+
+  @Test
+  public void testHlog() {
+    CompressionService hlogService = compressionService(HLOG);
+    assertThat(hlogService, instanceOf(HlogService.class));
+  }
+
+  @Test
+  public void testChunked() {
+    CompressionService chunkedService = compressionService(CHUNKED);
+    assertThat(chunkedService, instanceOf(ChunkedService.class));
+  }
+
+  @Test
+  public void testHlogService() {
+    assertThat(hlogService(DEFAULT_CHUNK_SIZE), instanceOf(HlogService.class));
+    assertThat(hlogService(DEFAULT_CHUNK_SIZE + 1), instanceOf(ChunkedService.class));
+  }
+
+  @Test
+  public void testAdaptiveService() {
+    assertThat(adaptiveService(CompressionPolicy.BALANCED), instanceOf(AdaptiveService.class));
+  }
+
   @Test
   public void testRaw() {
     CompressionService noop = compressionService(RAW);
@@ -2,8 +2,16 @@ package io.rainfall.store.data;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newInputStream;
 import static java.nio.file.Files.readAllBytes;
 import static java.nio.file.Paths.get;
 import static org.junit.Assert.assertArrayEquals;
@@ -26,5 +34,105 @@ abstract class CompressionServiceTest {
     byte[] decompressed = compressionService.decompress(payload);
     assertArrayEquals(bytes, decompressed);
   }
+
+  @Test
+  public void testStreams() throws IOException {
+    String path = CompressionServiceTest.class
+        .getResource("/" + "GET.hlog")
+        .getPath();
+    byte[] bytes = readAllBytes(get(path));
+    Payload payload;
+    try (InputStream is = newInputStream(get(path))) {
+      payload = compressionService.compress(is);
+    }
+    assertEquals(compressionService.compress(bytes), payload);
+    try (InputStream is = compressionService.decompressingStream(payload)) {
+      assertArrayEquals(bytes, CompressionService.readAllBytes(is));
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    compressionService.decompressTo(payload, out);
+    assertArrayEquals(bytes, out.toByteArray());
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    String path = CompressionServiceTest.class
+        .getResource("/" + "GET.hlog")
+        .getPath();
+    Payload payload = compressionService.compress(readAllBytes(get(path)));
+    byte[] data = payload.getData();
+    assertEquals(payload, Payload.read(new ByteArrayInputStream(data), data.length,
+        payload.getFormat(), payload.getOriginalLength()));
+    assertEquals(payload, Payload.read(new ByteArrayInputStream(data), -1,
+        payload.getFormat(), payload.getOriginalLength()));
+  }
+
+  @Test(expected = EOFException.class)
+  public void testReadTruncated() throws IOException {
+    Payload payload = compressionService.compress("data".getBytes(UTF_8));
+    byte[] data = payload.getData();
+    Payload.read(new ByteArrayInputStream(data), data.length + 1,
+        payload.getFormat(), payload.getOriginalLength());
+  }
+
+  @Test
+  public void testReadLarge() throws IOException {
+    byte[] bytes = new byte[200_000];
+    new Random(42).nextBytes(bytes);
+    Payload payload = compressionService.compress(bytes);
+    byte[] data = payload.getData();
+    assertEquals(payload, Payload.read(new ByteArrayInputStream(data), data.length,
+        payload.getFormat(), payload.getOriginalLength()));
+  }
+
+  @Test(expected = EOFException.class)
+  public void testReadTruncatedFromDeclaredLength() throws IOException {
+    Payload payload = compressionService.compress("data".getBytes(UTF_8));
+    byte[] data = payload.getData();
+    Payload.read(new ByteArrayInputStream(data), Integer.MAX_VALUE,
+        payload.getFormat(), payload.getOriginalLength());
+  }
+
+  @Test
+  public void testBuffers() throws IOException {
+    String path = CompressionServiceTest.class
+        .getResource("/" + "GET.hlog")
+        .getPath();
+    byte[] bytes = readAllBytes(get(path));
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    Payload payload = compressionService.compress(direct);
+    assertEquals(compressionService.compress(bytes), payload);
+    assertEquals(bytes.length, direct.remaining());
+
+    byte[] data = payload.getData();
+    byte[] padded = new byte[data.length + 2];
+    System.arraycopy(data, 0, padded, 1, data.length);
+    ByteBuffer directData = ByteBuffer.allocateDirect(data.length);
+    directData.put(data).flip();
+    ByteBuffer[] views = {
+        directData.asReadOnlyBuffer(),
+        ByteBuffer.wrap(padded, 1, data.length).asReadOnlyBuffer()
+    };
+    for (ByteBuffer view : views) {
+      Payload buffered = Payload.of(view, payload.getFormat(), payload.getOriginalLength());
+      assertEquals(payload, buffered);
+      assertArrayEquals(bytes, compressionService.decompress(buffered));
+      assertEquals(ByteBuffer.wrap(bytes), compressionService.decompressToBuffer(buffered));
+      try (InputStream is = compressionService.decompressingStream(buffered)) {
+        assertArrayEquals(bytes, CompressionService.readAllBytes(is));
+      }
+    }
+  }
+
+  @Test
+  public void testStreamedLineTerminators() throws IOException {
+    for (String text : new String[] { "", "\n", "a", "a\n", "a\r\nb\r\n", "a\n\n", "a\rb\r\n\r\nc" }) {
+      Payload payload = compressionService.compress(text.getBytes(UTF_8));
+      try (InputStream is = compressionService.decompressingStream(payload)) {
+        assertArrayEquals(text, compressionService.decompress(payload), CompressionService.readAllBytes(is));
+      }
+    }
+  }
 }
 
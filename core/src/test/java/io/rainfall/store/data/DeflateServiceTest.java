@@ -0,0 +1,44 @@
+package io.rainfall.store.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static io.rainfall.store.data.CompressionFormat.DEFLATE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.zip.Deflater.BEST_COMPRESSION;
+import static java.util.zip.Deflater.BEST_SPEED;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DeflateServiceTest extends CompressionServiceTest {
+
+  @Override
+  CompressionService createCompressor() {
+    return new DeflateService(DEFLATE, BEST_SPEED);
+  }
+
+  @Test
+  public void testBytesPreserved() throws IOException {
+    byte[] bytes = "a\r\nb\rc\n\né\u0000ÿ".getBytes(UTF_8);
+    for (int level = BEST_SPEED; level <= BEST_COMPRESSION; level++) {
+      CompressionService compressionService = new DeflateService(DEFLATE, level);
+      Payload payload = compressionService.compress(bytes);
+      assertEquals(DEFLATE, payload.getFormat());
+      assertArrayEquals(bytes, compressionService.decompress(payload));
+      assertArrayEquals(bytes, createCompressor().decompress(payload));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testWrongOriginalLength() throws IOException {
+    CompressionService compressionService = createCompressor();
+    Payload payload = compressionService.compress("abc".getBytes(UTF_8));
+    compressionService.decompress(Payload.of(payload.getData(), DEFLATE, 2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidLevel() {
+    new DeflateService(DEFLATE, 10);
+  }
+}
@@ -0,0 +1,102 @@
+package io.rainfall.store.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static io.rainfall.store.data.CompressionFormat.HLOG;
+import static io.rainfall.store.data.CompressionFormat.LZ4;
+import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+public class HlogServiceTest extends CompressionServiceTest {
+
+  @Override
+  CompressionService createCompressor() {
+    return new HlogService(HLOG);
+  }
+
+  @Test
+  public void testHlogResources() throws IOException, URISyntaxException {
+    Path dir = Paths.get(HlogServiceTest.class.getResource("/io/rainfall/store/hdr").toURI());
+    CompressionService compressionService = createCompressor();
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(dir, "*.hlog")) {
+      for (Path path : paths) {
+        byte[] bytes = Files.readAllBytes(path);
+        Payload payload = compressionService.compress(bytes);
+        assertArrayEquals(path.toString(), bytes, compressionService.decompress(payload));
+      }
+    }
+  }
+
+  @Test
+  public void testSmallerThanLz4() throws IOException, URISyntaxException {
+    byte[] bytes = Files.readAllBytes(Paths.get(HlogServiceTest.class.getResource("/io/rainfall/store/hdr/150.hlog").toURI()));
+    Payload hlog = createCompressor().compress(bytes);
+    Payload lz4 = compressionService(LZ4).compress(bytes);
+    assertThat(hlog.getData().length, lessThan(lz4.getData().length * 4 / 5));
+  }
+
+  @Test
+  public void testNonCanonicalLines() throws IOException {
+    String[] texts = {
+        "0.127,1.000,0.524,HISTFAAAAB14nJNpmSzMwMDAxQABzFCaEUKLMTgwsuxFAA==\n",
+        "0.127,1.000,0.524,HISTFAAAAB14nJNpmSzMwMDAxQABzFCaEUKLMTgwsuxFAA==\r\n1.127,1.000,0.524,HISTFAAAAB14nJNpmSzMwMDAxQABzFCaEUKLMTgwsuxFAA==",
+        "00.127,1.000,0.524,HISTFAAAAB14nJNpmSzMwMDAxQABzFCaEUKLMTgwsuxFAA==\n",
+        "0.1270,1.0,0.5240000,HISTFAAAAB14nJNpmSzMwMDAxQABzFCaEUKLMTgwsuxFAA==\n",
+        "1.127,0.127,0.524,HISTFAAAAB14nJNpmSzMwMDAxQABzFCaEUKLMTgwsuxFAA==\n0.127,1.000,0.524,x\n",
+        "0.127,1.000,0.524,HISTFAAAAB14nJNpmSzMwMDAxQABzFCaEUKLMTgwsuxFAB==\n",
+        "0.127,1.000,0.524,HISTFAAAAB14nJNpmSzMwMDAxQABzFCaEUKLMTgwsuxFAA\n",
+        "-0.127,1.000,0.524,AAAA\n.5,1.,0.524,AAAA\n1e3,1.000,0.524,AAAA\n",
+        "Tag=A,0.127,1.000,0.524,AAAA\n#[StartTime: 1.0 (seconds since epoch)]\n\"StartTimestamp\",\"Interval_Length\"\n",
+        "99999999999999999.9,1.000,0.524,AAAA\n0.127,1.000,0.524,AAAA,\n",
+        "é\u0000ÿ\n\n",
+    };
+    CompressionService compressionService = createCompressor();
+    for (String text : texts) {
+      byte[] bytes = text.getBytes(UTF_8);
+      assertArrayEquals(text, bytes, compressionService.decompress(compressionService.compress(bytes)));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testWrongOriginalLength() throws IOException {
+    CompressionService compressionService = createCompressor();
+    Payload payload = compressionService.compress("abc".getBytes(UTF_8));
+    compressionService.decompress(Payload.of(payload.getData(), HLOG, 2));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncated() throws IOException {
+    CompressionService compressionService = createCompressor();
+    Payload payload = compressionService.compress("0.127,1.000,0.524,AAAA\n".getBytes(UTF_8));
+    byte[] data = payload.getData();
+    byte[] truncated = new byte[data.length - 2];
+    System.arraycopy(data, 0, truncated, 0, truncated.length);
+    compressionService.decompress(Payload.of(truncated, HLOG, -1));
+  }
+
+  @Test
+  public void testRecompress() throws IOException, URISyntaxException {
+    byte[] bytes = Files.readAllBytes(Paths.get(HlogServiceTest.class.getResource("/GET.hlog").toURI()));
+    CompressionService compressionService = createCompressor();
+    Payload lz4 = compressionService(LZ4).compress(bytes);
+    Payload hlog = compressionService.recompress(lz4);
+    assertEquals(HLOG, hlog.getFormat());
+    assertArrayEquals(bytes, compressionService.decompress(hlog));
+    assertSame(hlog, compressionService.recompress(hlog));
+
+    Payload text = compressionService(LZ4).compress("a\nb".getBytes(UTF_8));
+    assertSame(text, compressionService.recompress(text));
+  }
+}
@@ -0,0 +1,55 @@
+package io.rainfall.store.data;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+import static org.junit.Assert.assertEquals;
+
+public class LineJoiningInputStreamTest {
+
+  private static final String[] TEXTS = {
+      "", "\n", "\r", "a", "a\n", "a\r\nb\r\n", "a\n\n", "a\rb\r\n\r\nc", "\r\n\r\n", "ab\r\r\ncd\n\n\n"
+  };
+
+  @Test
+  public void testBulkReads() throws IOException {
+    for (String text : TEXTS) {
+      try (InputStream is = new LineJoiningInputStream(new ByteArrayInputStream(text.getBytes(UTF_8)))) {
+        assertEquals(text, joined(text), new String(CompressionService.readAllBytes(is), UTF_8));
+      }
+    }
+  }
+
+  @Test
+  public void testTerminatorsSplitAcrossReads() throws IOException {
+    for (String text : TEXTS) {
+      InputStream oneByteAtATime = new FilterInputStream(new ByteArrayInputStream(text.getBytes(UTF_8))) {
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          return super.read(b, off, Math.min(len, 1));
+        }
+      };
+      try (InputStream is = new LineJoiningInputStream(oneByteAtATime)) {
+        StringBuilder read = new StringBuilder();
+        int c;
+        while ((c = is.read()) >= 0) {
+          read.append((char)c);
+        }
+        assertEquals(text, joined(text), read.toString());
+      }
+    }
+  }
+
+  private static String joined(String text) {
+    return new BufferedReader(new StringReader(text)).lines()
+        .collect(joining("\n"));
+  }
+}
@@ -0,0 +1,43 @@
+package io.rainfall.store.data;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static io.rainfall.store.data.CompressionFormat.LZ4;
+import static io.rainfall.store.data.CompressionFormat.RAW;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PayloadJsonAdapterTest {
+
+  private static final String JSON = "{\"data\":[1,-2,127],\"format\":\"LZ4\",\"originalLength\":10}";
+
+  private final Gson gson = new Gson();
+
+  @Test
+  public void testToJson() {
+    assertThat(gson.toJson(Payload.of(new byte[] { 1, -2, 127 }, LZ4, 10)), is(JSON));
+  }
+
+  @Test
+  public void testBufferToJson() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(5);
+    buffer.put(new byte[] { 0, 1, -2, 127, 0 });
+    buffer.position(1);
+    buffer.limit(4);
+    Payload payload = Payload.of(buffer.asReadOnlyBuffer(), LZ4, 10);
+    assertThat(gson.toJson(payload), is(JSON));
+  }
+
+  @Test
+  public void testFromJson() {
+    assertThat(gson.fromJson(JSON, Payload.class), is(Payload.of(new byte[] { 1, -2, 127 }, LZ4, 10)));
+  }
+
+  @Test
+  public void testDefaults() {
+    assertThat(gson.fromJson("{\"unknown\":[1]}", Payload.class), is(Payload.of(new byte[0], RAW, 0)));
+  }
+}
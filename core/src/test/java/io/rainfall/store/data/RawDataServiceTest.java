@@ -17,11 +17,27 @@
 package io.rainfall.store.data;
 
 
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import static io.rainfall.store.data.CompressionFormat.RAW;
+import static org.junit.Assert.assertTrue;
 
 public class RawDataServiceTest extends CompressionServiceTest {
   @Override
   CompressionService createCompressor() {
     return new RawDataService(RAW);
   }
+
+  @Test
+  public void testBuffersNotCopied() throws IOException {
+    ByteBuffer direct = ByteBuffer.allocateDirect(3);
+    direct.put(new byte[] { 1, 2, 3 }).flip();
+    Payload payload = createCompressor().compress(direct);
+    ByteBuffer decompressed = createCompressor().decompressToBuffer(payload);
+    assertTrue(decompressed.isDirect());
+    assertTrue(decompressed.isReadOnly());
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.rainfall.store.hdr.Percentile.MAX;
+import static io.rainfall.store.hdr.Percentile.MEDIAN;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class HdrDataJsonAdapterTest {
+
+  private static final String JSON = "{\"startTimes\":[1546881863987,1546881864987],"
+                                     + "\"tps\":[69000.0,471.5284715284715],"
+                                     + "\"errors\":[0.1,1.0E-7],"
+                                     + "\"means\":[2.75,0.69],"
+                                     + "\"timedPercentiles\":{\"MEDIAN\":[1.5],\"MAX\":[34.7]},"
+                                     + "\"roundedPercentiles\":{\"MEDIAN\":0,\"_99\":10,\"_99_99\":20,\"MAX\":30},"
+                                     + "\"percentilePoints\":[0.0,0.5],"
+                                     + "\"percentileValues\":[12,1234567],"
+                                     + "\"fixedPercentileValues\":[1,2,3]}";
+
+  private static final String BLANK_JSON = "{\"startTimes\":[],\"tps\":[],\"errors\":[],\"means\":[],"
+                                           + "\"timedPercentiles\":{},\"roundedPercentiles\":{},"
+                                           + "\"percentilePoints\":[],\"percentileValues\":[],"
+                                           + "\"fixedPercentileValues\":[]}";
+
+  private final Gson gson = new Gson();
+
+  @Test
+  public void testToJson() {
+    assertThat(gson.toJson(hdrData()), is(JSON));
+  }
+
+  @Test
+  public void testBlankToJson() {
+    assertThat(gson.toJson(HdrData.builder().build()), is(BLANK_JSON));
+  }
+
+  @Test
+  public void testFromJson() {
+    assertThat(gson.fromJson(JSON, HdrData.class), is(hdrData()));
+  }
+
+  @Test
+  public void testNestedRoundTrip() {
+    Map<Long, HdrData> runs = new LinkedHashMap<>();
+    runs.put(1L, hdrData());
+    runs.put(2L, HdrData.builder().build());
+    String json = gson.toJson(runs);
+    assertThat(json, is("{\"1\":" + JSON + ",\"2\":" + BLANK_JSON + "}"));
+    Map<Long, HdrData> read = gson.fromJson(json, new TypeToken<Map<Long, HdrData>>() {
+    }.getType());
+    assertThat(read, is(runs));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNaN() {
+    gson.toJson(HdrData.builder().addTps(Double.NaN).build());
+  }
+
+  private static HdrData hdrData() {
+    Map<Percentile, Long> roundedPercentiles = new EnumMap<>(Percentile.class);
+    for (Percentile percentile : Percentile.values()) {
+      roundedPercentiles.put(percentile, percentile.ordinal() * 10L);
+    }
+    return HdrData.builder()
+        .addStartTime(1546881863987L).addStartTime(1546881864987L)
+        .addTps(69000.0).addTps(471.5284715284715)
+        .addMean(2.75).addMean(0.69)
+        .addError(0.1).addError(1e-7)
+        .addTimedPercentile(MEDIAN, 1.5)
+        .addTimedPercentile(MAX, 34.7)
+        .roundedPercentiles(roundedPercentiles)
+        .addPercentile(0.0, 12L).addPercentile(0.5, 1234567L)
+        .fixedPercentileValues(Arrays.asList(1L, 2L, 3L))
+        .build();
+  }
+}
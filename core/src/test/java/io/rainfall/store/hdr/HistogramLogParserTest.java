@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class HistogramLogParserTest {
+
+  private static final String[] RESOURCE_NAMES = {
+      "105.hlog", "106.hlog", "109.hlog", "111.hlog",
+      "149.hlog", "150.hlog", "152.hlog", "153.hlog",
+      "227.hlog", "228.hlog", "231.hlog", "232.hlog",
+      "emptyInterval.hlog", "repeat.hlog", "short_intervals.hlog"
+  };
+
+  private static final String PAYLOAD = "HISTFAAAABx42pNpmSzMwMDAyAABzFAaxmey/wBlAQA8yQJ9";
+
+  @Test
+  public void testSameHistogramsAsLogReader() {
+    for (String name : RESOURCE_NAMES) {
+      checkSameHistograms(name, parse(getResourceAsStream(name)), read(getResourceAsStream(name)));
+    }
+  }
+
+  @Test
+  public void testReadByteByByte() {
+    for (String name : RESOURCE_NAMES) {
+      InputStream is = new FilterInputStream(getResourceAsStream(name)) {
+        @Override
+        public int read(byte[] b, int off, int len) throws java.io.IOException {
+          return super.read(b, off, Math.min(len, 1));
+        }
+      };
+      checkSameHistograms(name, parse(is), read(getResourceAsStream(name)));
+    }
+  }
+
+  @Test
+  public void testEmptyLog() {
+    assertThat(parse(new ByteArrayInputStream(new byte[0])), empty());
+  }
+
+  @Test
+  public void testStartTimeTagAndInvalidLines() {
+    String log = "#[StartTime: 1546881863.987 (seconds since epoch)]\r\n"
+                 + "\"StartTimestamp\",\"Interval_Length\",\"Interval_Max\",\"Interval_Compressed_Histogram\"\r\n"
+                 + "\r\n"
+                 + "not a number,1.000,2.000," + PAYLOAD + "\r\n"
+                 + "1.000,1.000,2.000,not*base64\r\n"
+                 + "2.000,1.000\r\n"
+                 + "Tag=x,3.000,0.500,2.000," + PAYLOAD + "\r\n"
+                 + "4.000,1.000,2.000," + PAYLOAD;
+    List<Histogram> histograms = parse(new ByteArrayInputStream(log.getBytes(US_ASCII)));
+    assertThat(histograms.size(), is(2));
+    assertThat(histograms.get(0).getTag(), is("x"));
+    assertThat(histograms.get(0).getStartTimeStamp(), is(1546881866987L));
+    assertThat(histograms.get(0).getEndTimeStamp(), is(1546881867487L));
+    assertThat(histograms.get(1).getTag(), nullValue());
+  }
+
+  private static void checkSameHistograms(String name, List<Histogram> histograms, List<Histogram> expected) {
+    assertThat(name, histograms.size(), is(expected.size()));
+    for (int i = 0; i < histograms.size(); i++) {
+      Histogram histogram = histograms.get(i);
+      Histogram other = expected.get(i);
+      assertThat(name, histogram, is(other));
+      assertThat(name, histogram.getStartTimeStamp(), is(other.getStartTimeStamp()));
+      assertThat(name, histogram.getEndTimeStamp(), is(other.getEndTimeStamp()));
+      assertThat(name, histogram.getTag(), is(other.getTag()));
+    }
+  }
+
+  private static List<Histogram> parse(InputStream is) {
+    List<Histogram> histograms = new ArrayList<>();
+    Iterator<Histogram> parser = new HistogramLogParser(is);
+    parser.forEachRemaining(histograms::add);
+    return histograms;
+  }
+
+  private static List<Histogram> read(InputStream is) {
+    HistogramLogReader reader = new HistogramLogReader(is);
+    List<Histogram> histograms = new ArrayList<>();
+    while (reader.hasNext()) {
+      EncodableHistogram histogram = reader.nextIntervalHistogram();
+      if (histogram != null) {
+        histograms.add((Histogram)histogram);
+      }
+    }
+    return histograms;
+  }
+
+  private InputStream getResourceAsStream(String name) {
+    return HistogramLogParserTest.class.getResourceAsStream(name);
+  }
+}
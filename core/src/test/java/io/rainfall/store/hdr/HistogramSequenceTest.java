@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class HistogramSequenceTest {
+
+  private static final String[] RESOURCE_NAMES = {
+      "105.hlog", "109.hlog", "149.hlog", "153.hlog", "227.hlog",
+      "emptyInterval.hlog", "repeat.hlog", "short_intervals.hlog"
+  };
+
+  private final HistogramService histogramService = new HistogramService();
+
+  @Test
+  public void testReadHdrData() {
+    for (String name : RESOURCE_NAMES) {
+      Supplier<InputStream> sequence = sequence(name);
+      assertThat(name, histogramService.readHdrData(sequence),
+          is(histogramService.readHdrData(log(name))));
+      assertThat(name, histogramService.readHdrData(sequence, Integer.MAX_VALUE),
+          is(histogramService.readHdrData(log(name), Integer.MAX_VALUE)));
+    }
+  }
+
+  @Test
+  public void testAggregateHdrData() {
+    List<Supplier<InputStream>> logs = asList(log("149.hlog"), log("150.hlog"), log("152.hlog"));
+    List<Supplier<InputStream>> mixed = asList(sequence("149.hlog"), log("150.hlog"), sequence("152.hlog"));
+    assertThat(histogramService.aggregateHdrData(mixed),
+        is(histogramService.aggregateHdrData(logs)));
+    assertThat(histogramService.aggregateHdrData(mixed, Integer.MAX_VALUE),
+        is(histogramService.aggregateHdrData(logs, Integer.MAX_VALUE)));
+  }
+
+  @Test
+  public void testStartTimeStamps() {
+    for (String name : RESOURCE_NAMES) {
+      assertThat(name, startTimeStamps(HistogramSequence.startTimeStamps(sequence(name).get())),
+          is(startTimeStamps(IntervalScanner.startTimeStamps(log(name).get()))));
+    }
+  }
+
+  @Test
+  public void testIsSequence() {
+    assertThat(HistogramSequence.isSequence(sequence("153.hlog").get()), is(true));
+    assertThat(HistogramSequence.isSequence(new BufferedInputStream(log("153.hlog").get())), is(false));
+    assertThat(HistogramSequence.isSequence(new ByteArrayInputStream(new byte[0])), is(false));
+  }
+
+  private static List<Long> startTimeStamps(LongStream startTimeStamps) {
+    try (LongStream s = startTimeStamps) {
+      return s.boxed().collect(toList());
+    }
+  }
+
+  private static Supplier<InputStream> sequence(String name) {
+    byte[] sequence = HistogramSequence.encode(log(name).get());
+    return () -> new ByteArrayInputStream(sequence);
+  }
+
+  private static Supplier<InputStream> log(String name) {
+    return () -> HistogramSequenceTest.class.getResourceAsStream(name);
+  }
+}
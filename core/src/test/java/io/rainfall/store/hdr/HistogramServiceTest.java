@@ -321,6 +321,31 @@ public class HistogramServiceTest {
     checkAggregatePercentiles(hdrData);
   }
 
+  @Test
+  public void testAggregateHdrDataDecodedInParallel() {
+    HistogramService sequential = new HistogramService(1);
+    HistogramService parallel = new HistogramService(4);
+    Stream.of(SHUFFLED_RESOURCE_NAMES)
+        .forEach(names -> {
+          List<Supplier<InputStream>> suppliers = hlogStream(names)
+              .collect(toList());
+          assertEquals(sequential.aggregateHdrData(suppliers, Integer.MAX_VALUE),
+              parallel.aggregateHdrData(suppliers, Integer.MAX_VALUE));
+          assertEquals(sequential.aggregateHdrData(suppliers),
+              parallel.aggregateHdrData(suppliers));
+        });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroDecodeThreads() {
+    new HistogramService(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroAggregationThreads() {
+    new HistogramService(1, 0);
+  }
+
   @Test
   public void testAggregateHdrDataReduced() {
     Stream.of(SHUFFLED_RESOURCE_NAMES)
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IntervalScannerTest {
+
+  private static final String[] RESOURCE_NAMES = {
+      "105.hlog", "106.hlog", "109.hlog", "111.hlog",
+      "149.hlog", "150.hlog", "152.hlog", "153.hlog",
+      "227.hlog", "228.hlog", "231.hlog", "232.hlog",
+      "emptyInterval.hlog", "repeat.hlog", "short_intervals.hlog"
+  };
+
+  @Test
+  public void testSameStartTimeStampsAsLogReader() {
+    for (String name : RESOURCE_NAMES) {
+      assertThat(name, startTimeStamps(getResourceAsStream(name)), is(decodedStartTimeStamps(name)));
+    }
+  }
+
+  @Test
+  public void testEmptyLog() {
+    assertThat(startTimeStamps(new ByteArrayInputStream(new byte[0])), empty());
+  }
+
+  @Test
+  public void testBaseTimeAndTag() {
+    String log = "#[StartTime: 1546881863.987 (seconds since epoch)]\n"
+                 + "#[BaseTime: 1546881863.000 (seconds since epoch)]\n"
+                 + "\"StartTimestamp\",\"Interval_Length\",\"Interval_Max\",\"Interval_Compressed_Histogram\"\n"
+                 + "0.987,1.000,2.000,HISTFAAAAB\n"
+                 + "Tag=x,2.000,1.000,2.000,HISTFAAAAB\n"
+                 + "not a number,1.000,2.000,HISTFAAAAB\n";
+    InputStream is = new ByteArrayInputStream(log.getBytes(US_ASCII));
+    assertThat(startTimeStamps(is), contains(1546881863987L, 1546881865000L));
+  }
+
+  private List<Long> startTimeStamps(InputStream is) {
+    try (LongStream startTimeStamps = IntervalScanner.startTimeStamps(is)) {
+      return startTimeStamps.boxed().collect(toList());
+    }
+  }
+
+  private List<Long> decodedStartTimeStamps(String name) {
+    HistogramLogReader reader = new HistogramLogReader(getResourceAsStream(name));
+    List<Long> startTimeStamps = new ArrayList<>();
+    while (reader.hasNext()) {
+      EncodableHistogram histogram = reader.nextIntervalHistogram();
+      if (histogram != null) {
+        startTimeStamps.add(histogram.getStartTimeStamp());
+      }
+    }
+    return startTimeStamps;
+  }
+
+  private InputStream getResourceAsStream(String name) {
+    return IntervalScannerTest.class.getResourceAsStream(name);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.StreamSupport.stream;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SortedSpliteratorTest {
+
+  @Test
+  public void testMergeManyShards() {
+    Random random = new Random(42);
+    List<List<Integer>> shards = IntStream.range(0, 128)
+        .mapToObj(i -> random.ints(random.nextInt(50), 0, 1000).sorted().boxed().collect(toList()))
+        .collect(toList());
+
+    List<Integer> expected = shards.stream().flatMap(List::stream).sorted().collect(toList());
+    assertThat(merge(shards, Comparator.naturalOrder()), is(expected));
+  }
+
+  @Test
+  public void testTiesInShardOrder() {
+    List<List<String>> shards = asList(
+        asList("b0", "c0"),
+        asList("a1", "b1"),
+        asList("b2"),
+        asList("a3", "c3")
+    );
+    assertThat(merge(shards, comparing(s -> s.charAt(0))),
+        contains("a1", "a3", "b0", "b1", "b2", "c0", "c3"));
+  }
+
+  @Test
+  public void testNoShards() {
+    assertThat(merge(new ArrayList<List<String>>(), Comparator.naturalOrder()), empty());
+  }
+
+  private static <T> List<T> merge(List<List<T>> shards, Comparator<? super T> comparator) {
+    Stream<Supplier<Spliterator<T>>> spliterators = shards.stream()
+        .map(shard -> shard::spliterator);
+    return stream(new SortedSpliterator<>(spliterators, comparator, 0), false)
+        .collect(toList());
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.hdr;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class TotalHistogramTest {
+
+  private final HistogramService histogramService = new HistogramService();
+
+  @Test
+  public void testSameDistributionAsFullHdrData() {
+    byte[] total = TotalHistogram.add(null, log("153.hlog").get());
+    HdrData hdrData = histogramService.readHdrData(log("153.hlog"), Integer.MAX_VALUE);
+    assertSamePercentiles(histogramService.readTotalHdrData(total), hdrData);
+  }
+
+  @Test
+  public void testAddSequence() {
+    byte[] sequence = HistogramSequence.encode(log("153.hlog").get());
+    byte[] fromSequence = TotalHistogram.add(null, new ByteArrayInputStream(sequence));
+    byte[] fromLog = TotalHistogram.add(null, log("153.hlog").get());
+    assertSamePercentiles(histogramService.readTotalHdrData(fromSequence),
+        histogramService.readTotalHdrData(fromLog));
+  }
+
+  @Test
+  public void testIncremental() {
+    byte[] total = TotalHistogram.add(null, log("149.hlog").get());
+    total = TotalHistogram.add(total, log("231.hlog").get());
+    total = TotalHistogram.add(total, log("150.hlog").get());
+
+    byte[] reversed = TotalHistogram.add(null, log("150.hlog").get());
+    reversed = TotalHistogram.add(reversed, log("231.hlog").get());
+    reversed = TotalHistogram.add(reversed, log("149.hlog").get());
+
+    HdrData hdrData = histogramService.readTotalHdrData(total);
+    assertSamePercentiles(hdrData, histogramService.readTotalHdrData(reversed));
+    assertThat(hdrData.size(), is(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidTotal() {
+    TotalHistogram.add(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, log("149.hlog").get());
+  }
+
+  private static void assertSamePercentiles(HdrData actual, HdrData expected) {
+    for (Percentile percentile : Percentile.values()) {
+      assertThat(actual.getValueAtPercentile(percentile), is(expected.getValueAtPercentile(percentile)));
+    }
+    assertArrayEquals(expected.getFixedPercentileValues(), actual.getFixedPercentileValues(), 0.0);
+    assertThat(actual.getPercentilePoints(), is(expected.getPercentilePoints()));
+    assertThat(actual.getPercentileValues(), is(expected.getPercentileValues()));
+  }
+
+  private static Supplier<InputStream> log(String name) {
+    return () -> TotalHistogramTest.class.getResourceAsStream(name);
+  }
+}
@@ -1,5 +1,8 @@
+import io.rainfall.store.hdr.HistogramService;
 import io.rainfall.store.record.Store;
 import io.rainfall.store.record.tc.RainfallStore;
+import io.rainfall.store.service.HdrDataCache;
+import io.rainfall.store.service.StoreService;
 import io.rainfall.store.service.spark.StoreController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +41,34 @@ public class Main {
     String urlPath = props.getProperty("path", "performance");
     LOGGER.info("Web service path={}", urlPath);
 
+    int decodeThreads = Integer.valueOf(props.getProperty("decodeThreads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())));
+    LOGGER.info("HDR log decoding threads={}", decodeThreads);
+
+    int aggregationThreads = Integer.valueOf(props.getProperty("aggregationThreads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())));
+    LOGGER.info("HDR data aggregation threads={}", aggregationThreads);
+
+    int compareThreads = Integer.valueOf(props.getProperty("compareThreads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())));
+    LOGGER.info("Run comparison threads={}", compareThreads);
+
+    int hdrCacheEntries = Integer.valueOf(props.getProperty("hdrCacheEntries", "256"));
+    LOGGER.info("HDR data cache entries={}", hdrCacheEntries);
+
+    long hdrCacheSize = Long.valueOf(props.getProperty("hdrCacheSize", "64"));
+    LOGGER.info("HDR data cache size={} MB", hdrCacheSize);
+
+    int ingestThreads = Integer.valueOf(props.getProperty("ingestThreads", "32"));
+    LOGGER.info("Web service ingest threads={}", ingestThreads);
+
+    int queryThreads = Integer.valueOf(props.getProperty("queryThreads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())));
+    LOGGER.info("Web service query threads={}", queryThreads);
+
+    int queryQueueSize = Integer.valueOf(props.getProperty("queryQueueSize", String.valueOf(2 * queryThreads)));
+    LOGGER.info("Web service query queue size={}", queryQueueSize);
+
     DatasetManager datasetManager = embedded()
         .offheap("offheap", offheap, MemoryUnit.MB)
         .disk("disk", Paths.get(diskLocation), HYBRID, REOPEN_OR_NEW)
@@ -48,7 +79,10 @@ public class Main {
         .build();
     Store store = new RainfallStore(datasetManager, config)
         .indexParents();
-    new StoreController(store, urlPath, port)
+    HdrDataCache hdrDataCache = new HdrDataCache(hdrCacheEntries, hdrCacheSize * 1024 * 1024);
+    HistogramService histogramService = new HistogramService(decodeThreads, aggregationThreads);
+    StoreService storeService = new StoreService(store, histogramService, hdrDataCache, compareThreads);
+    new StoreController(storeService, urlPath, port, ingestThreads, queryThreads, queryQueueSize)
         .awaitInitialization();
   }
 
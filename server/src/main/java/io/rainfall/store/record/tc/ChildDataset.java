@@ -82,9 +82,16 @@ abstract class ChildDataset<P extends Comparable<P>, V, B extends Builder<V>, R
   }
 
   long add(P parentId, V object) {
+    return add(parentId, object, Stream.empty());
+  }
+
+  /**
+   * @param added cells stored along with those of the mappings.
+   */
+  long add(P parentId, V object, Stream<Cell<?>> added) {
     if (parent.contains(parentId)) {
       Cell<P> parentCell = parentKey.newCell(parentId);
-      Stream<Cell<?>> cells = concat(of(parentCell), toCells(object));
+      Stream<Cell<?>> cells = concat(concat(of(parentCell), toCells(object)), added);
       return addCells(cells);
     } else {
       String msg = format("Parent ID %s not found while adding %s.", parentId, object);
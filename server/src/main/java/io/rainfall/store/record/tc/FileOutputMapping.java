@@ -27,16 +27,25 @@ import com.terracottatech.store.definition.IntCellDefinition;
 import com.terracottatech.store.definition.StringCellDefinition;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import static com.terracottatech.store.definition.CellDefinition.defineBytes;
 import static com.terracottatech.store.definition.CellDefinition.defineInt;
 import static com.terracottatech.store.definition.CellDefinition.defineString;
 import static io.rainfall.store.data.CompressionFormat.ZIP;
 import static io.rainfall.store.data.Payload.of;
-import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 
+/**
+ * Maps the payload of a log to the content hash under which it is stored in
+ * the {@link PayloadDataset}; the logs added before it hold their payloads.
+ * The hash, computed once as the payload is stored, is added along with
+ * the cells of the log, rather than computed again from the payload.
+ */
 class FileOutputMapping<F extends FileOutput, B extends FileOutput.Builder> implements Mapping<Long, F, B> {
 
+  static final StringCellDefinition PAYLOAD_HASH = defineString("payloadHash");
+
   private static final BytesCellDefinition DATA = defineBytes("data");
   private static final StringCellDefinition COMPRESSION_FORMAT = defineString("compressionFormat");
   private static final IntCellDefinition ORIGINAL_LENGTH = defineInt("originalLength");
@@ -44,18 +53,31 @@ class FileOutputMapping<F extends FileOutput, B extends FileOutput.Builder> impl
   private static final CompressionFormat DEFAULT_FORMAT = ZIP;
   private static final int DEFAUL_LENGTH = -1;
 
+  private final PayloadDataset payloads;
+
+  FileOutputMapping(PayloadDataset payloads) {
+    this.payloads = payloads;
+  }
+
+  static Stream<Cell<?>> payloadHash(String contentHash) {
+    return Stream.of(PAYLOAD_HASH.newCell(contentHash));
+  }
+
   @Override
   public List<Cell<?>> newCell(F fileOutput) {
-    Payload payload = fileOutput.getPayload();
-    return asList(
-        DATA.newCell(payload.getData()),
-        COMPRESSION_FORMAT.newCell(payload.getFormat().name()),
-        ORIGINAL_LENGTH.newCell(payload.getOriginalLength())
-    );
+    return emptyList();
   }
 
   @Override
   public void setValue(Record<Long> cells, B builder) {
+    Payload payload = cells.get(PAYLOAD_HASH)
+        .map(hash -> payloads.get(hash)
+            .orElseThrow(() -> new IllegalStateException("Payload not found: " + hash)))
+        .orElseGet(() -> inlinePayload(cells));
+    builder.payload(payload);
+  }
+
+  private static Payload inlinePayload(Record<Long> cells) {
     byte[] data = cells.get(DATA)
         .orElse(null);
     CompressionFormat format = cells.get(COMPRESSION_FORMAT)
@@ -63,7 +85,6 @@ class FileOutputMapping<F extends FileOutput, B extends FileOutput.Builder> impl
         .orElse(DEFAULT_FORMAT);
     int originalLength = cells.get(ORIGINAL_LENGTH)
         .orElse(DEFAUL_LENGTH);
-    Payload payload = of(data, format, originalLength);
-    builder.payload(payload);
+    return of(data, format, originalLength);
   }
 }
@@ -21,13 +21,16 @@ import io.rainfall.store.record.OutputRec;
 
 import com.terracottatech.store.Dataset;
 import com.terracottatech.store.Record;
+import com.terracottatech.store.definition.BytesCellDefinition;
 import com.terracottatech.store.definition.LongCellDefinition;
 import com.terracottatech.store.definition.StringCellDefinition;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import static com.terracottatech.store.definition.CellDefinition.defineBytes;
 import static com.terracottatech.store.definition.CellDefinition.defineLong;
 import static com.terracottatech.store.definition.CellDefinition.defineString;
 import static io.rainfall.store.record.tc.SingleMapping.of;
@@ -50,19 +53,32 @@ class OutputDataset extends ChildDataset<Long, OperationOutput, OperationOutput.
       OperationOutput.Builder::operation
   );
 
-  private static final List<? extends Mapping<Long, OperationOutput, OperationOutput.Builder>> MAPPINGS = asList(
-      new FileOutputMapping<>(),
-      FORMAT_MAPPING,
-      OPERATION_MAPPING
-  );
+  /**
+   * The histograms decoded along with the outputs added before they were decoded
+   * along with their payloads.
+   */
+  private static final BytesCellDefinition HISTOGRAMS = defineBytes("histograms");
 
   private static final List<? extends Mapping<Long, OperationOutput, OperationOutput.Builder>> LISTED_MAPPINGS = asList(
       FORMAT_MAPPING,
       OPERATION_MAPPING
   );
 
-  OutputDataset(TcDataset<Long, ?, ?, ?> runs, Dataset<Long> dataset) {
-    super(runs, JOB_ID, dataset, MAPPINGS, LISTED_MAPPINGS);
+  OutputDataset(TcDataset<Long, ?, ?, ?> runs, Dataset<Long> dataset, PayloadDataset payloads) {
+    super(runs, JOB_ID, dataset, mappings(payloads), LISTED_MAPPINGS);
+  }
+
+  private static List<? extends Mapping<Long, OperationOutput, OperationOutput.Builder>> mappings(
+      PayloadDataset payloads) {
+    return asList(
+        new FileOutputMapping<>(payloads),
+        FORMAT_MAPPING,
+        OPERATION_MAPPING
+    );
+  }
+
+  long add(long jobId, OperationOutput output, String contentHash) {
+    return add(jobId, output, FileOutputMapping.payloadHash(contentHash));
   }
 
   @Override
@@ -83,6 +99,23 @@ class OutputDataset extends ChildDataset<Long, OperationOutput, OperationOutput.
         .map(this::fromRecord);
   }
 
+  Stream<Long> getOutputIDsForOperation(long parentID, String operation) {
+    return children(parentID)
+        .filter(OPERATION.value().is(operation))
+        .map(Record::getKey);
+  }
+
+  /**
+   * @return empty for the outputs added before the payloads were stored apart.
+   */
+  Optional<String> getPayloadHash(long id) {
+    return getCell(id, FileOutputMapping.PAYLOAD_HASH);
+  }
+
+  Optional<byte[]> getHistogramSequence(long id) {
+    return getCell(id, HISTOGRAMS);
+  }
+
   @Override
   OperationOutput.Builder builder() {
     return OperationOutput.builder();
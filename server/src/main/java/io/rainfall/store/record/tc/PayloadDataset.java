@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.record.tc;
+
+import io.rainfall.store.data.ChunkedPayload;
+import io.rainfall.store.data.CompressionFormat;
+import io.rainfall.store.data.Payload;
+import io.rainfall.store.hdr.HistogramSequence;
+import io.rainfall.store.record.PayloadStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.terracottatech.store.Cell;
+import com.terracottatech.store.Dataset;
+import com.terracottatech.store.DatasetWriterReader;
+import com.terracottatech.store.Record;
+import com.terracottatech.store.UpdateOperation;
+import com.terracottatech.store.definition.BytesCellDefinition;
+import com.terracottatech.store.definition.IntCellDefinition;
+import com.terracottatech.store.definition.LongCellDefinition;
+import com.terracottatech.store.definition.StringCellDefinition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+import static com.terracottatech.store.definition.CellDefinition.defineBytes;
+import static com.terracottatech.store.definition.CellDefinition.defineInt;
+import static com.terracottatech.store.definition.CellDefinition.defineLong;
+import static com.terracottatech.store.definition.CellDefinition.defineString;
+import static io.rainfall.store.data.CompressionFormat.CHUNKED;
+import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static java.util.Arrays.asList;
+
+/**
+ * Payloads of the outputs and of the stats logs, keyed by the content hash
+ * of the uploads, so that identical uploads are stored once,
+ * with the number of logs referencing them.
+ * <p>
+ * The chunks of a chunked payload are stored apart from its index,
+ * keyed by the content hash, the generation of the stored payload and their
+ * number, so that a time window of the payload is read without reading the
+ * other chunks, and that the chunks of a payload stored again after its last
+ * reference was dropped aren't deleted along with those of the previous one.
+ * <p>
+ * The histograms of an HDR histogram log are decoded once per distinct payload,
+ * into a {@link HistogramSequence} stored with it.
+ */
+class PayloadDataset {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PayloadDataset.class);
+
+  private static final BytesCellDefinition DATA = defineBytes("data");
+  private static final StringCellDefinition COMPRESSION_FORMAT = defineString("compressionFormat");
+  private static final IntCellDefinition ORIGINAL_LENGTH = defineInt("originalLength");
+  private static final LongCellDefinition REFERENCES = defineLong("references");
+  private static final IntCellDefinition LENGTH = defineInt("length");
+  private static final IntCellDefinition CHUNKS = defineInt("chunks");
+  private static final StringCellDefinition GENERATION = defineString("generation");
+  private static final BytesCellDefinition HISTOGRAMS = defineBytes("histograms");
+
+  private final Dataset<String> dataset;
+  private final Dataset<String> chunks;
+
+  PayloadDataset(Dataset<String> dataset, Dataset<String> chunks) {
+    this.dataset = dataset;
+    this.chunks = chunks;
+  }
+
+  /**
+   * Reference the payload stored for a content hash, or store it.
+   * The chunks written for a payload which a concurrent upload stored first are deleted.
+   *
+   * @param encoder applied to the payload only when it isn't stored yet.
+   * @param hlog    whether the payload is an HDR histogram log, whose histograms
+   *                are decoded when it is stored, or when it was stored without them.
+   */
+  void add(String contentHash, Payload payload, UnaryOperator<Payload> encoder, boolean hlog) {
+    DatasetWriterReader<String> writerReader = dataset.writerReader();
+    UpdateOperation<String> addReference = UpdateOperation.write(REFERENCES)
+        .longResultOf(REFERENCES.longValueOr(0L).increment());
+    String generation = null;
+    List<Cell<?>> cells = null;
+    while (!writerReader.update(contentHash, addReference)) {
+      if (cells == null) {
+        generation = UUID.randomUUID().toString();
+        cells = cells(contentHash, generation, encoder.apply(payload));
+        if (hlog) {
+          histograms(contentHash, payload)
+              .ifPresent(cells::add);
+        }
+      }
+      if (writerReader.add(contentHash, cells)) {
+        return;
+      }
+    }
+    if (cells != null) {
+      String unused = generation;
+      chunkCount(cells)
+          .ifPresent(count -> deleteChunks(contentHash, unused, count));
+    }
+    if (hlog && !getHistogramSequence(contentHash).isPresent()) {
+      histograms(contentHash, payload)
+          .ifPresent(cell -> writerReader.update(contentHash, UpdateOperation.write(cell)));
+    }
+  }
+
+  /**
+   * Drop a reference, and the payload with the last one.
+   */
+  void release(String contentHash) {
+    DatasetWriterReader<String> writerReader = dataset.writerReader();
+    writerReader.update(contentHash, UpdateOperation.write(REFERENCES)
+        .longResultOf(REFERENCES.longValueOr(1L).decrement()));
+    writerReader.on(contentHash)
+        .iff(REFERENCES.longValueOr(0L).isLessThanOrEqualTo(0L))
+        .delete()
+        .ifPresent(record -> record.get(CHUNKS)
+            .ifPresent(count -> deleteChunks(contentHash, generation(record), count)));
+  }
+
+  Optional<Payload> get(String contentHash) {
+    return dataset.reader()
+        .get(contentHash)
+        .map(record -> record.get(CHUNKS).isPresent()
+            ? join(chunked(record))
+            : payload(record));
+  }
+
+  /**
+   * @return the chunks of a chunked payload, read only as they are decompressed,
+   * or empty if the payload doesn't exist or isn't chunked.
+   */
+  Optional<ChunkedPayload> getChunked(String contentHash) {
+    return dataset.reader()
+        .get(contentHash)
+        .filter(record -> record.get(CHUNKS).isPresent())
+        .map(this::chunked);
+  }
+
+  Optional<CompressionFormat> getFormat(String contentHash) {
+    return dataset.reader()
+        .get(contentHash)
+        .flatMap(record -> record.get(COMPRESSION_FORMAT))
+        .map(CompressionFormat::valueOf);
+  }
+
+  Optional<byte[]> getHistogramSequence(String contentHash) {
+    return dataset.reader()
+        .get(contentHash)
+        .flatMap(record -> record.get(HISTOGRAMS));
+  }
+
+  /**
+   * Sums the lengths stored along with the payloads, rather than reading them,
+   * except for the payloads added before their lengths were.
+   */
+  PayloadStats stats() {
+    long[] totals = dataset.reader()
+        .records()
+        .map(record -> {
+          long references = record.get(REFERENCES).orElse(0L);
+          long length = record.get(LENGTH)
+              .orElseGet(() -> record.get(DATA).map(data -> data.length).orElse(0));
+          return new long[] { 1, references, length, references * length };
+        })
+        .reduce(new long[4], (a, b) -> new long[] { a[0] + b[0], a[1] + b[1], a[2] + b[2], a[3] + b[3] });
+    return new PayloadStats(totals[0], totals[1], totals[2], totals[3]);
+  }
+
+  /**
+   * The bytes cells hold arrays, so only a payload holding a buffer is copied.
+   * The chunks of a chunked payload are stored first, and only its index
+   * in the returned cells.
+   */
+  private List<Cell<?>> cells(String contentHash, String generation, Payload payload) {
+    List<Cell<?>> cells = new ArrayList<>(asList(
+        COMPRESSION_FORMAT.newCell(payload.getFormat().name()),
+        ORIGINAL_LENGTH.newCell(payload.getOriginalLength()),
+        LENGTH.newCell(payload.dataLength()),
+        REFERENCES.newCell(1L)
+    ));
+    if (payload.getFormat() == CHUNKED) {
+      ChunkedPayload chunked = chunked(payload);
+      DatasetWriterReader<String> chunkWriter = chunks.writerReader();
+      for (int i = 0; i < chunked.getChunkCount(); i++) {
+        chunkWriter.add(chunkKey(contentHash, generation, i), DATA.newCell(bytes(chunk(chunked, i))));
+      }
+      cells.add(DATA.newCell(chunked.index().getData()));
+      cells.add(CHUNKS.newCell(chunked.getChunkCount()));
+      cells.add(GENERATION.newCell(generation));
+    } else {
+      cells.add(DATA.newCell(payload.getData()));
+    }
+    return cells;
+  }
+
+  /**
+   * The cells of an HDR histogram log, decoded from the payload as it was uploaded.
+   */
+  private static Optional<Cell<?>> histograms(String contentHash, Payload payload) {
+    try (InputStream log = compressionService(payload.getFormat()).decompressingStream(payload)) {
+      return Optional.of(HISTOGRAMS.newCell(HistogramSequence.encode(log)));
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Failed to decode the histograms of payload {}: {}.", contentHash, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  private ChunkedPayload chunked(Record<String> record) {
+    String contentHash = record.getKey();
+    String generation = generation(record);
+    try {
+      return ChunkedPayload.of(payload(record), chunk -> chunks.reader()
+          .get(chunkKey(contentHash, generation, chunk))
+          .flatMap(chunkRecord -> chunkRecord.get(DATA))
+          .map(ByteBuffer::wrap)
+          .orElseThrow(() -> new IOException("Missing chunk " + chunk + " of payload " + contentHash)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void deleteChunks(String contentHash, String generation, int count) {
+    DatasetWriterReader<String> chunkWriter = chunks.writerReader();
+    for (int i = 0; i < count; i++) {
+      chunkWriter.delete(chunkKey(contentHash, generation, i));
+    }
+  }
+
+  private static Optional<Integer> chunkCount(List<Cell<?>> cells) {
+    return cells.stream()
+        .filter(cell -> cell.definition().name().equals(CHUNKS.name()))
+        .map(cell -> (Integer)cell.value())
+        .findFirst();
+  }
+
+  private static String generation(Record<String> record) {
+    return record.get(GENERATION)
+        .orElseThrow(() -> new IllegalStateException("Missing generation of chunked payload " + record.getKey()));
+  }
+
+  private static String chunkKey(String contentHash, String generation, int chunk) {
+    return contentHash + "/" + generation + "/" + chunk;
+  }
+
+  private static ChunkedPayload chunked(Payload payload) {
+    try {
+      return ChunkedPayload.of(payload);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static ByteBuffer chunk(ChunkedPayload chunked, int chunk) {
+    try {
+      return chunked.chunk(chunk);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Payload join(ChunkedPayload chunked) {
+    try {
+      return chunked.join();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private static Payload payload(Record<String> record) {
+    byte[] data = record.get(DATA)
+        .orElse(null);
+    CompressionFormat format = record.get(COMPRESSION_FORMAT)
+        .map(CompressionFormat::valueOf)
+        .orElseThrow(() -> new IllegalStateException("Missing compression format of payload " + record.getKey()));
+    int originalLength = record.get(ORIGINAL_LENGTH)
+        .orElse(-1);
+    return Payload.of(data, format, originalLength);
+  }
+
+  void close() {
+    dataset.close();
+    chunks.close();
+  }
+}
@@ -17,14 +17,19 @@
 package io.rainfall.store.record.tc;
 
 import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
 import io.rainfall.store.core.MetricsLog;
 import io.rainfall.store.core.OperationOutput;
 import io.rainfall.store.core.StatsLog;
 import io.rainfall.store.core.TestCase;
 import io.rainfall.store.core.TestRun;
+import io.rainfall.store.data.ChunkedPayload;
+import io.rainfall.store.data.CompressionFormat;
+import io.rainfall.store.data.Payload;
 import io.rainfall.store.record.ClientJobRec;
 import io.rainfall.store.record.MetricsRec;
 import io.rainfall.store.record.OutputRec;
+import io.rainfall.store.record.PayloadStats;
 import io.rainfall.store.record.RunRec;
 import io.rainfall.store.record.StatsRec;
 import io.rainfall.store.record.Store;
@@ -37,9 +42,13 @@ import com.terracottatech.store.Type;
 import com.terracottatech.store.configuration.DatasetConfiguration;
 import com.terracottatech.store.manager.DatasetManager;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
@@ -47,12 +56,16 @@ import static java.util.stream.Collectors.toSet;
 
 public class RainfallStore implements Store {
 
+  private static final String HLOG_FORMAT = "hlog";
+
   private final DatasetManager datasetManager;
   private final TestCaseDataset testCases;
   private final RunDataset runs;
   private final JobDataset jobs;
+  private final PayloadDataset payloads;
   private final OutputDataset outputs;
   private final StatsDataset stats;
+  private final TotalDataset totals;
   private MetricsDataset metrics;
 
   public RainfallStore(DatasetManager datasetManager, DatasetConfiguration config)
@@ -64,10 +77,15 @@ public class RainfallStore implements Store {
         createDataset("runs", config));
     this.jobs = new JobDataset(runs,
         createDataset("jobs", config));
+    this.payloads = new PayloadDataset(
+        createDataset("payloads", config, Type.STRING),
+        createDataset("payloadChunks", config, Type.STRING));
     this.outputs = new OutputDataset(jobs,
-        createDataset("outputs", config));
+        createDataset("outputs", config), payloads);
     this.stats = new StatsDataset(runs,
-        createDataset("stats", config));
+        createDataset("stats", config), payloads);
+    this.totals = new TotalDataset(
+        createDataset("totals", config, Type.STRING));
     this.metrics = new MetricsDataset(createDataset("metrics", config));
   }
 
@@ -128,6 +146,31 @@ public class RainfallStore implements Store {
     return jobs.add(runId, job);
   }
 
+  /**
+   * The outputs are stored as they are read, and the run of the job is known,
+   * so it isn't read back for each output. If any of them fails, the job and
+   * the outputs already stored are removed. The outputs join the totals
+   * of the run once they are all stored.
+   */
+  @Override
+  public long addClientJobBatch(long runId, ClientJobBatch batch,
+                                BiFunction<OperationOutput, Payload, Payload> encoder) {
+    long jobId = jobs.add(runId, batch.getJob());
+    Map<Long, String> added = new LinkedHashMap<>();
+    try {
+      batch.getOutputs().forEachOrdered(output -> {
+        long id = addOutputRecord(jobId, output, payload -> encoder.apply(output, payload));
+        added.put(id, output.getOperation());
+      });
+    } catch (RuntimeException e) {
+      added.keySet().forEach(this::removeOutput);
+      jobs.delete(jobId);
+      throw e;
+    }
+    added.forEach((id, operation) -> addToTotal(runId, id, operation));
+    return jobId;
+  }
+
   @Override
   public Optional<ClientJobRec> getClientJob(long id) {
     return jobs.get(id);
@@ -141,7 +184,42 @@ public class RainfallStore implements Store {
 
   @Override
   public long addOutput(long jobId, OperationOutput output) {
-    return outputs.add(jobId, output);
+    return addOutput(jobId, output, UnaryOperator.identity());
+  }
+
+  @Override
+  public long addOutput(long jobId, OperationOutput output, UnaryOperator<Payload> encoder) {
+    long id = addOutputRecord(jobId, output, encoder);
+    jobs.get(jobId)
+        .map(ClientJobRec::getParentID)
+        .ifPresent(runId -> addToTotal(runId, id, output.getOperation()));
+    return id;
+  }
+
+  /**
+   * The payload is hashed once, and a duplicate is neither encoded, nor decoded
+   * into histograms again: they are stored with the payload.
+   */
+  private long addOutputRecord(long jobId, OperationOutput output, UnaryOperator<Payload> encoder) {
+    String contentHash = output.getPayload().contentHash();
+    payloads.add(contentHash, output.getPayload(), encoder, HLOG_FORMAT.equals(output.getFormat()));
+    try {
+      return outputs.add(jobId, output, contentHash);
+    } catch (RuntimeException e) {
+      payloads.release(contentHash);
+      throw e;
+    }
+  }
+
+  private void removeOutput(long id) {
+    outputs.getPayloadHash(id)
+        .ifPresent(payloads::release);
+    outputs.delete(id);
+  }
+
+  private void addToTotal(long runId, long id, String operation) {
+    getHistogramSequence(id)
+        .ifPresent(sequence -> totals.add(runId, operation, sequence));
   }
 
   @Override
@@ -154,10 +232,57 @@ public class RainfallStore implements Store {
     return outputs.list(jobId);
   }
 
+  /**
+   * The hash of the upload, stored along with the output, unless it was
+   * added before the payloads were stored apart.
+   */
+  @Override
+  public Optional<String> getOutputPayloadHash(long id) {
+    Optional<String> hash = outputs.getPayloadHash(id);
+    return hash.isPresent() ? hash : Store.super.getOutputPayloadHash(id);
+  }
+
+  @Override
+  public Optional<CompressionFormat> getOutputPayloadFormat(long id) {
+    Optional<String> hash = outputs.getPayloadHash(id);
+    return hash.isPresent() ? hash.flatMap(payloads::getFormat) : Store.super.getOutputPayloadFormat(id);
+  }
+
+  @Override
+  public Optional<ChunkedPayload> getOutputChunks(long id) {
+    Optional<String> hash = outputs.getPayloadHash(id);
+    return hash.isPresent() ? hash.flatMap(payloads::getChunked) : Store.super.getOutputChunks(id);
+  }
+
+  /**
+   * The histograms stored with the payload of the output, or with the output
+   * if it was added before they were.
+   */
+  @Override
+  public Optional<byte[]> getHistogramSequence(long outputId) {
+    Optional<byte[]> sequence = outputs.getHistogramSequence(outputId);
+    return sequence.isPresent()
+        ? sequence
+        : outputs.getPayloadHash(outputId).flatMap(payloads::getHistogramSequence);
+  }
+
+  @Override
+  public Optional<byte[]> getTotalHistogram(long runId, String operation) {
+    return totals.get(runId, operation, getOutputIDsForOperation(runId, operation).size());
+  }
+
   @Override
   public long addStatsLog(long runId, StatsLog log) {
-    return stats.add(runId, log);
+    String contentHash = log.getPayload().contentHash();
+    payloads.add(contentHash, log.getPayload(), UnaryOperator.identity(), false);
+    try {
+      return stats.add(runId, log, contentHash);
+    } catch (RuntimeException e) {
+      payloads.release(contentHash);
+      throw e;
+    }
   }
+
   @Override
   public long addMetricsLog(MetricsLog metricsLog) {
     return this.metrics.add(metricsLog);
@@ -208,6 +333,11 @@ public class RainfallStore implements Store {
     return runs.getLastBaselineID(testName);
   }
 
+  @Override
+  public PayloadStats getPayloadStats() {
+    return payloads.stats();
+  }
+
   @Override
   public Set<String> getOperationsForRun(long runId) {
     return jobs.children(runId)
@@ -224,10 +354,20 @@ public class RainfallStore implements Store {
         .collect(toList());
   }
 
+  @Override
+  public List<Long> getOutputIDsForOperation(long runId, String operation) {
+    return jobs.children(runId)
+        .map(Record::getKey)
+        .flatMap(jobID -> outputs.getOutputIDsForOperation(jobID, operation))
+        .collect(toList());
+  }
+
   @Override
   public void close() {
     testCases.close();
     runs.close();
     outputs.close();
+    payloads.close();
+    totals.close();
   }
 }
@@ -36,22 +36,28 @@ class StatsDataset extends ChildDataset<Long, StatsLog, StatsLog.Builder, StatsR
   private static final LongCellDefinition RUN_ID = defineLong("runId");
   private static final StringCellDefinition HOST = defineString("host");
 
-  private static final List<? extends Mapping<Long, StatsLog, StatsLog.Builder>> MAPPINGS = asList(
-      new FileOutputMapping<>(),
-      of(
-          HOST,
-          StatsLog::getHost,
-          StatsLog.Builder::host
-      ),
-      of(
-          defineString("type"),
-          StatsLog::getType,
-          StatsLog.Builder::type
-      )
-  );
+  StatsDataset(RunDataset parent, Dataset<Long> dataset, PayloadDataset payloads) {
+    super(parent, RUN_ID, dataset, mappings(payloads));
+  }
+
+  private static List<? extends Mapping<Long, StatsLog, StatsLog.Builder>> mappings(PayloadDataset payloads) {
+    return asList(
+        new FileOutputMapping<>(payloads),
+        of(
+            HOST,
+            StatsLog::getHost,
+            StatsLog.Builder::host
+        ),
+        of(
+            defineString("type"),
+            StatsLog::getType,
+            StatsLog.Builder::type
+        )
+    );
+  }
 
-  StatsDataset(RunDataset parent, Dataset<Long> dataset) {
-    super(parent, RUN_ID, dataset, MAPPINGS);
+  long add(long runId, StatsLog log, String contentHash) {
+    return add(runId, log, FileOutputMapping.payloadHash(contentHash));
   }
 
   @Override
@@ -97,6 +97,10 @@ abstract class TcDataset<K extends Comparable<K>, V, B extends Builder<V>, R ext
     return tcRecord(id).map(this::fromRecord);
   }
 
+  <C> Optional<C> getCell(K id, CellDefinition<C> def) {
+    return tcRecord(id).flatMap(record -> record.get(def));
+  }
+
   private Optional<Record<K>> tcRecord(K id) {
     return dataset.reader().get(id);
   }
@@ -146,6 +150,10 @@ abstract class TcDataset<K extends Comparable<K>, V, B extends Builder<V>, R ext
         .filter(predicate);
   }
 
+  boolean delete(K id) {
+    return dataset.writerReader().delete(id);
+  }
+
   <C> boolean update(K ID, CellDefinition<C> def, C value) {
     UpdateOperation<K> op = write(def).value(value);
     return dataset.writerReader().update(ID, op);
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.record.tc;
+
+import io.rainfall.store.hdr.TotalHistogram;
+
+import com.terracottatech.store.Cell;
+import com.terracottatech.store.Dataset;
+import com.terracottatech.store.DatasetWriterReader;
+import com.terracottatech.store.UpdateOperation;
+import com.terracottatech.store.definition.BytesCellDefinition;
+import com.terracottatech.store.definition.LongCellDefinition;
+import com.terracottatech.store.definition.StringCellDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Optional;
+
+import static com.terracottatech.store.definition.CellDefinition.defineBytes;
+import static com.terracottatech.store.definition.CellDefinition.defineLong;
+import static com.terracottatech.store.definition.CellDefinition.defineString;
+import static java.util.Arrays.asList;
+
+/**
+ * Total histograms of the operations of the runs, keyed by run ID and operation.
+ * Each output added to a run is added to the total of its operation,
+ * in place, so that concurrent additions are never lost.
+ * The number of outputs added to a total is counted along with it,
+ * so that a total missing any output of its operation isn't used.
+ */
+class TotalDataset {
+
+  private static final LongCellDefinition RUN_ID = defineLong("runId");
+  private static final StringCellDefinition OPERATION = defineString("operation");
+  private static final BytesCellDefinition HISTOGRAM = defineBytes("histogram");
+  private static final LongCellDefinition OUTPUTS = defineLong("outputs");
+
+  private final Dataset<String> dataset;
+
+  TotalDataset(Dataset<String> dataset) {
+    this.dataset = dataset;
+  }
+
+  /**
+   * @param sequence histogram sequence of an output of the operation.
+   */
+  void add(long runId, String operation, byte[] sequence) {
+    String key = key(runId, operation);
+    DatasetWriterReader<String> writerReader = dataset.writerReader();
+    UpdateOperation<String> addToTotal = UpdateOperation.custom(record -> cells(runId, operation,
+        TotalHistogram.add(record.get(HISTOGRAM).orElse(null), new ByteArrayInputStream(sequence)),
+        record.get(OUTPUTS).orElse(0L) + 1));
+    while (!writerReader.update(key, addToTotal)) {
+      byte[] total = TotalHistogram.add(null, new ByteArrayInputStream(sequence));
+      if (writerReader.add(key, cells(runId, operation, total, 1L))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @param outputs the number of outputs of the operation in the run.
+   * @return the total, only if all the outputs were added to it.
+   */
+  Optional<byte[]> get(long runId, String operation, long outputs) {
+    return dataset.reader()
+        .get(key(runId, operation))
+        .filter(record -> record.get(OUTPUTS).orElse(0L) == outputs)
+        .flatMap(record -> record.get(HISTOGRAM));
+  }
+
+  private static List<Cell<?>> cells(long runId, String operation, byte[] total, long outputs) {
+    return asList(
+        RUN_ID.newCell(runId),
+        OPERATION.newCell(operation),
+        HISTOGRAM.newCell(total),
+        OUTPUTS.newCell(outputs)
+    );
+  }
+
+  private static String key(long runId, String operation) {
+    return runId + "/" + operation;
+  }
+
+  void close() {
+    dataset.close();
+  }
+}
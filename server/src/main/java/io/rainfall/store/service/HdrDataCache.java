@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.service;
+
+import io.rainfall.store.hdr.HdrData;
+import io.rainfall.store.hdr.Percentile;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Least recently used cache of the HDR data aggregated for the operations of a run,
+ * bounded both in number of entries and in estimated size.
+ * The outputs of a run never change once added, so the entries of a run
+ * only need to be invalidated when an output is added to it.
+ */
+public class HdrDataCache {
+
+  private static final long ENTRY_OVERHEAD = 1024;
+  private static final long BYTES_PER_DATA_POINT = 8 * 4;
+  private static final long BYTES_PER_PERCENTILE = 8 * 2;
+
+  private final int maxEntries;
+  private final long maxBytes;
+  private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long bytes;
+  private long invalidations;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public HdrDataCache(int maxEntries, long maxBytes) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("maxEntries must not be negative, was " + maxEntries);
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("maxBytes must not be negative, was " + maxBytes);
+    }
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Get the cached HDR data, or load and cache it.
+   * Data loaded while outputs were added is returned but not cached,
+   * as it may miss the new outputs.
+   */
+  public HdrData get(long runId, String operation, int maxDataPoints, Supplier<HdrData> loader) {
+    Key key = new Key(runId, operation, maxDataPoints);
+    long invalidationsBefore;
+    synchronized (this) {
+      Entry cached = entries.get(key);
+      if (cached != null) {
+        hits++;
+        return cached.hdrData;
+      }
+      misses++;
+      invalidationsBefore = invalidations;
+    }
+    HdrData hdrData = loader.get();
+    if (hdrData != null) {
+      synchronized (this) {
+        if (invalidations == invalidationsBefore) {
+          put(key, new Entry(hdrData));
+        }
+      }
+    }
+    return hdrData;
+  }
+
+  private void put(Key key, Entry entry) {
+    Entry previous = entries.put(key, entry);
+    if (previous != null) {
+      bytes -= previous.bytes;
+    }
+    bytes += entry.bytes;
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (eldest.hasNext() && (entries.size() > maxEntries || bytes > maxBytes)) {
+      bytes -= eldest.next().bytes;
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Invalidate all the entries of a run.
+   */
+  public synchronized void invalidate(long runId) {
+    invalidations++;
+    Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Key, Entry> entry = it.next();
+      if (entry.getKey().runId == runId) {
+        bytes -= entry.getValue().bytes;
+        it.remove();
+      }
+    }
+  }
+
+  public synchronized Stats getStats() {
+    return new Stats(entries.size(), bytes, hits, misses, evictions);
+  }
+
+  private static long estimateBytes(HdrData hdrData) {
+    long timedPercentiles = 0;
+    for (Percentile percentile : Percentile.values()) {
+      timedPercentiles += hdrData.getTimedPercentiles(percentile).size();
+    }
+    return ENTRY_OVERHEAD
+           + BYTES_PER_DATA_POINT * hdrData.size()
+           + Double.BYTES * timedPercentiles
+           + BYTES_PER_PERCENTILE * hdrData.getPercentilePoints().size();
+  }
+
+  private static class Entry {
+    private final HdrData hdrData;
+    private final long bytes;
+
+    private Entry(HdrData hdrData) {
+      this.hdrData = hdrData;
+      this.bytes = estimateBytes(hdrData);
+    }
+  }
+
+  private static class Key {
+    private final long runId;
+    private final String operation;
+    private final int maxDataPoints;
+
+    private Key(long runId, String operation, int maxDataPoints) {
+      this.runId = runId;
+      this.operation = operation;
+      this.maxDataPoints = maxDataPoints;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key)o;
+      return runId == key.runId &&
+             maxDataPoints == key.maxDataPoints &&
+             Objects.equals(operation, key.operation);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(runId, operation, maxDataPoints);
+    }
+  }
+
+  public static class Stats {
+
+    private final int entries;
+    private final long bytes;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    Stats(int entries, long bytes, long hits, long misses, long evictions) {
+      this.entries = entries;
+      this.bytes = bytes;
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+    }
+
+    public int getEntries() {
+      return entries;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    public long getEvictions() {
+      return evictions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Stats stats = (Stats)o;
+      return entries == stats.entries &&
+             bytes == stats.bytes &&
+             hits == stats.hits &&
+             misses == stats.misses &&
+             evictions == stats.evictions;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(entries, bytes, hits, misses, evictions);
+    }
+
+    @Override
+    public String toString() {
+      return "Stats{" +
+             "entries=" + entries +
+             ", bytes=" + bytes +
+             ", hits=" + hits +
+             ", misses=" + misses +
+             ", evictions=" + evictions +
+             '}';
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.service;
+
+import io.rainfall.store.data.CompressionFormat;
+import io.rainfall.store.data.Payload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+
+/**
+ * The bytes of a stored log, sent as they are stored when the client accepts
+ * their format as a content coding, otherwise decompressed as they are written.
+ */
+public class PayloadDownload {
+
+  private final String validator;
+  private final Payload payload;
+  private final String contentEncoding;
+
+  private PayloadDownload(String validator, Payload payload, String contentEncoding) {
+    this.validator = validator;
+    this.payload = payload;
+    this.contentEncoding = contentEncoding;
+  }
+
+  /**
+   * @param validator     identifies the stored log.
+   * @param acceptsCoding whether the client accepts a content coding.
+   */
+  public static PayloadDownload of(String validator, Payload payload, Predicate<String> acceptsCoding) {
+    return new PayloadDownload(validator, payload, contentEncoding(payload.getFormat(), acceptsCoding));
+  }
+
+  /**
+   * @param validator     identifies the stored log.
+   * @param format        of the stored log.
+   * @param acceptsCoding whether the client accepts a content coding.
+   * @return the validator of the download of the log, known without reading it.
+   */
+  public static String validator(String validator, CompressionFormat format, Predicate<String> acceptsCoding) {
+    return validator(validator, contentEncoding(format, acceptsCoding));
+  }
+
+  /**
+   * @return the validator of the log, which tells apart the bytes sent as they are stored.
+   */
+  public String getValidator() {
+    return validator(validator, contentEncoding);
+  }
+
+  private static String validator(String validator, String contentEncoding) {
+    return contentEncoding == null
+        ? validator
+        : validator + "-" + contentEncoding;
+  }
+
+  private static String contentEncoding(CompressionFormat format, Predicate<String> acceptsCoding) {
+    String coding = contentCoding(format);
+    return coding != null && acceptsCoding.test(coding) ? coding : null;
+  }
+
+  /**
+   * @return the content coding of the bytes, none if they are decompressed.
+   */
+  public Optional<String> getContentEncoding() {
+    return Optional.ofNullable(contentEncoding);
+  }
+
+  /**
+   * @return the number of bytes written, if known before writing them.
+   */
+  public Optional<Integer> getContentLength() {
+    return contentEncoding == null
+        ? Optional.empty()
+        : Optional.of(payload.dataLength());
+  }
+
+  /**
+   * @param out written but not closed.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    if (contentEncoding == null) {
+      compressionService(payload.getFormat()).decompressTo(payload, out);
+      return;
+    }
+    ByteBuffer data = payload.asBuffer();
+    WritableByteChannel channel = Channels.newChannel(out);
+    while (data.hasRemaining()) {
+      channel.write(data);
+    }
+  }
+
+  /**
+   * The formats whose payloads are valid HTTP content as they are stored:
+   * a deflate payload is a zlib stream, unlike a zip payload, which is an archive.
+   */
+  private static String contentCoding(CompressionFormat format) {
+    switch (format) {
+      case DEFLATE:
+        return "deflate";
+      default:
+        return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "PayloadDownload{" +
+           "validator=" + validator +
+           ", payload=" + payload +
+           ", contentEncoding=" + contentEncoding +
+           '}';
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Collapses the concurrent computations of a key onto the first one,
+ * whose result, or failure, is shared by the others.
+ * Nothing is kept once a computation completes: the caching is up to the callers.
+ */
+class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Compute the value of a key, or wait for its computation in progress.
+   */
+  V get(K key, Supplier<V> computation) {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> leader = inFlight.putIfAbsent(key, flight);
+    if (leader != null) {
+      return join(leader);
+    }
+    try {
+      V value = computation.get();
+      flight.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Let the next requests of some keys compute them again, rather than wait
+   * for the computations in progress, which may be outdated.
+   */
+  void forget(Predicate<K> keys) {
+    inFlight.keySet().removeIf(keys);
+  }
+
+  private static <V> V join(CompletableFuture<V> leader) {
+    try {
+      return leader.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw e;
+    }
+  }
+}
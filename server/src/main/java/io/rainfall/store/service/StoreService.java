@@ -18,12 +18,14 @@ package io.rainfall.store.service;
 
 import io.rainfall.store.core.ChangeReport;
 import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
 import io.rainfall.store.core.FileOutput;
 import io.rainfall.store.core.MetricsLog;
 import io.rainfall.store.core.OperationOutput;
 import io.rainfall.store.core.StatsLog;
 import io.rainfall.store.core.TestCase;
 import io.rainfall.store.core.TestRun;
+import io.rainfall.store.data.ChunkedPayload;
 import io.rainfall.store.data.CompressionService;
 import io.rainfall.store.data.Payload;
 import io.rainfall.store.hdr.HdrData;
@@ -47,8 +49,11 @@ import org.w3c.dom.CDATASection;
 import com.google.gson.Gson;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -56,9 +61,18 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -66,13 +80,18 @@ import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static io.rainfall.store.data.CompressionServiceFactory.hlogService;
+import static io.rainfall.store.data.Payload.toUtfString;
+import static io.rainfall.store.hdr.HistogramService.DEFAULT_MAX_DATA_POINTS;
 import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 import static java.net.HttpURLConnection.HTTP_CONFLICT;
 import static java.net.HttpURLConnection.HTTP_CREATED;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 import static java.net.HttpURLConnection.HTTP_OK;
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonMap;
 import static java.util.Comparator.comparing;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static org.eclipse.jetty.http.MimeTypes.Type.APPLICATION_JSON;
@@ -85,6 +104,13 @@ public class StoreService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(StoreService.class);
 
+  private static final int N_CHUNKS_AHEAD = Runtime.getRuntime().availableProcessors();
+
+  private static final int DEFAULT_CACHE_ENTRIES = 256;
+  private static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+
+  private static final int VALIDATOR_HASH_LENGTH = 16;
+
   private static final Comparator<Rec> TIMESTAMP_CMP = comparing(Rec::getTimeStamp);
 
   private static final Comparator<ClientJobRec> JOB_CMP = comparing(Rec::getValue,
@@ -93,14 +119,52 @@ public class StoreService {
   private final Store store;
   private final Gson gson = new Gson();
   private final HistogramService histogramService;
+  private final HdrDataCache hdrDataCache;
+  private final ExecutorService compareExecutor;
+  private final SingleFlight<List<?>, HdrData> aggregates = new SingleFlight<>();
+  private final SingleFlight<List<?>, Comparison> comparisons = new SingleFlight<>();
 
   public StoreService(Store store) {
     this(store, new HistogramService());
   }
 
-  StoreService(Store store, HistogramService histogramService) {
+  public StoreService(Store store, HistogramService histogramService) {
+    this(store, histogramService, new HdrDataCache(DEFAULT_CACHE_ENTRIES, DEFAULT_CACHE_BYTES));
+  }
+
+  public StoreService(Store store, HistogramService histogramService, HdrDataCache hdrDataCache) {
+    this(store, histogramService, hdrDataCache, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param compareThreads number of threads reading the runs of a comparison
+   *                       concurrently; the HDR data itself is computed on the
+   *                       aggregation threads of the histogram service.
+   */
+  public StoreService(Store store, HistogramService histogramService, HdrDataCache hdrDataCache,
+                      int compareThreads) {
+    if (compareThreads <= 0) {
+      throw new IllegalArgumentException("compareThreads must be positive, was " + compareThreads);
+    }
     this.store = store;
     this.histogramService = histogramService;
+    this.hdrDataCache = hdrDataCache;
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "rainfall-compare-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    this.compareExecutor = Executors.newFixedThreadPool(compareThreads, threadFactory);
+  }
+
+  /**
+   * Stop the comparison threads, and those of the histogram service,
+   * once the service isn't used anymore.
+   */
+  public void shutdown() {
+    compareExecutor.shutdown();
+    histogramService.shutdown();
   }
 
   public List<TestCaseRec> listTestCases() {
@@ -233,18 +297,20 @@ public class StoreService {
     return new Result(HTTP_OK, APPLICATION_JSON, recs);
   }
 
-  public Result getOutputData(String sid) {
-    return getOutputView(sid, String::new);
-  }
-
-  private Result getOutputView(String sid, Function<byte[], Object> view) {
+  /**
+   * The log of an output, written to the response as it is decompressed,
+   * or as it is stored when the client accepts its format.
+   *
+   * @param acceptsCoding whether the client accepts a content coding.
+   */
+  public Result getOutputData(String sid, Predicate<String> acceptsCoding) {
     try {
       long id = Long.valueOf(sid);
       return store.getOutput(id)
           .map(Rec::getValue)
           .map(FileOutput::getPayload)
-          .map(this::uncompress)
-          .map(view)
+          .map(payload -> PayloadDownload.of(outputValidator(id, store.getOutputPayloadHash(id)
+              .orElseGet(payload::contentHash)), payload, acceptsCoding))
           .map(this::found)
           .orElseGet(() -> notFound(sid, "Output"));
     } catch (Throwable e) {
@@ -254,18 +320,178 @@ public class StoreService {
     }
   }
 
+  /**
+   * Validator of an output and of the data derived from it, which never change
+   * once it is added: its ID and the hash of its payload, which tells apart
+   * the outputs of two stores reusing the same IDs.
+   * The hash is the one stored along with the output, so the payload isn't read.
+   *
+   * @return empty if the output doesn't exist.
+   */
+  public Optional<String> getOutputValidator(String sid) {
+    try {
+      long id = Long.valueOf(sid);
+      return store.getOutputPayloadHash(id)
+          .map(hash -> outputValidator(id, hash));
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * The validator of the download of an output by a client accepting some content
+   * codings, which tells apart the log decompressed and as it is stored.
+   * Neither the output nor its payload is read if the store keeps their hash
+   * and format apart.
+   *
+   * @param acceptsCoding whether the client accepts a content coding.
+   * @return empty if the output doesn't exist.
+   */
+  public Optional<String> getOutputDownloadValidator(String sid, Predicate<String> acceptsCoding) {
+    try {
+      long id = Long.valueOf(sid);
+      return store.getOutputPayloadHash(id)
+          .flatMap(hash -> store.getOutputPayloadFormat(id)
+              .map(format -> PayloadDownload.validator(outputValidator(id, hash), format, acceptsCoding)));
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static String outputValidator(long id, String payloadHash) {
+    return "o" + id + "-" + payloadHash.substring(0, VALIDATOR_HASH_LENGTH);
+  }
+
+  /**
+   * Validator of the aggregated HDR data of an operation in a run, which changes
+   * when an output joins it: the outputs are only ever added, with growing IDs,
+   * so their number and the highest ID tell their set apart, and the validator
+   * of the last output tells apart the runs of two stores reusing the same IDs.
+   *
+   * @return empty if the run has no output of the operation.
+   */
+  public Optional<String> getAggregateValidator(String sid, String operation) {
+    try {
+      long runId = Long.valueOf(sid);
+      List<Long> ids = store.getOutputIDsForOperation(runId, operation);
+      return ids.stream()
+          .max(Comparator.naturalOrder())
+          .flatMap(maxId -> store.getOutputPayloadHash(maxId)
+              .map(hash -> "a" + runId + "-" + ids.size() + "-" + outputValidator(maxId, hash)));
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * The intervals of an output log which start within a time window, in seconds
+   * relative to the base time of the log. Only the chunks holding them are read,
+   * so the other intervals of those chunks come along; the log of a payload
+   * which isn't chunked is read as a whole.
+   */
+  public Result getOutputIntervals(String sid, String from, String to) {
+    long id;
+    long fromMillis;
+    long toMillis;
+    try {
+      id = Long.valueOf(sid);
+      fromMillis = from == null ? 0 : (long)(Double.valueOf(from) * 1000);
+      toMillis = to == null ? Long.MAX_VALUE : (long)(Double.valueOf(to) * 1000);
+    } catch (NumberFormatException e) {
+      return new Result(HTTP_BAD_REQUEST, TEXT_PLAIN, "Invalid output ID or time window: " + e.getMessage());
+    }
+    try {
+      Optional<ByteBuffer> data = store.getOutputChunks(id)
+          .map(chunked -> uncompress(chunked, fromMillis, toMillis));
+      if (!data.isPresent()) {
+        data = store.getOutput(id)
+            .map(Rec::getValue)
+            .map(FileOutput::getPayload)
+            .map(this::uncompress);
+      }
+      return data
+          .map(bytes -> new Result(HTTP_OK, TEXT_PLAIN, toUtfString(bytes)))
+          .orElseGet(() -> notFound(sid, "Output"));
+    } catch (Throwable e) {
+      LOGGER.error("Output intervals could not be retrieved for ID={}: {}.",
+          sid, e.getMessage());
+      throw e;
+    }
+  }
+
+  private ByteBuffer uncompress(ChunkedPayload chunked, long fromMillis, long toMillis) {
+    try (InputStream is = chunked.decompressingStream(fromMillis, toMillis, ForkJoinPool.commonPool(), N_CHUNKS_AHEAD)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = is.read(buffer)) >= 0) {
+        out.write(buffer, 0, n);
+      }
+      return ByteBuffer.wrap(out.toByteArray());
+    } catch (IOException e) {
+      LOGGER.error("Failed to uncompressed data for operation output.");
+      throw new IllegalArgumentException(e);
+    }
+  }
+
   public Result getHdrData(String sid) {
-    return getOutputView(sid, this::hdrData);
+    try {
+      long id = Long.valueOf(sid);
+      return histogramSource(id)
+          .map(histogramService::readHdrData)
+          .map(this::found)
+          .orElseGet(() -> notFound(sid, "Output"));
+    } catch (Throwable e) {
+      LOGGER.error("HDR data could not be retrieved for output ID={}: {}.",
+          sid, e.getMessage());
+      throw e;
+    }
   }
 
-  private HdrData hdrData(byte[] data) {
-    return histogramService.readHdrData(() -> new ByteArrayInputStream(data));
+  /**
+   * Histograms of an output, read from the sequence decoded at ingest time,
+   * or from the log for the outputs added before it existed, which is only
+   * read then.
+   *
+   * @return empty if the output doesn't exist.
+   */
+  private Optional<Supplier<InputStream>> histogramSource(long id) {
+    Optional<Supplier<InputStream>> sequence = store.getHistogramSequence(id)
+        .map(this::streamSupplier);
+    return sequence.isPresent()
+        ? sequence
+        : store.getOutput(id).map(rec -> decompressingSupplier(rec.getValue().getPayload()));
   }
 
-  private byte[] uncompress(Payload payload) {
+  private Supplier<InputStream> histogramSource(OutputRec rec) {
+    return store.getHistogramSequence(rec.getID())
+        .map(this::streamSupplier)
+        .orElseGet(() -> decompressingSupplier(rec.getValue().getPayload()));
+  }
+
+  /**
+   * Decompress the payload each time it is read,
+   * rather than holding the whole log for all the reads.
+   */
+  private Supplier<InputStream> decompressingSupplier(Payload payload) {
+    CompressionService compressionService = compressionService(payload.getFormat());
+    return () -> {
+      try {
+        return compressionService.decompressingStream(payload);
+      } catch (IOException e) {
+        LOGGER.error("Failed to uncompressed data for operation output.");
+        throw new IllegalArgumentException(e);
+      }
+    };
+  }
+
+  /**
+   * @return a view of the payload itself when it isn't compressed.
+   */
+  private ByteBuffer uncompress(Payload payload) {
     try {
       CompressionService compressionService = compressionService(payload.getFormat());
-      return compressionService.decompress(payload);
+      return compressionService.decompressToBuffer(payload);
     } catch (IOException e) {
       LOGGER.error("Failed to uncompressed data for operation output.");
       throw new IllegalArgumentException(e);
@@ -285,14 +511,45 @@ public class StoreService {
     }
   }
 
+  public Result getPercentiles(String sid, String operation) {
+    try {
+      Long runId = Long.valueOf(sid);
+      HdrData hdrData = getPercentileData(runId, operation);
+      return found(hdrData);
+    } catch (RuntimeException e) {
+      LOGGER.error("Error generating percentiles for {}/{}: {}.",
+          sid, operation, e.getMessage());
+      return new Result(HTTP_NOT_FOUND, APPLICATION_JSON,
+          singletonMap("msg", e.getMessage()));
+    }
+  }
+
+  /**
+   * Percentile distribution of an operation over a whole run, read from
+   * the total histogram maintained at ingest time, or aggregated from
+   * the outputs when the store has no total covering all of them.
+   */
+  private HdrData getPercentileData(long runId, String operation) {
+    return store.getTotalHistogram(runId, operation)
+        .map(histogramService::readTotalHdrData)
+        .orElseGet(() -> getHdrData(runId, operation));
+  }
+
+  /**
+   * The concurrent requests of the same aggregate, which isn't cached yet,
+   * share a single aggregation.
+   */
   private HdrData getHdrData(long runId, String operation) {
-    List<Supplier<InputStream>> inputStreams = store.getOutputsForOperation(runId, operation)
+    return hdrDataCache.get(runId, operation, DEFAULT_MAX_DATA_POINTS,
+        () -> aggregates.get(asList(runId, operation),
+            () -> aggregateHdrData(store.getOutputsForOperation(runId, operation))));
+  }
+
+  private HdrData aggregateHdrData(List<OutputRec> outputs) {
+    List<Supplier<InputStream>> inputStreams = outputs
         .stream()
         .peek(rec -> LOGGER.info("Aggregating output log: {}.", rec.getID()))
-        .map(Rec::getValue)
-        .map(FileOutput::getPayload)
-        .map(this::uncompress)
-        .map(this::streamSupplier)
+        .map(this::histogramSource)
         .collect(toList());
     return histogramService.aggregateHdrData(inputStreams);
   }
@@ -301,30 +558,12 @@ public class StoreService {
     return () -> new ByteArrayInputStream(bytes);
   }
 
+  /**
+   * The concurrent requests of the same comparison share a single computation.
+   */
   public Result getComparativeHdrData(String sids, String operation) {
     try {
-      long[] ids = Stream.of(sids.split("-"))
-          .mapToLong(Long::valueOf)
-          .toArray();
-      Map<Long, HdrData> runs = LongStream.of(ids)
-          .boxed()
-          .collect(toMap(
-              Function.identity(),
-              id -> getHdrData(id, operation),
-              (id1, id2) -> id1,
-              LinkedHashMap::new
-          ));
-      Map<Pair, Double> pvalues = IntStream.range(0, ids.length)
-          .boxed()
-          .flatMap(i -> IntStream.range(i + 1, ids.length)
-              .mapToObj(j -> new Pair(ids[i], ids[j]))
-          )
-          .collect(toMap(Function.identity(), pair -> {
-            HdrData idata = runs.get(pair.getLeft());
-            HdrData jdata = runs.get(pair.getRight());
-            return histogramService.comparePercentiles(idata, jdata);
-          }));
-      Comparison comparison = new Comparison(runs, pvalues);
+      Comparison comparison = comparisons.get(asList(sids, operation), () -> compareHdrData(sids, operation));
       return found(comparison);
     } catch (RuntimeException e) {
       LOGGER.error("Failed to get {} HDR data for runs {}: {}.",
@@ -334,6 +573,56 @@ public class StoreService {
     }
   }
 
+  private Comparison compareHdrData(String sids, String operation) {
+    long[] ids = Stream.of(sids.split("-"))
+        .mapToLong(Long::valueOf)
+        .toArray();
+    Map<Long, CompletableFuture<HdrData>> runs = LongStream.of(ids)
+        .boxed()
+        .collect(toMap(
+            Function.identity(),
+            id -> supplyAsync(() -> getHdrData(id, operation), compareExecutor),
+            (id1, id2) -> id1,
+            LinkedHashMap::new
+        ));
+    Map<Long, CompletableFuture<HdrData>> percentiles = runs.entrySet()
+        .stream()
+        .collect(toMap(Map.Entry::getKey, e -> percentileData(e.getKey(), operation, e.getValue())));
+    Map<Pair, CompletableFuture<Double>> pvalues = IntStream.range(0, ids.length)
+        .boxed()
+        .flatMap(i -> IntStream.range(i + 1, ids.length)
+            .mapToObj(j -> new Pair(ids[i], ids[j]))
+        )
+        .collect(toMap(Function.identity(), pair -> {
+          CompletableFuture<HdrData> idata = percentiles.get(pair.getLeft());
+          CompletableFuture<HdrData> jdata = percentiles.get(pair.getRight());
+          return idata.thenCombine(jdata, histogramService::comparePercentiles);
+        }));
+    return new Comparison(joinAll(runs), joinAll(pvalues));
+  }
+
+  /**
+   * Percentiles of the run, from its total histogram if it covers all the outputs,
+   * otherwise from its aggregated HDR data.
+   */
+  private CompletableFuture<HdrData> percentileData(long runId, String operation,
+                                                    CompletableFuture<HdrData> hdrData) {
+    return store.getTotalHistogram(runId, operation)
+        .map(total -> supplyAsync(() -> histogramService.readTotalHdrData(total), compareExecutor))
+        .orElse(hdrData);
+  }
+
+  private static <K, V> Map<K, V> joinAll(Map<K, CompletableFuture<V>> futures) {
+    Map<K, V> values = new LinkedHashMap<>(futures.size());
+    try {
+      futures.forEach((key, future) -> values.put(key, future.join()));
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException)cause : e;
+    }
+    return values;
+  }
+
   public Result checkRegression(String sid, String sThreshold) {
     try {
       long runID = Long.valueOf(sid);
@@ -355,24 +644,117 @@ public class StoreService {
 
   private ChangeReport getChangeReport(Long baselineID, long runID, double threshold) {
     Set<String> operations = store.getOperationsForRun(runID);
-    Map<String, Double> pvalues = operations.stream()
-        .collect(toMap(Function.identity(), op ->
-            compareHdrToBaseline(baselineID, runID, op)));
-    Map<String, Double> belowThreshold = pvalues.entrySet()
+    Map<String, CompletableFuture<Double>> futures = operations.stream()
+        .collect(toMap(Function.identity(),
+            op -> supplyAsync(() -> compareHdrToBaseline(baselineID, runID, op), compareExecutor)));
+    Map<String, Double> belowThreshold = joinAll(futures).entrySet()
         .stream()
         .filter(e -> e.getValue() < threshold)
         .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
     return new ChangeReport(baselineID, threshold, belowThreshold);
   }
 
+  /**
+   * The outputs of an operation are read with their payloads, and only if
+   * it has neither a total histogram nor a cached aggregate: the listed ones
+   * leave their payloads out.
+   */
   private double compareHdrToBaseline(long baselineID, long runID, String op) {
-    HdrData baselineData = getHdrData(baselineID, op);
-    HdrData hdrData = getHdrData(runID, op);
+    HdrData baselineData = getPercentileData(baselineID, op);
+    HdrData hdrData = getPercentileData(runID, op);
     return histogramService.comparePercentiles(baselineData, hdrData);
   }
 
+  /**
+   * Add a client job and all its outputs, read from the body as they are stored,
+   * invalidating the cached aggregations of the run once rather than for each output.
+   *
+   * @param body the batch, as framed by {@link ClientJobBatch#write}.
+   */
+  public Result addClientJobBatch(String runId, InputStream body) {
+    return add(Long.valueOf(runId), () -> {
+      try {
+        return ClientJobBatch.read(body);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Unreadable batch: " + e.getMessage(), e);
+      }
+    }, this::addBatchToRun, ClientJobBatch.class);
+  }
+
+  private long addBatchToRun(long runId, ClientJobBatch batch) {
+    try {
+      return store.addClientJobBatch(runId, batch, StoreService::encodeHlog);
+    } catch (UncheckedIOException e) {
+      throw new IllegalArgumentException("Unreadable batch: " + e.getCause().getMessage(), e);
+    } finally {
+      invalidate(runId);
+    }
+  }
+
   public Result addOutput(String jobId, String body) {
-    return add(jobId, body, store::addOutput, OperationOutput.class);
+    return add(jobId, body, this::addOutputToJob, OperationOutput.class);
+  }
+
+  /**
+   * Add an output uploaded as bytes, described by the parameters of the request.
+   *
+   * @param format the format of the file, the default one if null.
+   */
+  public Result addOutput(String jobId, String operation, String format, Payload payload) {
+    return add(Long.valueOf(jobId), () -> {
+      if (operation == null) {
+        throw new IllegalArgumentException("Missing operation.");
+      }
+      OperationOutput.Builder builder = OperationOutput.builder()
+          .operation(operation)
+          .payload(payload);
+      Optional.ofNullable(format).ifPresent(builder::format);
+      return builder.build();
+    }, this::addOutputToJob, OperationOutput.class);
+  }
+
+  private long addOutputToJob(long jobId, OperationOutput output) {
+    long id = store.addOutput(jobId, output, payload -> encodeHlog(output, payload));
+    store.getClientJob(jobId)
+        .map(ClientJobRec::getParentID)
+        .ifPresent(this::invalidate);
+    return id;
+  }
+
+  /**
+   * Forget the aggregations in progress before the cached ones, so that
+   * a request in between doesn't cache an aggregation missing the new output.
+   */
+  private void invalidate(long runId) {
+    aggregates.forget(key -> key.get(0).equals(runId));
+    comparisons.forget(key -> true);
+    hdrDataCache.invalidate(runId);
+  }
+
+  /**
+   * Store the HDR logs in the HLOG format, in chunks if they are large,
+   * when it's smaller than the uploaded one.
+   * The store only calls it for the payloads it doesn't hold yet.
+   */
+  private static Payload encodeHlog(OperationOutput output, Payload payload) {
+    if (payload == null || !"hlog".equals(output.getFormat())) {
+      return payload;
+    }
+    try {
+      return hlogService(payload.getOriginalLength()).recompress(payload);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Storing the output of operation {} as uploaded, in {}: {}",
+          output.getOperation(), payload.getFormat(), e.getMessage());
+      return payload;
+    }
+  }
+
+  public Result getHdrDataCacheStats() {
+    return found(hdrDataCache.getStats());
+  }
+
+  public Result getPayloadStats() {
+    return found(store.getPayloadStats());
   }
 
   public Result getStatsLog(String sid) {
@@ -396,6 +778,21 @@ public class StoreService {
     return add(runId, body, store::addStatsLog, StatsLog.class);
   }
 
+  /**
+   * Add a stats log uploaded as bytes, described by the parameters of the request.
+   *
+   * @param type the type of the log, the default one if null.
+   */
+  public Result addStatsLog(String runId, String host, String type, Payload payload) {
+    return add(Long.valueOf(runId), () -> {
+      StatsLog.Builder builder = StatsLog.builder()
+          .host(host)
+          .payload(payload);
+      Optional.ofNullable(type).ifPresent(builder::type);
+      return builder.build();
+    }, store::addStatsLog, StatsLog.class);
+  }
+
   public Result getOperationsForRun(String sid) {
     try {
       Set<String> operations = store.getOperationsForRun(Long.valueOf(sid));
@@ -453,9 +850,13 @@ public class StoreService {
   }
 
   private <P, V> Result add(P parentId, String body, BiFunction<P, V, Long> adder, Class<V> type) {
+    return add(parentId, () -> gson.fromJson(body, type), adder, type);
+  }
+
+  private <P, V> Result add(P parentId, Supplier<V> parser, BiFunction<P, V, Long> adder, Class<V> type) {
     String simpleName = type.getSimpleName();
     try {
-      V value = gson.fromJson(body, type);
+      V value = parser.get();
       long id = adder.apply(parentId, value);
       LOGGER.info("{} created: ID={}, parent ID={}.", simpleName, id, parentId);
       return new Result(HTTP_CREATED, TEXT_HTML, id);
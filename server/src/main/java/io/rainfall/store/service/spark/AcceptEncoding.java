@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.service.spark;
+
+/**
+ * The content codings which a client accepts, as listed by the Accept-Encoding header
+ * of its request, with their quality values.
+ */
+final class AcceptEncoding {
+
+  private AcceptEncoding() {
+  }
+
+  /**
+   * @param acceptEncoding the header, if any.
+   * @return whether the coding is listed with a non-zero quality, or else the wildcard is.
+   */
+  static boolean accepts(String acceptEncoding, String coding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    boolean wildcard = false;
+    for (String element : acceptEncoding.split(",")) {
+      String[] parameters = element.split(";");
+      String name = parameters[0].trim();
+      boolean acceptable = quality(parameters) > 0;
+      if (name.equalsIgnoreCase(coding)) {
+        return acceptable;
+      }
+      if (name.equals("*")) {
+        wildcard = acceptable;
+      }
+    }
+    return wildcard;
+  }
+
+  private static double quality(String[] parameters) {
+    for (int i = 1; i < parameters.length; i++) {
+      String parameter = parameters[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2).trim());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.service.spark;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
+import static org.eclipse.jetty.http.MimeTypes.Type.TEXT_PLAIN;
+
+/**
+ * Runs the analysis routes on a pool of their own, with a bounded queue,
+ * so that they can't occupy all the request threads and starve the uploads.
+ * The requests are rejected with 503 when the queue is full; the request
+ * threads only wait for the admitted ones.
+ */
+class QueryPool implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryPool.class);
+
+  private final ThreadPoolExecutor executor;
+  private final int retryAfterSeconds;
+
+  QueryPool(int threads, int queueSize, int retryAfterSeconds) {
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "rainfall-query-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize), threadFactory);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * @return the route, run on this pool.
+   */
+  Route admit(Route route) {
+    return (request, response) -> handle(route, request, response);
+  }
+
+  private Object handle(Route route, Request request, Response response) throws Exception {
+    Future<Object> future;
+    try {
+      future = executor.submit(() -> route.handle(request, response));
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Query rejected, {} running and {} queued: {}.",
+          executor.getActiveCount(), queued(), request.pathInfo());
+      response.status(HTTP_UNAVAILABLE);
+      response.header("Retry-After", String.valueOf(retryAfterSeconds));
+      response.raw().setContentType(TEXT_PLAIN.asString());
+      return "Too many queries in progress, retry in " + retryAfterSeconds + " s.";
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception)cause;
+      }
+      throw (Error)cause;
+    }
+  }
+
+  /**
+   * @return the number of requests waiting for a thread.
+   */
+  int queued() {
+    return executor.getQueue().size();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
@@ -17,36 +17,58 @@
 package io.rainfall.store.service.spark;
 
 import io.rainfall.store.core.MetricsLog;
+import io.rainfall.store.data.CompressionFormat;
+import io.rainfall.store.data.Payload;
+import io.rainfall.store.hdr.HistogramService;
 import io.rainfall.store.record.Store;
 import io.rainfall.store.service.NotFoundException;
+import io.rainfall.store.service.PayloadDownload;
 import io.rainfall.store.service.Result;
 import io.rainfall.store.service.StoreService;
 import spark.ModelAndView;
 import spark.Request;
 import spark.Response;
+import spark.Route;
 import spark.Service;
 import spark.template.mustache.MustacheTemplateEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonNull;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
 import javax.servlet.http.Part;
 
+import static io.rainfall.store.data.CompressionFormat.RAW;
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 import static java.net.HttpURLConnection.HTTP_CREATED;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static java.net.HttpURLConnection.HTTP_SEE_OTHER;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.eclipse.jetty.http.MimeTypes.Type;
 import static org.eclipse.jetty.http.MimeTypes.Type.APPLICATION_JSON;
 import static org.eclipse.jetty.http.MimeTypes.Type.TEXT_HTML;
@@ -57,14 +79,66 @@ public class StoreController implements AutoCloseable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(StoreController.class);
 
+  private static final String OCTET_STREAM = "application/octet-stream";
+  private static final String GZIP = "gzip";
+  private static final int JSON_BUFFER_SIZE = 8192;
+
+  /**
+   * Query parameters of the payloads uploaded as octet streams.
+   */
+  private static final String COMPRESSION = "compression";
+  private static final String ORIGINAL_LENGTH = "originalLength";
+
+  /**
+   * The outputs and the data derived from them never change once uploaded.
+   */
+  private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+  /**
+   * The aggregates change when an output joins their run, so they are revalidated.
+   */
+  private static final String REVALIDATE = "no-cache";
+
+  private static final int DEFAULT_INGEST_THREADS = 32;
+  private static final int DEFAULT_QUERY_THREADS = Runtime.getRuntime().availableProcessors();
+  private static final int DEFAULT_QUERY_QUEUE_SIZE = 2 * DEFAULT_QUERY_THREADS;
+  private static final int RETRY_AFTER_SECONDS = 5;
+
   private final Service service;
+  private final StoreService perfService;
+  private final QueryPool queryPool;
   private final Gson gson = new Gson();
   private final MustacheTemplateEngine mustacheTemplateEngine = new MustacheTemplateEngine();
 
   public StoreController(Store store, String path, int port) {
-    StoreService perfService = new StoreService(store);
+    this(store, path, port, new HistogramService());
+  }
+
+  public StoreController(Store store, String path, int port, HistogramService histogramService) {
+    this(new StoreService(store, histogramService), path, port);
+  }
+
+  public StoreController(StoreService perfService, String path, int port) {
+    this(perfService, path, port, DEFAULT_INGEST_THREADS, DEFAULT_QUERY_THREADS, DEFAULT_QUERY_QUEUE_SIZE);
+  }
+
+  /**
+   * The analysis routes run on threads of their own, and are rejected when
+   * their queue is full, so that they leave the request threads to the others.
+   *
+   * @param ingestThreads  request threads left to the other routes, among them the uploads,
+   *                       when the analysis routes take all of theirs.
+   * @param queryThreads   threads running the analysis routes.
+   * @param queryQueueSize analysis requests waiting for a thread, beyond which they get 503.
+   */
+  public StoreController(StoreService perfService, String path, int port,
+                         int ingestThreads, int queryThreads, int queryQueueSize) {
+    this.perfService = perfService;
+    queryPool = new QueryPool(queryThreads, queryQueueSize, RETRY_AFTER_SECONDS);
     service = Service.ignite();
     service.port(port);
+    // A request thread waits for each running or queued analysis request
+    service.threadPool(ingestThreads + queryThreads + queryQueueSize);
     service.path(path, () -> {
       service.staticFiles.location("/js");
 
@@ -98,29 +172,53 @@ public class StoreController implements AutoCloseable {
           perfService::getCommonOperationsForRuns,
           APPLICATION_JSON, ":ids");
       service.get("/runs/:id/aggregate/:operation",
-          (q, s) -> getAggregateHdrData(perfService, q, s));
-      service.get("/runs/:id/regression/:threshold",
+          (q, s) -> withValidator(q, s,
+              perfService.getAggregateValidator(q.params(":id"), q.params(":operation")), REVALIDATE,
+              queryPool.admit((q1, s1) -> getAggregateHdrData(perfService, q1, s1))));
+      query("/runs/:id/percentiles/:operation",
+          (q, s) -> getPercentiles(perfService, q, s));
+      query("/runs/:id/regression/:threshold",
           (q, s) -> checkRegression(perfService, q, s));
 
       post("/jobs/:parentId", perfService::addClientJob);
+      service.post("/batches/:parentId",
+          (q, s) -> upload(q, s, (id, q1) -> perfService.addClientJobBatch(id, bodyStream(q1))));
       show("/jobs/:id",
           perfService::getClientJob, "job.mustache", ":id");
       get("/jobs/:id/outputs", perfService::getOutputs);
 
-      post("/outputs/:parentId", perfService::addOutput);
-      get("/outputs/:id", perfService::getOutputData, TEXT_PLAIN, ":id");
-      get("/outputs/:id/io.rainfall.store.service.spark", perfService::getHdrData);
-
-      post("/stats/:parentId", perfService::addStatsLog);
+      post("/outputs/:parentId", perfService::addOutput,
+          (id, q) -> perfService.addOutput(id, q.queryParams("operation"), q.queryParams("format"),
+              readPayload(q)));
+      service.get("/outputs/:id",
+          (q, s) -> getOutputData(perfService, q, s));
+      Stream.of("/outputs/:id/hdr", "/outputs/:id/io.rainfall.store.service.spark")
+          .forEach(url -> service.get(url,
+              (q, s) -> withValidator(q, s,
+                  perfService.getOutputValidator(q.params(":id")).map(validator -> validator + "-hdr"), IMMUTABLE,
+                  queryPool.admit((q1, s1) -> resultWithEditedResponse(q1, perfService.getHdrData(q1.params(":id")),
+                      s1, APPLICATION_JSON)))));
+      service.get("/outputs/:id/intervals",
+          (q, s) -> getOutputIntervals(perfService, q, s));
+
+      post("/stats/:parentId", perfService::addStatsLog,
+          (id, q) -> perfService.addStatsLog(id, q.queryParams("host"), q.queryParams("type"),
+              readPayload(q)));
       get("/stats/:id", perfService::getStatsLog, TEXT_PLAIN, ":id");
 
       show("/compare", (q, s) -> new ModelAndView(perfService.listTestCases(),
           "compare-form.mustache"));
       show("/compare/:ids", perfService::compareRuns,
           "compare-report.mustache", ":ids");
-      service.get("/compare/:ids/:operation",
+      query("/compare/:ids/:operation",
           (q, s) -> getComparativeHdrData(perfService, q, s));
 
+      service.get("/cache/hdr",
+          (q, s) -> resultWithEditedResponse(q, perfService.getHdrDataCacheStats(), s, APPLICATION_JSON));
+
+      service.get("/payloads/stats",
+          (q, s) -> resultWithEditedResponse(q, perfService.getPayloadStats(), s, APPLICATION_JSON));
+
       // curl -X POST -F 'cloudType=AWS' -F 'label=something' -F 'metrics=@output-metric-data-ec2.json' http://localhost:4567/performance/metrics
       service.post("/metrics",
           (req, res) -> {
@@ -212,7 +310,7 @@ public class StoreController implements AutoCloseable {
     return new ModelAndView(result.getContent(), viewName);
   }
 
-  private Object createTestCase(StoreService perfService, Request request, Response response) {
+  private Object createTestCase(StoreService perfService, Request request, Response response) throws IOException {
     String name = request.queryParams("name");
     String description = request.queryParams("description");
     Result result = perfService.addTestCase(name, description);
@@ -220,7 +318,7 @@ public class StoreController implements AutoCloseable {
       case HTTP_CREATED:
         return redirectToTestCaseCreated(result, response);
       default:
-        return resultWithEditedResponse(result, response);
+        return resultWithEditedResponse(request, result, response);
     }
   }
 
@@ -231,43 +329,190 @@ public class StoreController implements AutoCloseable {
   }
 
   private Object create(Request request, Response response,
-                        Function<String, Result> op) {
+                        Function<String, Result> op) throws IOException {
     String body = request.body();
     Result result = op.apply(body);
-    return resultWithEditedResponse(result, response);
+    return resultWithEditedResponse(request, result, response);
   }
 
-  private Object resultWithEditedResponse(Result result, Response response) {
-    return resultWithEditedResponse(result, response, TEXT_HTML);
+  private Object resultWithEditedResponse(Request request, Result result, Response response) throws IOException {
+    return resultWithEditedResponse(request, result, response, TEXT_HTML);
   }
 
-  private Object resultWithEditedResponse(Result result, Response response, Type defaulType) {
-    return resultWithEditedResponse(result, response, result.getCode(), defaulType);
+  private Object resultWithEditedResponse(Request request, Result result, Response response, Type defaulType)
+      throws IOException {
+    return resultWithEditedResponse(request, result, response, result.getCode(), defaulType);
   }
 
-  private Object resultWithEditedResponse(Result result, Response response, int code, Type defaulType) {
+  private Object resultWithEditedResponse(Request request, Result result, Response response, int code,
+                                          Type defaulType) throws IOException {
     response.status(code);
     Type type = contentType(code, defaulType);
     response.raw().setContentType(type.asString());
-    return format(type, result.getContent());
+    switch (type) {
+      case APPLICATION_JSON:
+        return writeJson(request, response, result.getContent());
+      default:
+        return result.getContent();
+    }
+  }
+
+  /**
+   * Write the JSON to the response as it is serialized, rather than building it whole
+   * as a String first; compressed with gzip when the client accepts it.
+   * The ETag of compressed JSON is weak, as its bytes depend on the compression.
+   */
+  private Object writeJson(Request request, Response response, Object content) throws IOException {
+    return stream(request, response, out -> {
+      response.header("Vary", "Accept-Encoding");
+      writeJson(request, response, content, out);
+    });
+  }
+
+  private void writeJson(Request request, Response response, Object content, OutputStream out)
+      throws IOException {
+    GZIPOutputStream gzip = null;
+    if (AcceptEncoding.accepts(request.headers("Accept-Encoding"), GZIP)) {
+      response.header("Content-Encoding", GZIP);
+      String etag = response.raw().getHeader("ETag");
+      if (etag != null && !etag.startsWith("W/")) {
+        response.header("ETag", "W/" + etag);
+      }
+      out = gzip = new GZIPOutputStream(out, JSON_BUFFER_SIZE);
+    }
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8), JSON_BUFFER_SIZE);
+    JsonWriter jsonWriter = gson.newJsonWriter(writer);
+    if (content == null) {
+      gson.toJson(JsonNull.INSTANCE, jsonWriter);
+    } else {
+      gson.toJson(content, content.getClass(), jsonWriter);
+    }
+    jsonWriter.flush();
+    if (gzip != null) {
+      gzip.finish();
+    }
+    out.flush();
+  }
+
+  /**
+   * Write the body of the response as it is produced. A failure before the response
+   * is committed, as for bodies smaller than the buffer of the response, discards
+   * what was buffered and answers an error; once the status was sent, the failure
+   * is logged and the connection aborted, so that the client doesn't take
+   * a truncated body for a complete one.
+   */
+  private static Object stream(Request request, Response response, BodyWriter writer) throws IOException {
+    try {
+      writer.writeTo(response.raw().getOutputStream());
+      return "";
+    } catch (IOException | RuntimeException e) {
+      if (!response.raw().isCommitted()) {
+        response.raw().reset();
+        throw e;
+      }
+      LOGGER.error("Failed to write the response to {}.", request.pathInfo(), e);
+      org.eclipse.jetty.server.Request baseRequest =
+          org.eclipse.jetty.server.Request.getBaseRequest(request.raw());
+      if (baseRequest != null) {
+        baseRequest.getHttpChannel().abort(e);
+      }
+      return "";
+    }
+  }
+
+  /**
+   * Writes the body of a response.
+   */
+  @FunctionalInterface
+  private interface BodyWriter {
+
+    void writeTo(OutputStream out) throws IOException;
   }
 
   private void post(String path, BiFunction<String, String, Result> creator) {
     service.post(path, (q, s) -> create(q, s, creator));
   }
 
+  /**
+   * Add a value posted as JSON, or one whose payload is posted as an octet stream,
+   * as it was compressed, and described by the query parameters of the request.
+   */
+  private void post(String path, BiFunction<String, String, Result> creator, Uploader uploader) {
+    service.post(path, (q, s) -> isOctetStream(q)
+        ? upload(q, s, uploader)
+        : create(q, s, creator));
+  }
+
+  private static boolean isOctetStream(Request request) {
+    String contentType = request.contentType();
+    return contentType != null && contentType.startsWith(OCTET_STREAM);
+  }
+
+  private Object upload(Request request, Response response, Uploader uploader) throws IOException {
+    LOGGER.info("POST: {}.", request.pathInfo());
+    Result result;
+    try {
+      result = uploader.add(request.params(":parentID"), request);
+    } catch (IllegalArgumentException e) {
+      result = new Result(HTTP_BAD_REQUEST, TEXT_PLAIN, e.getMessage());
+    }
+    return resultWithEditedResponse(request, result, response);
+  }
+
+  /**
+   * The uncompressed length is required unless the payload is raw.
+   */
+  private static Payload readPayload(Request request) throws IOException {
+    String compression = request.queryParams(COMPRESSION);
+    CompressionFormat format = compression == null
+        ? RAW
+        : CompressionFormat.valueOf(compression.toUpperCase(Locale.ROOT));
+    String originalLength = request.queryParams(ORIGINAL_LENGTH);
+    if (originalLength == null && format != RAW) {
+      throw new IllegalArgumentException("Missing " + ORIGINAL_LENGTH + " for the " + format + " compression.");
+    }
+    Payload payload = Payload.read(bodyStream(request), request.contentLength(), format,
+        originalLength == null ? 0 : Integer.parseInt(originalLength));
+    return originalLength == null ? Payload.raw(payload.getData()) : payload;
+  }
+
+  /**
+   * The body of the request, read from the server request rather than
+   * from the Spark wrapper, which would buffer it whole first.
+   */
+  private static InputStream bodyStream(Request request) throws IOException {
+    ServletRequest raw = request.raw();
+    while (raw instanceof ServletRequestWrapper) {
+      raw = ((ServletRequestWrapper)raw).getRequest();
+    }
+    return raw.getInputStream();
+  }
+
+  /**
+   * Adds a value read from the body of the request.
+   */
+  @FunctionalInterface
+  private interface Uploader {
+
+    Result add(String parentId, Request request) throws IOException;
+  }
+
   private Object create(Request request, Response response,
-                        BiFunction<String, String, Result> op) {
+                        BiFunction<String, String, Result> op) throws IOException {
     return create(request, response, op, ":parentID");
   }
 
   private Object create(Request request, Response response,
-                        BiFunction<String, String, Result> op, String key) {
+                        BiFunction<String, String, Result> op, String key) throws IOException {
     LOGGER.info("POST: {}.", request.pathInfo());
     String id = request.params(key);
     return create(request, response, body -> op.apply(id, body));
   }
 
+  private void query(String path, Route route) {
+    service.get(path, queryPool.admit(route));
+  }
+
   private void get(String path, Function<String, Result> getter) {
     get(path, getter, APPLICATION_JSON, ":id");
   }
@@ -277,32 +522,118 @@ public class StoreController implements AutoCloseable {
       LOGGER.info("GET: {}.", q.pathInfo());
       String sid = q.params().get(key);
       Result result = getter.apply(sid);
-      return resultWithEditedResponse(result, s, defaultType);
+      return resultWithEditedResponse(q, result, s, defaultType);
     });
   }
 
   private Object getAggregateHdrData(
-      StoreService perfService, Request request, Response response) {
+      StoreService perfService, Request request, Response response) throws IOException {
     String sid = request.params().get(":id");
     String operation = request.params().get(":operation");
     Result result = perfService.getAggregateHdrData(sid, operation);
-    return resultWithEditedResponse(result, response, APPLICATION_JSON);
+    return resultWithEditedResponse(request, result, response, APPLICATION_JSON);
+  }
+
+  private Object getPercentiles(
+      StoreService perfService, Request request, Response response) throws IOException {
+    String sid = request.params().get(":id");
+    String operation = request.params().get(":operation");
+    Result result = perfService.getPercentiles(sid, operation);
+    return resultWithEditedResponse(request, result, response, APPLICATION_JSON);
+  }
+
+  /**
+   * Stream the log to the response rather than returning it as a String.
+   */
+  private Object getOutputData(
+      StoreService perfService, Request request, Response response) throws Exception {
+    LOGGER.info("GET: {}.", request.pathInfo());
+    String sid = request.params().get(":id");
+    response.header("Vary", "Accept-Encoding");
+    Predicate<String> acceptsCoding = coding -> AcceptEncoding.accepts(request.headers("Accept-Encoding"), coding);
+    Optional<String> validator = perfService.getOutputDownloadValidator(sid, acceptsCoding);
+    if (validator.filter(v -> matches(request.headers("If-None-Match"), '"' + v + '"')).isPresent()) {
+      return withValidator(request, response, validator, IMMUTABLE, (q, s) -> "");
+    }
+    Result result = perfService.getOutputData(sid, acceptsCoding);
+    if (result.getCode() != HTTP_OK) {
+      return resultWithEditedResponse(request, result, response, TEXT_PLAIN);
+    }
+    PayloadDownload download = (PayloadDownload)result.getContent();
+    return withValidator(request, response, Optional.of(download.getValidator()), IMMUTABLE,
+        (q, s) -> stream(q, s, out -> {
+          s.status(HTTP_OK);
+          s.raw().setContentType(TEXT_PLAIN.asString());
+          download.getContentEncoding()
+              .ifPresent(encoding -> s.header("Content-Encoding", encoding));
+          download.getContentLength()
+              .ifPresent(length -> s.raw().setContentLength(length));
+          download.writeTo(out);
+          out.flush();
+        }));
+  }
+
+  /**
+   * Answer 304 when the client holds the current representation,
+   * otherwise let the route respond, along with its validator.
+   *
+   * @param validator    identifies the representation, none if it can't be cached.
+   * @param cacheControl how long the representation may be reused without revalidation.
+   */
+  private Object withValidator(Request request, Response response, Optional<String> validator,
+                               String cacheControl, Route route) throws Exception {
+    if (validator.isPresent()) {
+      String etag = '"' + validator.get() + '"';
+      response.header("ETag", etag);
+      response.header("Cache-Control", cacheControl);
+      if (matches(request.headers("If-None-Match"), etag)) {
+        response.status(HTTP_NOT_MODIFIED);
+        return "";
+      }
+    }
+    return route.handle(request, response);
+  }
+
+  /**
+   * The weak comparison of If-None-Match.
+   */
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : ifNoneMatch.split(",")) {
+      String candidate = tag.trim();
+      if (candidate.startsWith("W/")) {
+        candidate = candidate.substring(2);
+      }
+      if (candidate.equals("*") || candidate.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Object getOutputIntervals(
+      StoreService perfService, Request request, Response response) throws IOException {
+    String sid = request.params().get(":id");
+    Result result = perfService.getOutputIntervals(sid, request.queryParams("from"), request.queryParams("to"));
+    return resultWithEditedResponse(request, result, response, TEXT_PLAIN);
   }
 
   private Object checkRegression(
-      StoreService perfService, Request request, Response response) {
+      StoreService perfService, Request request, Response response) throws IOException {
     String sid = request.params().get(":id");
     String threshold = request.params().get(":threshold");
     Result result = perfService.checkRegression(sid, threshold);
-    return resultWithEditedResponse(result, response, APPLICATION_JSON);
+    return resultWithEditedResponse(request, result, response, APPLICATION_JSON);
   }
 
   private Object getComparativeHdrData(
-      StoreService perfService, Request request, Response response) {
+      StoreService perfService, Request request, Response response) throws IOException {
     String sids = request.params().get(":ids");
     String operation = request.params().get(":operation");
     Result result = perfService.getComparativeHdrData(sids, operation);
-    return resultWithEditedResponse(result, response, APPLICATION_JSON);
+    return resultWithEditedResponse(request, result, response, APPLICATION_JSON);
   }
 
   private Type contentType(int code, Type defaultType) {
@@ -315,15 +646,6 @@ public class StoreController implements AutoCloseable {
     }
   }
 
-  private Object format(Type type, Object content) {
-    switch (type) {
-      case APPLICATION_JSON:
-        return gson.toJson(content);
-      default:
-        return content;
-    }
-  }
-
   public StoreController awaitInitialization() {
     service.awaitInitialization();
     return this;
@@ -332,5 +654,7 @@ public class StoreController implements AutoCloseable {
   @Override
   public void close() {
     service.stop();
+    queryPool.close();
+    perfService.shutdown();
   }
 }
@@ -17,21 +17,34 @@
 package io.rainfall.store.record;
 
 import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
 import io.rainfall.store.core.OperationOutput;
 import io.rainfall.store.core.StatsLog;
 import io.rainfall.store.core.TestCase;
 import io.rainfall.store.core.TestRun;
+import io.rainfall.store.data.ChunkedPayload;
+import io.rainfall.store.data.Payload;
 import org.junit.Test;
 
 import com.google.gson.Gson;
 
+import java.io.EOFException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static io.rainfall.store.core.TestRun.Status.COMPLETE;
 import static io.rainfall.store.core.TestRun.Status.INCOMPLETE;
+import static io.rainfall.store.data.CompressionFormat.LZ4;
+import static io.rainfall.store.data.CompressionServiceFactory.chunkedService;
 import static io.rainfall.store.data.Payload.raw;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.Instant.now;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -40,6 +53,7 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -507,6 +521,152 @@ public abstract class StoreTest {
     }
   }
 
+  @Test
+  public void testDuplicateOutputsShareTheirPayload() throws Exception {
+    try (Store store = createStore()) {
+      store.addTestCase("MyTest", testCase);
+      long runId = store.addRun("MyTest", run);
+      long jobId = store.addClientJob(runId, job);
+
+      AtomicInteger encoded = new AtomicInteger();
+      long id1 = store.addOutput(jobId, output1, payload -> {
+        encoded.incrementAndGet();
+        return payload;
+      });
+      long id2 = store.addOutput(jobId, output1, payload -> {
+        encoded.incrementAndGet();
+        return payload;
+      });
+      assertThat(encoded.get(), is(1));
+      assertEquals(store.getOutput(id1).map(Rec::getValue), store.getOutput(id2).map(Rec::getValue));
+
+      store.addStatsLog(runId, log);
+      int length = output1.getPayload().getData().length;
+      int logLength = log.getPayload().getData().length;
+      assertThat(store.getPayloadStats(),
+          is(new PayloadStats(2, 3, length + logLength, 2 * length + logLength)));
+    }
+  }
+
+  @Test
+  public void testDuplicateHlogsShareTheirHistograms() throws Exception {
+    try (Store store = createStore()) {
+      store.addTestCase("MyTest", testCase);
+      long runId = store.addRun("MyTest", run);
+      long jobId = store.addClientJob(runId, job);
+
+      byte[] log = Files.readAllBytes(Paths.get(StoreTest.class
+          .getResource("/io/rainfall/store/service/spark/153.hlog").toURI()));
+      OperationOutput output = OperationOutput.builder()
+          .operation("GET")
+          .format("hlog")
+          .payload(raw(log))
+          .build();
+      byte[] sequence = store.getHistogramSequence(store.addOutput(jobId, output))
+          .orElseThrow(AssertionError::new);
+      assertArrayEquals(sequence, store.getHistogramSequence(store.addOutput(jobId, output))
+          .orElseThrow(AssertionError::new));
+    }
+  }
+
+  @Test
+  public void testChunkedPayloadIsStoredApart() throws Exception {
+    try (Store store = createStore()) {
+      store.addTestCase("MyTest", testCase);
+      long runId = store.addRun("MyTest", run);
+      long jobId = store.addClientJob(runId, job);
+
+      byte[] data = "a\nbb\nccc\n".getBytes(UTF_8);
+      OperationOutput output = OperationOutput.builder()
+          .operation("GET")
+          .payload(raw(data))
+          .build();
+      Payload chunked = chunkedService(LZ4, 2).compress(data);
+      long id = store.addOutput(jobId, output, payload -> chunked);
+
+      assertEquals(Optional.of(chunked), store.getOutput(id).map(rec -> rec.getValue().getPayload()));
+      ChunkedPayload chunks = store.getOutputChunks(id)
+          .orElseThrow(AssertionError::new);
+      assertThat(chunks.getChunkCount(), is(3));
+      assertArrayEquals(data, chunks.decompress(ForkJoinPool.commonPool()));
+      assertFalse(store.getOutputChunks(store.addOutput(jobId, output1)).isPresent());
+    }
+  }
+
+  @Test
+  public void testTotalHistogramCoversAllOutputs() throws Exception {
+    try (Store store = createStore()) {
+      store.addTestCase("MyTest", testCase);
+      long runId = store.addRun("MyTest", run);
+      long jobId = store.addClientJob(runId, job);
+
+      byte[] log = Files.readAllBytes(Paths.get(StoreTest.class
+          .getResource("/io/rainfall/store/service/spark/153.hlog").toURI()));
+      store.addOutput(jobId, OperationOutput.builder()
+          .operation("GET")
+          .format("hlog")
+          .payload(raw(log))
+          .build());
+      assertTrue(store.getTotalHistogram(runId, "GET").isPresent());
+
+      store.addOutput(jobId, OperationOutput.builder()
+          .operation("GET")
+          .format("csv")
+          .data("DATA")
+          .build());
+      assertFalse(store.getTotalHistogram(runId, "GET").isPresent());
+    }
+  }
+
+  @Test
+  public void testAddClientJobBatch() throws Exception {
+    try (Store store = createStore()) {
+      store.addTestCase("MyTest", testCase);
+      long runId = store.addRun("MyTest", run);
+
+      ClientJobBatch batch = ClientJobBatch.builder()
+          .job(job)
+          .output(output1)
+          .output(output2)
+          .build();
+      long jobId = store.addClientJobBatch(runId, batch);
+
+      assertThat(store.getClientJob(jobId).map(Rec::getValue), is(Optional.of(job)));
+      List<OperationOutput> outputs = store.getOutputs(jobId)
+          .stream()
+          .map(Rec::getValue)
+          .collect(toList());
+      assertThat(outputs, containsInAnyOrder(output1.unloaded(), output2.unloaded()));
+    }
+  }
+
+  @Test
+  public void testFailedClientJobBatchIsRemoved() throws Exception {
+    try (Store store = createStore()) {
+      store.addTestCase("MyTest", testCase);
+      long runId = store.addRun("MyTest", run);
+
+      Stream<OperationOutput> failing = Stream.of(output1, output2)
+          .peek(output -> {
+            if (output == output2) {
+              throw new UncheckedIOException(new EOFException("Truncated"));
+            }
+          });
+      ClientJobBatch batch = ClientJobBatch.builder()
+          .job(job)
+          .outputs(failing)
+          .build();
+      try {
+        store.addClientJobBatch(runId, batch);
+        fail();
+      } catch (UncheckedIOException e) {
+        assertThat(store.getClientJobs(runId), empty());
+        assertThat(store.getOperationsForRun(runId), empty());
+        assertThat(store.getPayloadStats(), is(new PayloadStats(0, 0, 0, 0)));
+      }
+    }
+  }
+
   @Test
   public void testGetNonExistentStatsLog() throws Exception {
     try (Store store = createStore()) {
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.service;
+
+import io.rainfall.store.hdr.HdrData;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class HdrDataCacheTest {
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  public void testHit() {
+    HdrDataCache cache = new HdrDataCache(10, Long.MAX_VALUE);
+    HdrData first = cache.get(1L, "GET", 200, loader());
+    HdrData second = cache.get(1L, "GET", 200, loader());
+    assertThat(second, sameInstance(first));
+    assertThat(loads.get(), is(1));
+    assertThat(cache.getStats(), is(new HdrDataCache.Stats(1, 1024 + 32, 1, 1, 0)));
+  }
+
+  @Test
+  public void testKeyedByRunOperationAndResolution() {
+    HdrDataCache cache = new HdrDataCache(10, Long.MAX_VALUE);
+    cache.get(1L, "GET", 200, loader());
+    cache.get(2L, "GET", 200, loader());
+    cache.get(1L, "PUT", 200, loader());
+    cache.get(1L, "GET", 100, loader());
+    assertThat(loads.get(), is(4));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() {
+    HdrDataCache cache = new HdrDataCache(2, Long.MAX_VALUE);
+    HdrData first = cache.get(1L, "GET", 200, loader());
+    cache.get(2L, "GET", 200, loader());
+    cache.get(1L, "GET", 200, loader());
+    cache.get(3L, "GET", 200, loader());
+    assertThat(cache.get(1L, "GET", 200, loader()), sameInstance(first));
+    assertThat(loads.get(), is(3));
+    cache.get(2L, "GET", 200, loader());
+    assertThat(loads.get(), is(4));
+    assertThat(cache.getStats().getEvictions(), is(2L));
+  }
+
+  @Test
+  public void testEvictedBySize() {
+    HdrDataCache cache = new HdrDataCache(10, 2 * (1024 + 32));
+    cache.get(1L, "GET", 200, loader());
+    cache.get(2L, "GET", 200, loader());
+    cache.get(3L, "GET", 200, loader());
+    HdrDataCache.Stats stats = cache.getStats();
+    assertThat(stats.getEntries(), is(2));
+    assertThat(stats.getEvictions(), is(1L));
+  }
+
+  @Test
+  public void testInvalidate() {
+    HdrDataCache cache = new HdrDataCache(10, Long.MAX_VALUE);
+    HdrData first = cache.get(1L, "GET", 200, loader());
+    HdrData other = cache.get(2L, "GET", 200, loader());
+    cache.invalidate(1L);
+    assertThat(cache.get(1L, "GET", 200, loader()), not(sameInstance(first)));
+    assertThat(cache.get(2L, "GET", 200, loader()), sameInstance(other));
+    assertThat(loads.get(), is(3));
+  }
+
+  @Test
+  public void testNotCachedWhenInvalidatedWhileLoading() {
+    HdrDataCache cache = new HdrDataCache(10, Long.MAX_VALUE);
+    cache.get(1L, "GET", 200, () -> {
+      cache.invalidate(1L);
+      return loader().get();
+    });
+    cache.get(1L, "GET", 200, loader());
+    assertThat(loads.get(), is(2));
+  }
+
+  @Test
+  public void testNullNotCached() {
+    HdrDataCache cache = new HdrDataCache(10, Long.MAX_VALUE);
+    cache.get(1L, "GET", 200, () -> null);
+    assertThat(cache.getStats().getEntries(), is(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeEntries() {
+    new HdrDataCache(-1, 0);
+  }
+
+  private Supplier<HdrData> loader() {
+    return () -> {
+      loads.incrementAndGet();
+      return HdrData.builder()
+          .addStartTime(0L)
+          .addTps(1.0)
+          .addMean(0.0)
+          .addError(0.0)
+          .build();
+    };
+  }
+}
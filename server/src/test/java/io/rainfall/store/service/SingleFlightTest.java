@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.service;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+  private final SingleFlight<String, Object> flights = new SingleFlight<>();
+  private final AtomicInteger computations = new AtomicInteger();
+  private final CountDownLatch started = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @Test
+  public void testConcurrentComputationsShared() throws Exception {
+    Object value = new Object();
+    CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> flights.get("a", blocking(value)));
+    started.await();
+    CompletableFuture<Object> follower = CompletableFuture.supplyAsync(() -> flights.get("a", blocking(value)));
+    CompletableFuture<Object> other = CompletableFuture.supplyAsync(() -> flights.get("b", () -> value));
+    assertThat(other.get(), sameInstance(value));
+    Thread.sleep(100);
+    release.countDown();
+    assertThat(leader.get(), sameInstance(value));
+    assertThat(follower.get(), sameInstance(value));
+    assertThat(computations.get(), is(1));
+  }
+
+  @Test
+  public void testCompletedComputationsNotKept() {
+    flights.get("a", counting());
+    flights.get("a", counting());
+    assertThat(computations.get(), is(2));
+  }
+
+  @Test
+  public void testFailureShared() throws Exception {
+    CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> flights.get("a", () -> {
+      started.countDown();
+      await(release);
+      throw new IllegalStateException("failed");
+    }));
+    started.await();
+    CompletableFuture<Object> follower = CompletableFuture.supplyAsync(() -> {
+      try {
+        return flights.get("a", counting());
+      } catch (IllegalStateException e) {
+        return e.getMessage();
+      }
+    });
+    Thread.sleep(100);
+    release.countDown();
+    try {
+      leader.join();
+      fail();
+    } catch (RuntimeException e) {
+      assertThat(e.getCause().getMessage(), is("failed"));
+    }
+    assertThat(follower.get(), is("failed"));
+    assertThat(computations.get(), is(0));
+  }
+
+  @Test
+  public void testForgottenComputationsNotShared() throws Exception {
+    Object value = new Object();
+    CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> flights.get("a", blocking(value)));
+    started.await();
+    flights.forget(key -> key.equals("a"));
+    flights.get("a", counting());
+    release.countDown();
+    assertThat(leader.get(), sameInstance(value));
+    assertThat(computations.get(), is(2));
+  }
+
+  private Supplier<Object> blocking(Object value) {
+    return () -> {
+      computations.incrementAndGet();
+      started.countDown();
+      await(release);
+      return value;
+    };
+  }
+
+  private Supplier<Object> counting() {
+    return () -> {
+      computations.incrementAndGet();
+      return new Object();
+    };
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -18,11 +18,13 @@ package io.rainfall.store.service;
 
 import io.rainfall.store.core.ChangeReport;
 import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
 import io.rainfall.store.core.MetricsLog;
 import io.rainfall.store.core.OperationOutput;
 import io.rainfall.store.core.StatsLog;
 import io.rainfall.store.core.TestCase;
 import io.rainfall.store.core.TestRun;
+import io.rainfall.store.data.ChunkedPayload;
 import io.rainfall.store.data.CompressionService;
 import io.rainfall.store.data.Payload;
 import io.rainfall.store.hdr.HdrData;
@@ -30,23 +32,47 @@ import io.rainfall.store.hdr.HistogramService;
 import io.rainfall.store.record.ClientJobRec;
 import io.rainfall.store.record.DuplicateNameException;
 import io.rainfall.store.record.OutputRec;
+import io.rainfall.store.record.PayloadStats;
 import io.rainfall.store.record.RunRec;
 import io.rainfall.store.record.StatsRec;
 import io.rainfall.store.record.Store;
 import io.rainfall.store.record.TestCaseRec;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import com.google.gson.Gson;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import static io.rainfall.store.core.TestRun.Status.FAILED;
+import static io.rainfall.store.data.CompressionFormat.DEFLATE;
+import static io.rainfall.store.data.CompressionFormat.HLOG;
 import static io.rainfall.store.data.CompressionFormat.LZ4;
+import static io.rainfall.store.data.CompressionServiceFactory.chunkedService;
 import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
 import static io.rainfall.store.data.Payload.toUtfString;
 import static io.rainfall.store.hdr.Percentile.MEDIAN;
@@ -55,6 +81,7 @@ import static java.net.HttpURLConnection.HTTP_CONFLICT;
 import static java.net.HttpURLConnection.HTTP_CREATED;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 import static java.net.HttpURLConnection.HTTP_OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
@@ -70,17 +97,23 @@ import static org.eclipse.jetty.http.MimeTypes.Type.TEXT_HTML;
 import static org.eclipse.jetty.http.MimeTypes.Type.TEXT_PLAIN;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -172,6 +205,8 @@ public class StoreServiceTest {
         .thenReturn(of(new ClientJobRec(1L, 1L, job, 0L)));
     when(store.addClientJob(anyLong(), any()))
         .thenReturn(2L);
+    when(store.addClientJobBatch(anyLong(), any(), any()))
+        .thenReturn(2L);
 
     when(store.getOutputs(1L))
         .thenReturn(singletonList(
@@ -182,8 +217,10 @@ public class StoreServiceTest {
         .thenReturn(of(new OutputRec(1L, 1L, compressed(output), 0L)));
     when(store.getOutput(2L))
         .thenReturn(of(new OutputRec(1L, 1L, compressed(output), 0L)));
-    when(store.addOutput(anyLong(), any()))
+    when(store.addOutput(anyLong(), any(), any()))
         .thenReturn(2L);
+    when(store.getOutputPayloadHash(1L))
+        .thenReturn(of(output.getPayload().contentHash()));
 
     when(store.getStats(1L))
         .thenReturn(singletonList(new StatsRec(1L, 1L, log, 0L)));
@@ -226,6 +263,18 @@ public class StoreServiceTest {
     }
   }
 
+  private static String readString(InputStream is) throws IOException {
+    try (InputStream in = is) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      int n;
+      while ((n = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, n);
+      }
+      return new String(out.toByteArray(), UTF_8);
+    }
+  }
+
   @Test
   public void testGetNonExistentTestCase() {
     assertNotFound(service().getTestCase("NoSuchName"),
@@ -464,6 +513,99 @@ public class StoreServiceTest {
         new ChangeReport(1L, 0.2, singletonMap("GET", 0.1)))));
   }
 
+  @Test
+  public void testCheckRegressionReadsOutputPayloads() {
+    Store store = mock(Store.class);
+    RunRec runRec = mock(RunRec.class);
+    when(runRec.getParentID())
+        .thenReturn("Test1");
+    when(store.getRun(2L))
+        .thenReturn(Optional.of(runRec));
+    when(store.getLastBaselineID("Test1"))
+        .thenReturn(Optional.of(1L));
+    when(store.getOperationsForRun(2L))
+        .thenReturn(new HashSet<>(asList("GET", "MISS")));
+    OperationOutput miss = OperationOutput.builder()
+        .operation("MISS")
+        .data("DATA")
+        .build();
+    for (long runId : new long[] { 1L, 2L }) {
+      long jobId = 10 * runId;
+      when(store.getClientJobs(runId))
+          .thenReturn(singletonList(new ClientJobRec(runId, jobId, job, 0L)));
+      when(store.getOutputs(jobId))
+          .thenReturn(asList(
+              new OutputRec(jobId, jobId + 1, output.unloaded(), 0L),
+              new OutputRec(jobId, jobId + 2, miss.unloaded(), 0L)));
+      when(store.getOutputsForOperation(runId, "GET"))
+          .thenReturn(singletonList(new OutputRec(jobId, jobId + 1, compressed(output), 0L)));
+      when(store.getOutputsForOperation(runId, "MISS"))
+          .thenReturn(singletonList(new OutputRec(jobId, jobId + 2, compressed(miss), 0L)));
+    }
+
+    HistogramService histogramService = mock(HistogramService.class);
+    List<String> logs = Collections.synchronizedList(new ArrayList<>());
+    doAnswer(invocation -> {
+      List<Supplier<InputStream>> suppliers = invocation.getArgument(0);
+      for (Supplier<InputStream> supplier : suppliers) {
+        logs.add(readString(supplier.get()));
+      }
+      return HDR_LOG;
+    }).when(histogramService).aggregateHdrData(any());
+    when(histogramService.comparePercentiles(any(), any()))
+        .thenReturn(0.1);
+
+    StoreService perfService = new StoreService(store, histogramService);
+    Result result = perfService.checkRegression("2", "0.2");
+
+    Map<String, Double> expected = new HashMap<>();
+    expected.put("GET", 0.1);
+    expected.put("MISS", 0.1);
+    assertThat(result, is(new Result(HTTP_OK, APPLICATION_JSON,
+        new ChangeReport(1L, 0.2, expected))));
+    assertThat(logs, is(nCopies(4, "DATA")));
+    verify(store, times(1)).getOutputsForOperation(1L, "GET");
+    verify(store, times(1)).getOutputsForOperation(2L, "MISS");
+  }
+
+  @Test
+  public void testCheckRegressionFromTotalHistograms() {
+    Store store = mock(Store.class);
+    RunRec runRec = mock(RunRec.class);
+    when(runRec.getParentID())
+        .thenReturn("Test1");
+    when(store.getRun(2L))
+        .thenReturn(Optional.of(runRec));
+    when(store.getLastBaselineID("Test1"))
+        .thenReturn(Optional.of(1L));
+    when(store.getOperationsForRun(anyLong()))
+        .thenReturn(singleton("GET"));
+    byte[] baselineTotal = { 1 };
+    byte[] total = { 2 };
+    when(store.getTotalHistogram(1L, "GET"))
+        .thenReturn(of(baselineTotal));
+    when(store.getTotalHistogram(2L, "GET"))
+        .thenReturn(of(total));
+
+    HistogramService histogramService = mock(HistogramService.class);
+    HdrData baselineData = HdrData.builder().build();
+    HdrData hdrData = HdrData.builder().build();
+    when(histogramService.readTotalHdrData(baselineTotal))
+        .thenReturn(baselineData);
+    when(histogramService.readTotalHdrData(total))
+        .thenReturn(hdrData);
+    when(histogramService.comparePercentiles(baselineData, hdrData))
+        .thenReturn(0.1);
+
+    StoreService perfService = new StoreService(store, histogramService);
+    Result result = perfService.checkRegression("2", "0.2");
+
+    assertThat(result, is(new Result(HTTP_OK, APPLICATION_JSON,
+        new ChangeReport(1L, 0.2, singletonMap("GET", 0.1)))));
+    verify(store, times(0)).getOutputsForOperation(anyLong(), anyString());
+    verify(histogramService, times(0)).aggregateHdrData(any());
+  }
+
   @Test
   public void testGetClientJobs() {
     Result result = service().getClientJobs("1");
@@ -518,16 +660,97 @@ public class StoreServiceTest {
 
   @Test
   public void testGetNonExistentOutputData() {
-    assertNotFound(service().getOutputData("0"),
+    assertNotFound(service().getOutputData("0", coding -> true),
         "Output ID not found: 0.");
   }
 
   @Test
-  public void tesGetOutputData() {
+  public void tesGetOutputData() throws IOException {
     Result found = service()
-        .getOutputData("1");
-    assertThat(found,
-        is(new Result(HTTP_OK, APPLICATION_JSON, "DATA")));
+        .getOutputData("1", "deflate"::equals);
+    assertThat(found.getCode(), is(HTTP_OK));
+    PayloadDownload download = (PayloadDownload)found.getContent();
+    assertThat(download.getContentEncoding(), is(empty()));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    download.writeTo(out);
+    assertThat(toUtfString(out.toByteArray()), is("DATA"));
+  }
+
+  @Test
+  public void testGetOutputDataAsStored() throws IOException, URISyntaxException {
+    byte[] log = Files.readAllBytes(Paths.get(StoreServiceTest.class.getResource("spark/109.hlog").toURI()));
+    Payload payload = compressionService(DEFLATE).compress(log);
+    Store store = mock(Store.class);
+    when(store.getOutput(1L))
+        .thenReturn(of(new OutputRec(1L, 1L, output.withPayload(payload), 0L)));
+    StoreService service = new StoreService(store, mock(HistogramService.class));
+
+    PayloadDownload stored = (PayloadDownload)service.getOutputData("1", "deflate"::equals).getContent();
+    assertThat(stored.getContentEncoding(), is(of("deflate")));
+    assertThat(stored.getContentLength(), is(of(payload.getData().length)));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    stored.writeTo(out);
+    assertArrayEquals(payload.getData(), out.toByteArray());
+
+    PayloadDownload decompressed = (PayloadDownload)service.getOutputData("1", "gzip"::equals).getContent();
+    assertThat(decompressed.getContentEncoding(), is(empty()));
+    out.reset();
+    decompressed.writeTo(out);
+    assertArrayEquals(log, out.toByteArray());
+  }
+
+  @Test
+  public void testGetOutputValidator() {
+    StoreService service = service();
+    String validator = service.getOutputValidator("1")
+        .orElseThrow(AssertionError::new);
+    assertThat(validator, is("o1-" + output.getPayload().contentHash().substring(0, 16)));
+    assertThat(service.getOutputData("1", coding -> false).getContent().toString(), containsString(validator));
+    assertThat(service.getOutputValidator("0"), is(empty()));
+    assertThat(service.getOutputValidator("a"), is(empty()));
+  }
+
+  @Test
+  public void testGetOutputValidatorDoesNotReadOutput() {
+    Store store = mock(Store.class);
+    when(store.getOutputPayloadHash(1L))
+        .thenReturn(of("0123456789abcdef0123"));
+    StoreService service = new StoreService(store, mock(HistogramService.class));
+    assertThat(service.getOutputValidator("1"), is(of("o1-0123456789abcdef")));
+    verify(store, never()).getOutput(anyLong());
+  }
+
+  @Test
+  public void testGetOutputDownloadValidator() {
+    Store store = mock(Store.class);
+    when(store.getOutputPayloadHash(1L))
+        .thenReturn(of("0123456789abcdef0123"));
+    when(store.getOutputPayloadFormat(1L))
+        .thenReturn(of(DEFLATE))
+        .thenReturn(of(DEFLATE))
+        .thenReturn(of(LZ4));
+    StoreService service = new StoreService(store, mock(HistogramService.class));
+    assertThat(service.getOutputDownloadValidator("1", "deflate"::equals), is(of("o1-0123456789abcdef-deflate")));
+    assertThat(service.getOutputDownloadValidator("1", "gzip"::equals), is(of("o1-0123456789abcdef")));
+    assertThat(service.getOutputDownloadValidator("1", "deflate"::equals), is(of("o1-0123456789abcdef")));
+    assertThat(service.getOutputDownloadValidator("0", "deflate"::equals), is(empty()));
+    verify(store, never()).getOutput(anyLong());
+  }
+
+  @Test
+  public void testGetAggregateValidator() {
+    Store store = mock(Store.class);
+    when(store.getOutputIDsForOperation(1L, "GET"))
+        .thenReturn(asList(3L, 5L))
+        .thenReturn(asList(3L, 5L, 8L));
+    when(store.getOutputPayloadHash(5L))
+        .thenReturn(of("5555555555555555ffff"));
+    when(store.getOutputPayloadHash(8L))
+        .thenReturn(of("8888888888888888ffff"));
+    StoreService service = new StoreService(store, mock(HistogramService.class));
+    assertThat(service.getAggregateValidator("1", "GET"), is(of("a1-2-o5-5555555555555555")));
+    assertThat(service.getAggregateValidator("1", "GET"), is(of("a1-3-o8-8888888888888888")));
+    assertThat(service.getAggregateValidator("1", "PUT"), is(empty()));
   }
 
   @Test
@@ -546,6 +769,167 @@ public class StoreServiceTest {
         is(new Result(HTTP_OK, APPLICATION_JSON, HDR_LOG)));
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testGetHdrDataFromHistogramSequence() throws IOException {
+    byte[] sequence = { 1, 2, 3 };
+    Store store = mock(Store.class);
+    when(store.getOutput(1L))
+        .thenReturn(of(new OutputRec(1L, 1L, compressed(output), 0L)));
+    when(store.getHistogramSequence(1L))
+        .thenReturn(of(sequence));
+    HistogramService histogramService = mock(HistogramService.class);
+    when(histogramService.readHdrData(any()))
+        .thenReturn(HDR_LOG);
+
+    Result found = new StoreService(store, histogramService).getHdrData("1");
+
+    assertThat(found,
+        is(new Result(HTTP_OK, APPLICATION_JSON, HDR_LOG)));
+    verify(store, never()).getOutput(anyLong());
+    ArgumentCaptor<Supplier<InputStream>> source = ArgumentCaptor.forClass(Supplier.class);
+    verify(histogramService).readHdrData(source.capture());
+    try (InputStream is = source.getValue().get()) {
+      byte[] read = new byte[sequence.length + 1];
+      assertThat(is.read(read), is(sequence.length));
+      assertThat(Arrays.copyOf(read, sequence.length), is(sequence));
+    }
+  }
+
+  @Test
+  public void testAggregateHdrDataCached() {
+    Store store = mock(Store.class);
+    when(store.getOutputsForOperation(1L, "GET"))
+        .thenReturn(emptyList());
+    HistogramService histogramService = mock(HistogramService.class);
+    when(histogramService.aggregateHdrData(any()))
+        .thenReturn(HDR_LOG);
+    StoreService perfService = new StoreService(store, histogramService);
+
+    perfService.getAggregateHdrData("1", "GET");
+    Result found = perfService.getAggregateHdrData("1", "GET");
+
+    assertThat(found,
+        is(new Result(HTTP_OK, APPLICATION_JSON, HDR_LOG)));
+    verify(histogramService, times(1)).aggregateHdrData(any());
+    assertThat(perfService.getHdrDataCacheStats().getContent(),
+        is(new HdrDataCache.Stats(1, 1024 + 32 + 8 + 16, 1, 1, 0)));
+  }
+
+  @Test
+  public void testConcurrentAggregatesCoalesced() throws Exception {
+    Store store = mock(Store.class);
+    when(store.getOutputsForOperation(1L, "GET"))
+        .thenReturn(emptyList());
+    HistogramService histogramService = mock(HistogramService.class);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(histogramService.aggregateHdrData(any()))
+        .thenAnswer(invocation -> {
+          started.countDown();
+          release.await();
+          return HDR_LOG;
+        });
+    StoreService perfService = new StoreService(store, histogramService);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Result>> results = new ArrayList<>();
+      results.add(executor.submit(() -> perfService.getAggregateHdrData("1", "GET")));
+      started.await();
+      for (int i = 0; i < 3; i++) {
+        results.add(executor.submit(() -> perfService.getAggregateHdrData("1", "GET")));
+      }
+      Thread.sleep(100);
+      release.countDown();
+      for (Future<Result> result : results) {
+        assertThat(result.get(), is(new Result(HTTP_OK, APPLICATION_JSON, HDR_LOG)));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    verify(histogramService, times(1)).aggregateHdrData(any());
+  }
+
+  @Test
+  public void testAddClientJobBatch() throws IOException {
+    ClientJobBatch batch = ClientJobBatch.builder()
+        .job(job)
+        .output(output)
+        .build();
+    Result added = service()
+        .addClientJobBatch("1", framed(batch));
+    assertThat(added,
+        is(new Result(HTTP_CREATED, TEXT_HTML, 2L)));
+  }
+
+  @Test
+  public void testAddClientJobBatchInvalidatesRun() throws IOException {
+    Store store = mock(Store.class);
+    when(store.getOutputsForOperation(1L, "GET"))
+        .thenReturn(emptyList());
+    HistogramService histogramService = mock(HistogramService.class);
+    when(histogramService.aggregateHdrData(any()))
+        .thenReturn(HDR_LOG);
+    StoreService perfService = new StoreService(store, histogramService);
+
+    ClientJobBatch batch = ClientJobBatch.builder()
+        .job(job)
+        .output(output)
+        .output(output)
+        .build();
+    perfService.getAggregateHdrData("1", "GET");
+    perfService.addClientJobBatch("1", framed(batch));
+    perfService.getAggregateHdrData("1", "GET");
+
+    verify(store).addClientJobBatch(eq(1L), argThat(candidate -> job.equals(candidate.getJob())), any());
+    verify(histogramService, times(2)).aggregateHdrData(any());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddTruncatedClientJobBatch() throws IOException {
+    Store store = mock(Store.class);
+    doAnswer(invocation -> {
+      ClientJobBatch batch = invocation.getArgument(1);
+      return batch.getOutputs().count();
+    }).when(store).addClientJobBatch(anyLong(), any(), any());
+    StoreService perfService = new StoreService(store, mock(HistogramService.class));
+
+    ClientJobBatch batch = ClientJobBatch.builder()
+        .job(job)
+        .output(output)
+        .build();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    batch.write(out);
+    byte[] bytes = out.toByteArray();
+    perfService.addClientJobBatch("1", new ByteArrayInputStream(bytes, 0, bytes.length - 2));
+  }
+
+  private static InputStream framed(ClientJobBatch batch) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    batch.write(out);
+    return new ByteArrayInputStream(out.toByteArray());
+  }
+
+  @Test
+  public void testAddOutputInvalidatesRun() {
+    Store store = mock(Store.class);
+    when(store.getOutputsForOperation(1L, "GET"))
+        .thenReturn(emptyList());
+    when(store.getClientJob(1L))
+        .thenReturn(of(new ClientJobRec(1L, 1L, job, 0L)));
+    HistogramService histogramService = mock(HistogramService.class);
+    when(histogramService.aggregateHdrData(any()))
+        .thenReturn(HDR_LOG);
+    StoreService perfService = new StoreService(store, histogramService);
+
+    perfService.getAggregateHdrData("1", "GET");
+    perfService.addOutput("1", gson.toJson(output, OperationOutput.class));
+    perfService.getAggregateHdrData("1", "GET");
+
+    verify(histogramService, times(2)).aggregateHdrData(any());
+  }
+
   @Test
   public void testGetComparativeHdrData() {
     Result found = service()
@@ -562,6 +946,41 @@ public class StoreServiceTest {
         is(new Result(HTTP_OK, APPLICATION_JSON, expected)));
   }
 
+  @Test
+  public void testGetComparativeHdrDataFromTotalHistograms() {
+    Store store = mock(Store.class);
+    when(store.getOutputsForOperation(anyLong(), anyString()))
+        .thenReturn(emptyList());
+    byte[] total1 = { 1 };
+    byte[] total2 = { 2 };
+    when(store.getTotalHistogram(1L, "GET"))
+        .thenReturn(of(total1));
+    when(store.getTotalHistogram(2L, "GET"))
+        .thenReturn(of(total2));
+
+    HistogramService histogramService = mock(HistogramService.class);
+    HdrData percentiles1 = HdrData.builder().addFixedPercentileValue(1L).build();
+    HdrData percentiles2 = HdrData.builder().addFixedPercentileValue(2L).build();
+    when(histogramService.aggregateHdrData(any()))
+        .thenReturn(HDR_LOG);
+    when(histogramService.readTotalHdrData(total1))
+        .thenReturn(percentiles1);
+    when(histogramService.readTotalHdrData(total2))
+        .thenReturn(percentiles2);
+    when(histogramService.comparePercentiles(percentiles1, percentiles2))
+        .thenReturn(0.5);
+
+    Result found = new StoreService(store, histogramService)
+        .getComparativeHdrData("1-2", "GET");
+
+    Map<Long, HdrData> runs = new LinkedHashMap<>();
+    runs.put(1L, HDR_LOG);
+    runs.put(2L, HDR_LOG);
+    Comparison expected = new Comparison(runs, singletonMap(new Pair(1L, 2L), 0.5));
+    assertThat(found,
+        is(new Result(HTTP_OK, APPLICATION_JSON, expected)));
+  }
+
   @Test
   public void testGetComparativeHdrDataForDuplicateRun() {
     Result found = service()
@@ -574,6 +993,27 @@ public class StoreServiceTest {
         is(new Result(HTTP_OK, APPLICATION_JSON, expected)));
   }
 
+  @Test
+  public void testAddUploadedOutput() {
+    Result added = service()
+        .addOutput("1", "GET", null, Payload.raw("data"));
+    assertThat(added,
+        is(new Result(HTTP_CREATED, TEXT_HTML, 2L)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddUploadedOutputWithoutOperation() {
+    service().addOutput("1", null, "hlog", Payload.raw("data"));
+  }
+
+  @Test
+  public void testAddUploadedStatsLog() {
+    Result added = service()
+        .addStatsLog("1", "localhost", null, Payload.raw("1111"));
+    assertThat(added,
+        is(new Result(HTTP_CREATED, TEXT_HTML, 2L)));
+  }
+
   @Test
   public void testAddOutput() {
     OperationOutput zipped = OperationOutput.builder()
@@ -587,6 +1027,84 @@ public class StoreServiceTest {
         is(new Result(HTTP_CREATED, TEXT_HTML, 2L)));
   }
 
+  @Test
+  public void testAddOutputStoredAsHlog() throws IOException, URISyntaxException {
+    byte[] log = Files.readAllBytes(Paths.get(StoreServiceTest.class.getResource("spark/109.hlog").toURI()));
+    OperationOutput output = OperationOutput.builder()
+        .operation("GET")
+        .payload(compressionService(LZ4).compress(log))
+        .build();
+    Store store = mock(Store.class);
+    when(store.getClientJob(1L))
+        .thenReturn(empty());
+    new StoreService(store, mock(HistogramService.class))
+        .addOutput("1", gson.toJson(output, OperationOutput.class));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<UnaryOperator<Payload>> encoder = ArgumentCaptor.forClass(UnaryOperator.class);
+    verify(store).addOutput(eq(1L), eq(output), encoder.capture());
+    Payload payload = encoder.getValue().apply(output.getPayload());
+    assertThat(payload.getFormat(), is(HLOG));
+    assertArrayEquals(log, compressionService(HLOG).decompress(payload));
+  }
+
+  @Test
+  public void testGetPayloadStats() {
+    Store store = mock(Store.class);
+    PayloadStats stats = new PayloadStats(2, 3, 100, 150);
+    when(store.getPayloadStats())
+        .thenReturn(stats);
+    Result found = new StoreService(store, mock(HistogramService.class))
+        .getPayloadStats();
+    assertThat(found,
+        is(new Result(HTTP_OK, APPLICATION_JSON, stats)));
+    assertThat(stats.getDedupRatio(), is(1.5));
+  }
+
+  @Test
+  public void testGetOutputIntervalsFromChunks() throws IOException, URISyntaxException {
+    byte[] log = Files.readAllBytes(Paths.get(StoreServiceTest.class.getResource("spark/153.hlog").toURI()));
+    OperationOutput output = OperationOutput.builder()
+        .operation("GET")
+        .payload(chunkedService(LZ4, 64 * 1024).compress(log))
+        .build();
+    Store store = mock(Store.class);
+    when(store.getOutput(1L))
+        .thenReturn(of(new OutputRec(1L, 1L, output, 0L)));
+    when(store.getOutputChunks(1L))
+        .thenCallRealMethod();
+    StoreService service = new StoreService(store, mock(HistogramService.class));
+
+    Result all = service.getOutputIntervals("1", null, null);
+    assertThat(all, is(new Result(HTTP_OK, TEXT_PLAIN, toUtfString(log))));
+
+    String window = (String)service.getOutputIntervals("1", "600", "601").getContent();
+    assertThat(window, containsString("\n600."));
+    assertThat(window.length() < log.length / 2, is(true));
+
+    assertThat(service.getOutputIntervals("1", "a", null).getCode(), is(HTTP_BAD_REQUEST));
+  }
+
+  @Test
+  public void testGetOutputIntervalsReadsSelectedChunks() throws IOException, URISyntaxException {
+    byte[] log = Files.readAllBytes(Paths.get(StoreServiceTest.class.getResource("spark/153.hlog").toURI()));
+    ChunkedPayload whole = ChunkedPayload.of(chunkedService(LZ4, 64 * 1024).compress(log));
+    Set<Integer> read = ConcurrentHashMap.newKeySet();
+    ChunkedPayload apart = ChunkedPayload.of(whole.index(), chunk -> {
+      read.add(chunk);
+      return whole.chunk(chunk);
+    });
+    Store store = mock(Store.class);
+    when(store.getOutputChunks(1L))
+        .thenReturn(of(apart));
+    StoreService service = new StoreService(store, mock(HistogramService.class));
+
+    String window = (String)service.getOutputIntervals("1", "600", "601").getContent();
+    assertThat(window, containsString("\n600."));
+    assertThat(read.size() < whole.getChunkCount() / 2, is(true));
+    verify(store, never()).getOutput(anyLong());
+  }
+
   @Test
   public void testGetNonExistentStatsLog() {
     assertNotFound(service().getStatsLog("0"),
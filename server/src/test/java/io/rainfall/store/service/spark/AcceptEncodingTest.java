@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.rainfall.store.service.spark;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AcceptEncodingTest {
+
+  @Test
+  public void testAccepted() {
+    assertTrue(AcceptEncoding.accepts("gzip;q=1.0, deflate;q=0.5", "deflate"));
+    assertTrue(AcceptEncoding.accepts("GZIP", "gzip"));
+    assertTrue(AcceptEncoding.accepts("*", "deflate"));
+  }
+
+  @Test
+  public void testNotAccepted() {
+    for (String acceptEncoding : new String[] { null, "gzip", "deflate;q=0", "*;q=0", "*, deflate;q=0" }) {
+      assertFalse(acceptEncoding, AcceptEncoding.accepts(acceptEncoding, "deflate"));
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.service.spark;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QueryPoolTest {
+
+  @Test
+  public void testRunOnPool() throws Exception {
+    try (QueryPool pool = new QueryPool(1, 1, 5)) {
+      Route route = pool.admit((q, s) -> Thread.currentThread().getName());
+      Object result = route.handle(mock(Request.class), mock(Response.class));
+      assertThat(result.toString(), startsWith("rainfall-query-"));
+    }
+  }
+
+  @Test
+  public void testRejectWhenSaturated() throws Exception {
+    try (QueryPool pool = new QueryPool(1, 1, 5)) {
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      Route blocking = pool.admit((q, s) -> {
+        started.countDown();
+        release.await();
+        return "done";
+      });
+      CompletableFuture<Object> running = CompletableFuture.supplyAsync(() -> handle(blocking));
+      started.await(10, TimeUnit.SECONDS);
+      CompletableFuture<Object> queued = CompletableFuture.supplyAsync(() -> handle(blocking));
+      while (pool.queued() == 0) {
+        Thread.sleep(10);
+      }
+
+      Response response = mock(Response.class);
+      when(response.raw()).thenReturn(mock(HttpServletResponse.class));
+      Route light = pool.admit((q, s) -> "ok");
+      light.handle(mock(Request.class), response);
+      verify(response).status(HTTP_UNAVAILABLE);
+      verify(response).header("Retry-After", "5");
+
+      release.countDown();
+      assertThat(running.get(10, TimeUnit.SECONDS), is("done"));
+      assertThat(queued.get(10, TimeUnit.SECONDS), is("done"));
+      Response admitted = mock(Response.class);
+      assertThat(light.handle(mock(Request.class), admitted), is("ok"));
+      verify(admitted, never()).status(HTTP_UNAVAILABLE);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testRouteException() throws Exception {
+    try (QueryPool pool = new QueryPool(1, 1, 5)) {
+      pool.admit((q, s) -> {
+        throw new IOException();
+      }).handle(mock(Request.class), mock(Response.class));
+      fail();
+    }
+  }
+
+  private static Object handle(Route route) {
+    try {
+      return route.handle(mock(Request.class), mock(Response.class));
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
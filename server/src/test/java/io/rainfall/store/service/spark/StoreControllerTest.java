@@ -23,6 +23,7 @@ import io.rainfall.store.core.StatsLog;
 import io.rainfall.store.core.TestCase;
 import io.rainfall.store.core.TestRun;
 import io.rainfall.store.data.CompressionService;
+import io.rainfall.store.data.Payload;
 import io.rainfall.store.hdr.HdrData;
 import io.rainfall.store.record.OutputRec;
 import io.rainfall.store.record.Rec;
@@ -44,7 +45,10 @@ import com.terracottatech.store.configuration.DatasetConfiguration;
 import com.terracottatech.store.configuration.MemoryUnit;
 import com.terracottatech.store.manager.DatasetManager;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
@@ -52,6 +56,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
@@ -61,6 +66,7 @@ import javax.ws.rs.core.Response;
 
 import static com.terracottatech.store.manager.DatasetManager.embedded;
 import static io.rainfall.store.core.TestRun.Status.COMPLETE;
+import static io.rainfall.store.data.CompressionFormat.DEFLATE;
 import static io.rainfall.store.data.CompressionFormat.LZ4;
 import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
 import static io.rainfall.store.data.Payload.toUtfString;
@@ -71,8 +77,10 @@ import static java.net.HttpURLConnection.HTTP_CONFLICT;
 import static java.net.HttpURLConnection.HTTP_CREATED;
 import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static java.net.HttpURLConnection.HTTP_SEE_OTHER;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.readAllBytes;
 import static java.util.Collections.singletonMap;
 import static java.util.function.Function.identity;
@@ -473,6 +481,109 @@ public class StoreControllerTest {
     assertData(get("outputs/2"), "LOG");
   }
 
+  @Test
+  public void testGetOutputAsStored() throws IOException {
+    store.addTestCase("Test1", testCase);
+    long runId = store.addRun("Test1", run);
+    long jobId = store.addClientJob(runId, job);
+    Payload payload = compressionService(DEFLATE).compress("DATA".getBytes(UTF_8));
+    store.addOutput(jobId, output1.withPayload(payload));
+    Client client = new ResteasyClientBuilderImpl()
+        .build();
+    try {
+      Response deflated = client.target(URL)
+          .path("outputs/1")
+          .request()
+          .header("Accept-Encoding", "gzip, deflate")
+          .get();
+      assertThat(deflated.getStatus(), is(HTTP_OK));
+      assertThat(deflated.getHeaderString("Content-Encoding"), is("deflate"));
+      assertThat(Arrays.equals(deflated.readEntity(byte[].class), payload.getData()), is(true));
+
+      Response decompressed = client.target(URL)
+          .path("outputs/1")
+          .request()
+          .header("Accept-Encoding", "gzip")
+          .get();
+      assertThat(decompressed.getHeaderString("Content-Encoding"), is((String)null));
+      assertData(result(decompressed), "DATA");
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void testGetOutputsGzipped() throws IOException {
+    store.addTestCase("Test1", testCase);
+    long runId = store.addRun("Test1", run);
+    long jobId = store.addClientJob(runId, job);
+    store.addOutput(jobId, output1);
+    store.addOutput(jobId, output2);
+    String expected = get("jobs/1/outputs").getContent().toString();
+
+    HttpURLConnection connection = (HttpURLConnection)new java.net.URL(URL + "jobs/1/outputs").openConnection();
+    connection.setRequestProperty("Accept-Encoding", "gzip");
+    try {
+      assertThat(connection.getResponseCode(), is(HTTP_OK));
+      assertThat(connection.getHeaderField("Content-Encoding"), is("gzip"));
+      assertThat(connection.getHeaderField("Vary"), is("Accept-Encoding"));
+      try (InputStream is = new GZIPInputStream(connection.getInputStream())) {
+        assertThat(new String(readFully(is), UTF_8), is(expected));
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private static byte[] readFully(InputStream is) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = is.read(buffer)) >= 0) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testGetOutputNotModified() {
+    store.addTestCase("Test1", testCase);
+    long runId = store.addRun("Test1", run);
+    long jobId = store.addClientJob(runId, job);
+    store.addOutput(jobId, output1);
+    Client client = new ResteasyClientBuilderImpl()
+        .build();
+    try {
+      Response first = client.target(URL)
+          .path("outputs/1")
+          .request()
+          .get();
+      String etag = first.getHeaderString("ETag");
+      assertThat(first.getHeaderString("Cache-Control"), containsString("immutable"));
+      first.close();
+
+      Response second = client.target(URL)
+          .path("outputs/1")
+          .request()
+          .header("If-None-Match", etag)
+          .get();
+      assertThat(second.getStatus(), is(HTTP_NOT_MODIFIED));
+      assertThat(second.getHeaderString("ETag"), is(etag));
+      second.close();
+
+      Response other = client.target(URL)
+          .path("outputs/1")
+          .request()
+          .header("If-None-Match", etag.substring(0, etag.length() - 1) + "-hdr\"")
+          .get();
+      assertThat(other.getStatus(), is(HTTP_OK));
+      assertThat(other.getHeaderString("ETag"), is(etag));
+      other.close();
+    } finally {
+      client.close();
+    }
+  }
+
   @Test
   public void testAddOutput() {
     store.addTestCase("Test1", testCase);
@@ -497,6 +608,7 @@ public class StoreControllerTest {
     Result result = get("outputs/1/io.rainfall.store.service.spark");
     assertThat(result.getCode(), is(HTTP_OK));
     assertThat(result.getContentType(), is(APPLICATION_JSON));
+    assertThat(get("outputs/1/hdr"), is(result));
 
     HdrData hdrData = gson.fromJson(
         result.getContent().toString(),
@@ -16,6 +16,8 @@
 
 package io.rainfall.store.controllers;
 
+import io.rainfall.store.data.CompressionFormat;
+import io.rainfall.store.data.Payload;
 import io.rainfall.store.dataset.Dataset;
 import io.rainfall.store.dataset.Record;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,9 +28,14 @@ import org.springframework.ui.ModelMap;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.stream.Stream;
 
+import javax.servlet.http.HttpServletRequest;
+
+import static io.rainfall.store.data.CompressionFormat.RAW;
+
 abstract class DatasetController<R extends Record<?>, S extends Dataset<R, ?>> {
 
   protected final String path;
@@ -53,6 +60,21 @@ abstract class DatasetController<R extends Record<?>, S extends Dataset<R, ?>> {
     return new ResponseEntity<>(id, responseHeaders, status);
   }
 
+  /**
+   * Read the payload of a value posted as it was compressed.
+   *
+   * @param originalLength required unless the payload is raw.
+   */
+  static Payload readPayload(HttpServletRequest request, CompressionFormat compression,
+                             Integer originalLength) throws IOException {
+    if (originalLength == null && compression != RAW) {
+      throw new IllegalArgumentException("Missing originalLength for the " + compression + " compression.");
+    }
+    Payload payload = Payload.read(request.getInputStream(), request.getContentLength(), compression,
+        originalLength == null ? 0 : originalLength);
+    return originalLength == null ? Payload.raw(payload.getData()) : payload;
+  }
+
   ModelAndView get(ModelMap model, long id) {
     String viewName = valueName.toLowerCase();
     model.addAttribute(viewName, getRecord(id));
@@ -16,10 +16,14 @@
 
 package io.rainfall.store.controllers;
 
+import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
 import io.rainfall.store.dataset.JobDataset;
 import io.rainfall.store.dataset.JobRecord;
+import io.rainfall.store.dataset.OutputLogDataset;
 import io.rainfall.store.dataset.RunRecord;
 import io.rainfall.store.values.Job;
+import io.rainfall.store.values.OutputLog;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -27,13 +31,25 @@ import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.servlet.ModelAndView;
 
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import javax.servlet.http.HttpServletRequest;
+
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
 @Controller
 @SuppressWarnings("unused")
 public class JobController extends ChildController<Job, JobRecord, RunRecord, JobDataset> {
 
+  @Autowired
+  private OutputLogDataset outputLogDataset;
+
   @Autowired
   JobController(JobDataset dataset) {
     super(dataset, "Job", "/jobs");
@@ -44,6 +60,34 @@ public class JobController extends ChildController<Job, JobRecord, RunRecord, Jo
     return super.post(runId, job);
   }
 
+  /**
+   * Save a job along with all its output logs, uploaded in a single request
+   * framed as by {@link ClientJobBatch#write}, and saved as they are read.
+   * Either all of them are saved or none is.
+   */
+  @Transactional
+  @PostMapping(path = "/batches/{runId}", consumes = APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<?> postJobBatch(@PathVariable long runId,
+                                        HttpServletRequest request) throws IOException {
+    ClientJobBatch batch = ClientJobBatch.read(request.getInputStream());
+    ClientJob job = batch.getJob();
+    long id = dataset().save(runId, Job.builder()
+        .clientNumber(job.getClientNumber())
+        .host(job.getHost())
+        .symbolicName(job.getSymbolicName())
+        .details(job.getDetails())
+        .build())
+        .getId();
+    Stream<OutputLog> outputLogs = batch.getOutputs()
+        .map(output -> OutputLog.builder()
+            .operation(output.getOperation())
+            .format(output.getFormat())
+            .payload(output.getPayload())
+            .build());
+    outputLogDataset.saveAll(id, outputLogs, OutputLogController::encodeHlog);
+    return post(id, CREATED);
+  }
+
   @GetMapping({ "/runs/{parentId}/jobs" })
   public ModelAndView getJobsByRunID(ModelMap model, @PathVariable long parentId) {
     return getByParentId(model, parentId);
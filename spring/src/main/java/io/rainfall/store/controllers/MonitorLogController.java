@@ -16,6 +16,7 @@
 
 package io.rainfall.store.controllers;
 
+import io.rainfall.store.data.CompressionFormat;
 import io.rainfall.store.data.CompressionService;
 import io.rainfall.store.data.Payload;
 import io.rainfall.store.dataset.MonitorLogDataset;
@@ -30,13 +31,17 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
 import java.io.IOException;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+
 import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
 
 @Controller
 @SuppressWarnings("unused")
@@ -52,6 +57,27 @@ public class MonitorLogController extends ChildController<
     return super.post(runId, log);
   }
 
+  /**
+   * Save a monitor log whose payload is posted as it was compressed,
+   * rather than encoded in JSON.
+   *
+   * @param originalLength required unless the payload is raw.
+   */
+  @PostMapping(path = "/stats/{runId}", consumes = APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<?> postLog(@PathVariable long runId,
+                                   @RequestParam(required = false) String host,
+                                   @RequestParam(defaultValue = "vmstat") String type,
+                                   @RequestParam(defaultValue = "RAW") CompressionFormat compression,
+                                   @RequestParam(required = false) Integer originalLength,
+                                   HttpServletRequest request) throws IOException {
+    MonitorLog log = MonitorLog.builder()
+        .host(host)
+        .type(type)
+        .payload(readPayload(request, compression, originalLength))
+        .build();
+    return super.post(runId, log);
+  }
+
   @GetMapping({ "/stats/{id}" })
   @ResponseBody
   public String getLog(ModelMap model, @PathVariable long id) throws IOException {
@@ -60,8 +86,7 @@ public class MonitorLogController extends ChildController<
         .map(Record::getValue)
         .orElseThrow(() -> new IllegalStateException("Payload is null for monitor log: " + id));
     CompressionService compressionService = compressionService(payload.getFormat());
-    byte[] data = compressionService.decompress(payload);
-    return Payload.toUtfString(data);
+    return Payload.toUtfString(compressionService.decompressToBuffer(payload));
   }
 
   @GetMapping({ "/runs/{parentId}/stats" })
@@ -16,10 +16,14 @@
 
 package io.rainfall.store.controllers;
 
+import io.rainfall.store.data.ChunkedPayload;
+import io.rainfall.store.data.CompressionFormat;
 import io.rainfall.store.data.Payload;
 import io.rainfall.store.dataset.JobRecord;
 import io.rainfall.store.dataset.OutputLogDataset;
 import io.rainfall.store.dataset.OutputLogRecord;
+import io.rainfall.store.dataset.PayloadDataset;
+import io.rainfall.store.dataset.Record;
 import io.rainfall.store.dataset.RunDataset;
 import io.rainfall.store.hdr.HdrData;
 import io.rainfall.store.hdr.HistogramService;
@@ -27,45 +31,73 @@ import io.rainfall.store.values.ChangeReport;
 import io.rainfall.store.values.Comparison;
 import io.rainfall.store.values.OutputLog;
 import io.rainfall.store.values.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import com.google.gson.Gson;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+
 import static io.rainfall.store.data.CompressionServiceFactory.compressionService;
+import static io.rainfall.store.data.CompressionServiceFactory.hlogService;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
+import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
+import static org.springframework.http.MediaType.TEXT_PLAIN_VALUE;
 
 @Controller
 @SuppressWarnings("unused")
 public class OutputLogController extends ChildController<
     OutputLog, OutputLogRecord, JobRecord, OutputLogDataset> {
 
-  private final HistogramService histogramService = new HistogramService();
+  private static final Logger LOGGER = LoggerFactory.getLogger(OutputLogController.class);
+
+  private static final int N_THREADS = Runtime.getRuntime().availableProcessors();
+
+  private final HistogramService histogramService = new HistogramService(N_THREADS, N_THREADS);
+  private final ExecutorService compareExecutor = Executors.newFixedThreadPool(N_THREADS, compareThreads());
 
   @Autowired
   private RunDataset runDataset;
 
+  @Autowired
+  private PayloadDataset payloadDataset;
+
   @Autowired
   private Gson gson;
 
@@ -73,9 +105,65 @@ public class OutputLogController extends ChildController<
     super(dataset, "Output log", "/outputs");
   }
 
+  private static ThreadFactory compareThreads() {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "rainfall-compare-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    compareExecutor.shutdown();
+    histogramService.shutdown();
+  }
+
   @PostMapping("/outputs/{jobId}")
   public ResponseEntity<?> postRun(@PathVariable long jobId, @RequestBody OutputLog outputLog) {
-    return super.post(jobId, outputLog);
+    long id = dataset().save(jobId, outputLog, payload -> encodeHlog(outputLog, payload))
+        .getId();
+    return post(id, CREATED);
+  }
+
+  /**
+   * Save an output log whose payload is posted as it was compressed,
+   * rather than encoded in JSON.
+   *
+   * @param originalLength required unless the payload is raw.
+   */
+  @PostMapping(path = "/outputs/{jobId}", consumes = APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<?> postRun(@PathVariable long jobId,
+                                   @RequestParam String operation,
+                                   @RequestParam(defaultValue = "hlog") String format,
+                                   @RequestParam(defaultValue = "RAW") CompressionFormat compression,
+                                   @RequestParam(required = false) Integer originalLength,
+                                   HttpServletRequest request) throws IOException {
+    OutputLog outputLog = OutputLog.builder()
+        .operation(operation)
+        .format(format)
+        .payload(readPayload(request, compression, originalLength))
+        .build();
+    return postRun(jobId, outputLog);
+  }
+
+  /**
+   * Store the HDR logs in the HLOG format, in chunks if they are large,
+   * when it's smaller than the uploaded one.
+   * The dataset only calls it for the payloads it doesn't hold yet.
+   */
+  static Payload encodeHlog(OutputLog outputLog, Payload payload) {
+    if (payload == null || !"hlog".equals(outputLog.getFormat())) {
+      return payload;
+    }
+    try {
+      return hlogService(payload.getOriginalLength()).recompress(payload);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Storing the output of operation {} as uploaded, in {}: {}",
+          outputLog.getOperation(), payload.getFormat(), e.getMessage());
+      return payload;
+    }
   }
 
   @GetMapping("/jobs/{parentId}/outputs")
@@ -91,11 +179,35 @@ public class OutputLogController extends ChildController<
     Payload payload = getRecord(id)
         .getPayloadRecord()
         .getValue();
-    byte[] data = uncompress(payload);
-    HdrData hdrData = hdrData(data);
+    HdrData hdrData = histogramService.readHdrData(decompressingSupplier(payload));
     return toJson(hdrData);
   }
 
+  /**
+   * The intervals of an output log which start within a time window, in seconds
+   * relative to the base time of the log, along with the other intervals
+   * of the chunks holding them; the whole log if it isn't chunked.
+   */
+  @GetMapping(value = "/outputs/{id}/intervals", produces = TEXT_PLAIN_VALUE)
+  @ResponseBody
+  public String getOutputIntervals(@PathVariable long id,
+                                   @RequestParam(defaultValue = "0") double from,
+                                   @RequestParam(required = false) Double to) throws IOException {
+    Record<Payload> payloadRecord = getRecord(id)
+        .getPayloadRecord();
+    Optional<ChunkedPayload> chunks = payloadDataset.getChunks(payloadRecord.getId());
+    if (!chunks.isPresent()) {
+      Payload payload = payloadRecord.getValue();
+      return Payload.toUtfString(compressionService(payload.getFormat()).decompressToBuffer(payload));
+    }
+    long fromMillis = (long)(from * 1000);
+    long toMillis = to == null ? Long.MAX_VALUE : (long)(to * 1000);
+    try (InputStream is = chunks.get()
+        .decompressingStream(fromMillis, toMillis, ForkJoinPool.commonPool(), N_THREADS)) {
+      return StreamUtils.copyToString(is, UTF_8);
+    }
+  }
+
   @GetMapping(value = "/runs/{runId}/aggregate/{operation}", produces = APPLICATION_JSON_UTF8_VALUE)
   @ResponseBody
   public String getAggregateHdrData(@PathVariable long runId,
@@ -105,11 +217,12 @@ public class OutputLogController extends ChildController<
   }
 
   private HdrData getHdrData(long runId, String operation) {
-    List<Payload> records = dataset()
-        .findOutputLogsByRunIdAndOperation(runId, operation);
+    return aggregateHdrData(dataset().findOutputLogsByRunIdAndOperation(runId, operation));
+  }
+
+  private HdrData aggregateHdrData(List<Payload> records) {
     List<Supplier<InputStream>> suppliers = records.stream()
-        .map(this::uncompress)
-        .map(this::streamSupplier)
+        .map(this::decompressingSupplier)
         .collect(toList());
     return histogramService.aggregateHdrData(suppliers);
   }
@@ -119,43 +232,48 @@ public class OutputLogController extends ChildController<
   public String getComparativeHdrData(@PathVariable String sids,
                                       @PathVariable String operation) {
     long[] ids = parseIds(sids);
-    Map<Long, HdrData> runs = LongStream.of(ids)
+    Map<Long, CompletableFuture<HdrData>> runs = LongStream.of(ids)
         .boxed()
         .collect(toMap(
             Function.identity(),
-            id -> getHdrData(id, operation),
+            id -> supplyAsync(() -> getHdrData(id, operation), compareExecutor),
             (id1, id2) -> id1,
             LinkedHashMap::new
         ));
-    Map<Pair, Double> pvalues = IntStream.range(0, ids.length)
+    Map<Pair, CompletableFuture<Double>> pvalues = IntStream.range(0, ids.length)
         .boxed()
         .flatMap(i -> IntStream.range(i + 1, ids.length)
             .mapToObj(j -> new Pair(ids[i], ids[j]))
         )
         .collect(toMap(Function.identity(), pair -> {
-          HdrData idata = runs.get(pair.getLeft());
-          HdrData jdata = runs.get(pair.getRight());
-          return histogramService.comparePercentiles(idata, jdata);
+          CompletableFuture<HdrData> idata = runs.get(pair.getLeft());
+          CompletableFuture<HdrData> jdata = runs.get(pair.getRight());
+          return idata.thenCombine(jdata, histogramService::comparePercentiles);
         }));
-    Comparison comparison = new Comparison(runs, pvalues);
+    Comparison comparison = new Comparison(joinAll(runs), joinAll(pvalues));
     return toJson(comparison);
   }
 
-  private byte[] uncompress(Payload payload) {
+  private static <K, V> Map<K, V> joinAll(Map<K, CompletableFuture<V>> futures) {
+    Map<K, V> values = new LinkedHashMap<>(futures.size());
     try {
-      return compressionService(payload.getFormat())
-          .decompress(payload);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+      futures.forEach((key, future) -> values.put(key, future.join()));
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException)cause : e;
     }
+    return values;
   }
 
-  private Supplier<InputStream> streamSupplier(byte[] bytes) {
-    return () -> new ByteArrayInputStream(bytes);
-  }
-
-  private HdrData hdrData(byte[] data) {
-    return histogramService.readHdrData(() -> new ByteArrayInputStream(data));
+  private Supplier<InputStream> decompressingSupplier(Payload payload) {
+    return () -> {
+      try {
+        return compressionService(payload.getFormat())
+            .decompressingStream(payload);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    };
   }
 
   @GetMapping(value = "/runs/{runId}/operations", produces = APPLICATION_JSON_UTF8_VALUE)
@@ -186,21 +304,29 @@ public class OutputLogController extends ChildController<
     return toJson(regressionCheck);
   }
 
+  /**
+   * The output logs of each operation are read by the request, along with
+   * its transaction if any, and the operations compared in parallel
+   * on the comparison threads.
+   */
   private ChangeReport getChangeReport(Long baselineID, long runId, double threshold) {
     List<String> operations = dataset().findOperationsByRunId(runId);
-    Map<String, Double> pvalues = operations.stream()
-        .collect(toMap(Function.identity(), op ->
-            compareHdrToBaseline(baselineID, runId, op)));
-    Map<String, Double> belowThreshold = pvalues.entrySet()
+    Map<String, CompletableFuture<Double>> futures = operations.stream()
+        .collect(toMap(Function.identity(), op -> {
+          List<Payload> baselineLogs = dataset().findOutputLogsByRunIdAndOperation(baselineID, op);
+          List<Payload> logs = dataset().findOutputLogsByRunIdAndOperation(runId, op);
+          return supplyAsync(() -> compareHdrToBaseline(baselineLogs, logs), compareExecutor);
+        }));
+    Map<String, Double> belowThreshold = joinAll(futures).entrySet()
         .stream()
         .filter(e -> e.getValue() < threshold)
         .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
     return new ChangeReport(baselineID, threshold, belowThreshold);
   }
 
-  private double compareHdrToBaseline(long baselineID, long runID, String op) {
-    HdrData baselineData = getHdrData(baselineID, op);
-    HdrData hdrData = getHdrData(runID, op);
+  private double compareHdrToBaseline(List<Payload> baselineLogs, List<Payload> logs) {
+    HdrData baselineData = aggregateHdrData(baselineLogs);
+    HdrData hdrData = aggregateHdrData(logs);
     return histogramService.comparePercentiles(baselineData, hdrData);
   }
 
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2014-2019 Aurélien Broszniowski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rainfall.store.controllers;
+
+import io.rainfall.store.dataset.PayloadDataset;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.google.gson.Gson;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
+
+@Controller
+@SuppressWarnings("unused")
+public class PayloadController {
+
+  private final PayloadDataset dataset;
+
+  @Autowired
+  private Gson gson;
+
+  PayloadController(PayloadDataset dataset) {
+    this.dataset = dataset;
+  }
+
+  /**
+   * The payloads stored once per content, and the logs referencing them.
+   */
+  @GetMapping(value = "/payloads/stats", produces = APPLICATION_JSON_UTF8_VALUE)
+  @ResponseBody
+  public String getPayloadStats() {
+    return gson.toJson(dataset.getStats());
+  }
+}
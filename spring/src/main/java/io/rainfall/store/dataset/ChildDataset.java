@@ -2,7 +2,11 @@ package io.rainfall.store.dataset;
 
 import lombok.NonNull;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public abstract class ChildDataset<
     V,
@@ -21,15 +25,41 @@ public abstract class ChildDataset<
   }
 
   public CR save(long parentId, V value) {
-    PR parent = parentRepository.findById(parentId)
-        .orElseThrow(() -> new IllegalArgumentException("Parent ID not found: " + parentId));
-    CR created = create(parent, value);
+    return save(parentId, parent -> create(parent, value));
+  }
+
+  CR save(long parentId, Function<PR, CR> creator) {
+    PR parent = findParent(parentId);
+    CR created = creator.apply(parent);
     CR saved = saveRecord(created);
     addChild(parent, saved);
     parentRepository.save(parent);
     return saved;
   }
 
+  /**
+   * Save children of the same parent as they are read, each one flushed and
+   * detached before the next, so that they are not all held at once.
+   * The children own the relation, so they are not added to the parent.
+   *
+   * @return the number of children saved.
+   */
+  long saveEach(long parentId, Stream<V> values, BiFunction<PR, V, CR> creator) {
+    findParent(parentId);
+    long saved = 0;
+    for (Iterator<V> it = values.iterator(); it.hasNext(); saved++) {
+      saveRecord(creator.apply(findParent(parentId), it.next()));
+      entityManager().flush();
+      entityManager().clear();
+    }
+    return saved;
+  }
+
+  private PR findParent(long parentId) {
+    return parentRepository.findById(parentId)
+        .orElseThrow(() -> new IllegalArgumentException("Parent ID not found: " + parentId));
+  }
+
   abstract CR create(PR parent, V value);
 
   abstract void addChild(PR parent, CR child);
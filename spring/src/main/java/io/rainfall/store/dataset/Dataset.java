@@ -6,12 +6,18 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
 @Transactional
 @NoRepositoryBean
 public abstract class Dataset<R extends Record<?>, S extends RecordRepository<R>> {
 
   private final S repository;
 
+  @PersistenceContext
+  private EntityManager entityManager;
+
   @Autowired
   Dataset(S repository) {
     this.repository = repository;
@@ -32,4 +38,8 @@ public abstract class Dataset<R extends Record<?>, S extends RecordRepository<R>
   S repository() {
     return repository;
   }
+
+  EntityManager entityManager() {
+    return entityManager;
+  }
 }
@@ -1,8 +1,13 @@
 package io.rainfall.store.dataset;
 
+import io.rainfall.store.data.Payload;
 import io.rainfall.store.values.Log;
 import lombok.NonNull;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 abstract class LogDataset<
     V extends Log,
@@ -12,20 +17,76 @@ abstract class LogDataset<
     PS extends RecordRepository<PR>
     > extends ChildDataset<V, CR, CS, PR, PS> {
 
+  @NonNull
+  private final PayloadDataset payloadDataset;
+
   @NonNull
   private final PayloadRepository payloadRepository;
 
   LogDataset(@NonNull CS repository, @NonNull PS parentRepository,
-             @NonNull PayloadRepository payloadRepository) {
+             @NonNull PayloadDataset payloadDataset) {
     super(repository, parentRepository);
-    this.payloadRepository = payloadRepository;
+    this.payloadDataset = payloadDataset;
+    this.payloadRepository = payloadDataset.repository();
+  }
+
+  /**
+   * Save a log, re-encoding its payload unless the same content is already stored.
+   *
+   * @param encoder applied to the payload as uploaded.
+   */
+  public CR save(long parentId, V value, UnaryOperator<Payload> encoder) {
+    return save(parentId, parent -> create(parent, value, encoder));
+  }
+
+  /**
+   * Save several logs of the same parent as they are read, re-encoding
+   * their payloads unless the same contents are already stored.
+   *
+   * @param encoder applied to the payload of each log as uploaded.
+   * @return the number of logs saved.
+   */
+  public long saveAll(long parentId, Stream<V> values, BiFunction<V, Payload, Payload> encoder) {
+    return saveEach(parentId, values,
+        (parent, value) -> create(parent, value, payload -> encoder.apply(value, payload)));
   }
 
   @Override
   CR create(PR parent, V value) {
-    PayloadRecord payloadRecord = new PayloadRecord(value.getPayload());
-    payloadRepository.save(payloadRecord);
-    return create(parent, value, payloadRecord);
+    return create(parent, value, UnaryOperator.identity());
+  }
+
+  /**
+   * A new payload is committed at once, unreferenced, so that a concurrent first upload
+   * of the same content fails on its unique hash rather than duplicating it, and
+   * references the payload stored by the other one. The reference of the log is
+   * then added along with it, so that it isn't counted if the log isn't saved.
+   */
+  private CR create(PR parent, V value, UnaryOperator<Payload> encoder) {
+    Payload payload = value.getPayload();
+    String contentHash = payload.contentHash();
+    if (!payloadRepository.findFirstByContentHash(contentHash).isPresent()) {
+      try {
+        payloadDataset.insert(new PayloadRecord(encoder.apply(payload), contentHash));
+      } catch (DataIntegrityViolationException e) {
+        // stored by a concurrent upload, referenced below
+      }
+    }
+    if (payloadRepository.addReference(contentHash) == 0) {
+      throw new IllegalStateException("Payload not found: " + contentHash);
+    }
+    return create(parent, value, referenced(contentHash));
+  }
+
+  /**
+   * The reference was added in the database, so the record is refreshed
+   * in case an older count of it is held.
+   */
+  private PayloadRecord referenced(String contentHash) {
+    PayloadRecord payloadRecord = payloadRepository.findFirstByContentHash(contentHash)
+        .orElseThrow(() -> new IllegalStateException("Payload not found: " + contentHash));
+    entityManager().refresh(payloadRecord);
+    return payloadRecord;
   }
 
   abstract CR create(PR parent, V value, PayloadRecord payloadRecord);
@@ -8,13 +8,13 @@ import lombok.NonNull;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.MappedSuperclass;
-import javax.persistence.OneToOne;
+import javax.persistence.ManyToOne;
 
 @MappedSuperclass
 @NoArgsConstructor(access = AccessLevel.PACKAGE)
 class LogRecord<V, P extends Record<?>> extends ChildRecord<V, P> {
 
-  @OneToOne(fetch = FetchType.EAGER)
+  @ManyToOne(fetch = FetchType.EAGER)
   @JoinColumn(name = "payload_id", nullable = false)
   @NonNull
   private PayloadRecord payloadRecord;
@@ -17,8 +17,8 @@ public class MonitorLogDataset extends LogDataset<
 
   MonitorLogDataset(@NonNull MonitorLogRepository repository,
                     @NonNull RunRepository parentRepository,
-                    @NonNull PayloadRepository payloadRepository) {
-    super(repository, parentRepository, payloadRepository);
+                    @NonNull PayloadDataset payloadDataset) {
+    super(repository, parentRepository, payloadDataset);
   }
 
   @Override
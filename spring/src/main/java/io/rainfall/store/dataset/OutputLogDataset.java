@@ -8,6 +8,8 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 import java.util.Set;
 
+import static java.util.stream.Collectors.toList;
+
 @Component
 public class OutputLogDataset extends LogDataset<
     OutputLog,
@@ -18,8 +20,8 @@ public class OutputLogDataset extends LogDataset<
 
   OutputLogDataset(@NonNull OutputLogRepository repository,
                    @NonNull JobRepository parentRepository,
-                   @NonNull PayloadRepository payloadRepository) {
-    super(repository, parentRepository, payloadRepository);
+                   @NonNull PayloadDataset payloadDataset) {
+    super(repository, parentRepository, payloadDataset);
   }
 
   @Override
@@ -41,7 +43,10 @@ public class OutputLogDataset extends LogDataset<
   }
 
   public List<Payload> findOutputLogsByRunIdAndOperation(long runId, String operation) {
-    return repository().findOutputLogsByRunIdAndOperation(runId, operation);
+    return repository().findOutputLogsByRunIdAndOperation(runId, operation)
+        .stream()
+        .map(PayloadRecord::getValue)
+        .collect(toList());
   }
 
   public Set<String> findCommonOperationsForRuns(long... runIds) {
@@ -1,6 +1,5 @@
 package io.rainfall.store.dataset;
 
-import io.rainfall.store.data.Payload;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -18,12 +17,12 @@ interface OutputLogRepository extends ChildRepository<OutputLogRecord> {
   List<String> findOperationsByRunId(@Param("runId") long runId);
 
   @Query(
-      value = "select r.payloadRecord.value " +
+      value = "select r.payloadRecord " +
               "from OutputLogRecord r " +
               "inner join JobRecord j on r.parent.id = j.id " +
               "where j.parent.id = :runId and r.value.operation = :op"
   )
-  List<Payload> findOutputLogsByRunIdAndOperation(@Param("runId") long runId, @Param("op") String operation);
+  List<PayloadRecord> findOutputLogsByRunIdAndOperation(@Param("runId") long runId, @Param("op") String operation);
 
   /**
    * select distinct operation
@@ -0,0 +1,45 @@
+package io.rainfall.store.dataset;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+/**
+ * A compressed chunk of a chunked payload, stored apart from its index,
+ * so that a time window of the payload is read without the other chunks.
+ */
+@Entity
+@Table(name = "payload_chunk")
+@NoArgsConstructor(access = AccessLevel.PACKAGE)
+@Getter(AccessLevel.PACKAGE)
+class PayloadChunkRecord {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "payload_id", nullable = false)
+  private PayloadRecord payload;
+
+  private int chunkIndex;
+
+  @Column(columnDefinition = "BLOB")
+  private byte[] data;
+
+  PayloadChunkRecord(PayloadRecord payload, int chunkIndex, byte[] data) {
+    this.payload = payload;
+    this.chunkIndex = chunkIndex;
+    this.data = data;
+  }
+}
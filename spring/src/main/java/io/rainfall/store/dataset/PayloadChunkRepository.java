@@ -0,0 +1,15 @@
+package io.rainfall.store.dataset;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+interface PayloadChunkRepository extends CrudRepository<PayloadChunkRecord, Long> {
+
+  Optional<PayloadChunkRecord> findByPayloadIdAndChunkIndex(long payloadId, int chunkIndex);
+
+  @Query("SELECT SUM(LENGTH(c.data)), SUM(LENGTH(c.data) * c.payload.refCount) FROM PayloadChunkRecord c")
+  List<Object[]> findStats();
+}
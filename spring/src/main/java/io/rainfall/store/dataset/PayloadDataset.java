@@ -0,0 +1,66 @@
+package io.rainfall.store.dataset;
+
+import io.rainfall.store.data.ChunkedPayload;
+import io.rainfall.store.record.PayloadStats;
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+@Component
+public class PayloadDataset extends Dataset<PayloadRecord, PayloadRepository> {
+
+  private final PayloadChunkRepository chunkRepository;
+
+  PayloadDataset(@NonNull PayloadRepository repository,
+                 @NonNull PayloadChunkRepository chunkRepository) {
+    super(repository);
+    this.chunkRepository = chunkRepository;
+  }
+
+  public PayloadStats getStats() {
+    Object[] totals = repository().findStats().get(0);
+    Object[] chunkTotals = chunkRepository.findStats().get(0);
+    return new PayloadStats(longValue(totals[0]), longValue(totals[1]),
+        longValue(totals[2]) + longValue(chunkTotals[0]),
+        longValue(totals[3]) + longValue(chunkTotals[1]));
+  }
+
+  /**
+   * Store a new payload in a transaction of its own, committed at once, so that
+   * the first uploads of the same content, racing to store it, fail on its unique
+   * hash without rolling back the transactions of their logs.
+   */
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public void insert(PayloadRecord record) {
+    repository().saveAndFlush(record);
+  }
+
+  /**
+   * @return the chunks of a chunked payload, each read from its row
+   * only as it is decompressed, or empty if the payload isn't chunked.
+   */
+  public Optional<ChunkedPayload> getChunks(long payloadId) {
+    return getRecord(payloadId)
+        .filter(record -> record.getChunkCount() > 0)
+        .map(record -> {
+          try {
+            return ChunkedPayload.of(record.getIndex(), chunk -> chunkRepository
+                .findByPayloadIdAndChunkIndex(payloadId, chunk)
+                .map(chunkRecord -> ByteBuffer.wrap(chunkRecord.getData()))
+                .orElseThrow(() -> new IOException("Missing chunk " + chunk + " of payload " + payloadId)));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  private static long longValue(Object total) {
+    return total == null ? 0L : ((Number)total).longValue();
+  }
+}
@@ -1,15 +1,36 @@
 package io.rainfall.store.dataset;
 
+import io.rainfall.store.data.ChunkedPayload;
 import io.rainfall.store.data.Payload;
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.persistence.AttributeOverride;
 import javax.persistence.AttributeOverrides;
+import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.OneToMany;
+import javax.persistence.OrderBy;
 import javax.persistence.Table;
 
+import static io.rainfall.store.data.CompressionFormat.CHUNKED;
+
+/**
+ * A payload stored once per content hash of the uploads,
+ * with the number of logs referencing it.
+ * <p>
+ * Only the index of a chunked payload is stored in the record,
+ * and its chunks in their own rows.
+ */
 @Entity
 @Table(name = "payload")
 @AttributeOverrides({
@@ -17,9 +38,83 @@ import javax.persistence.Table;
     @AttributeOverride(name = "value.data", column = @Column(columnDefinition = "BLOB"))
 })
 @NoArgsConstructor(access = AccessLevel.PACKAGE)
+@Getter(AccessLevel.PUBLIC)
 public class PayloadRecord extends Record<Payload> {
 
-  PayloadRecord(Payload value) {
-    super(value);
+  @Column(length = 64, unique = true)
+  private String contentHash;
+
+  private int refCount;
+
+  private int chunkCount;
+
+  @OneToMany(mappedBy = "payload", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+  @OrderBy("chunkIndex")
+  @Getter(AccessLevel.NONE)
+  private List<PayloadChunkRecord> chunks = new ArrayList<>();
+
+  /**
+   * The record is referenced by no log yet: each log saved with it adds its reference.
+   *
+   * @param value persisted as an array, copied if it holds a buffer.
+   */
+  PayloadRecord(Payload value, String contentHash) {
+    this(value, value.getFormat() == CHUNKED ? chunked(value) : null, contentHash);
+  }
+
+  private PayloadRecord(Payload value, ChunkedPayload chunked, String contentHash) {
+    super(chunked == null ? value.toArrayBacked() : chunked.index().toArrayBacked());
+    this.contentHash = contentHash;
+    if (chunked != null) {
+      for (int i = 0; i < chunked.getChunkCount(); i++) {
+        chunks.add(new PayloadChunkRecord(this, i, bytes(chunk(chunked, i))));
+      }
+      this.chunkCount = chunks.size();
+    }
+  }
+
+  /**
+   * @return the whole payload, with the chunks of a chunked one joined to its index.
+   */
+  @Override
+  public Payload getValue() {
+    if (chunkCount == 0) {
+      return super.getValue();
+    }
+    try {
+      return ChunkedPayload.of(super.getValue(), chunk -> ByteBuffer.wrap(chunks.get(chunk).getData()))
+          .join();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return the index of a chunked payload.
+   */
+  Payload getIndex() {
+    return super.getValue();
+  }
+
+  private static ChunkedPayload chunked(Payload payload) {
+    try {
+      return ChunkedPayload.of(payload);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static ByteBuffer chunk(ChunkedPayload chunked, int chunk) {
+    try {
+      return chunked.chunk(chunk);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
   }
 }
@@ -1,5 +1,27 @@
 package io.rainfall.store.dataset;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
 interface PayloadRepository extends RecordRepository<PayloadRecord> {
 
+  Optional<PayloadRecord> findFirstByContentHash(String contentHash);
+
+  /**
+   * Count one more reference in the database, so that concurrent
+   * uploads of the same content don't lose any.
+   *
+   * @return the number of payloads updated, 0 if none has the hash yet.
+   */
+  @Modifying(flushAutomatically = true)
+  @Query("UPDATE PayloadRecord p SET p.refCount = p.refCount + 1 WHERE p.contentHash = :contentHash")
+  int addReference(@Param("contentHash") String contentHash);
+
+  @Query("SELECT COUNT(p), SUM(p.refCount), SUM(LENGTH(p.value.data)), SUM(LENGTH(p.value.data) * p.refCount) " +
+         "FROM PayloadRecord p")
+  List<Object[]> findStats();
 }
@@ -1,5 +1,6 @@
 drop table monitor_log;
 drop table output_log;
+drop table payload_chunk;
 drop table payload;
 drop table job;
 drop table run;
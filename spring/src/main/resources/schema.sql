@@ -54,10 +54,28 @@ create table payload (
     data MEDIUMBLOB,
     compression_format integer,
     original_length integer not null,
+    content_hash varchar(64),
+    ref_count integer not null default 1,
+    chunk_count integer not null default 0,
 
     primary key (id)
 );
 
+create unique index payload_content_hash on payload(content_hash);
+
+create table payload_chunk (
+    id bigint not null auto_increment,
+    payload_id bigint not null,
+    chunk_index integer not null,
+
+    data MEDIUMBLOB,
+
+    primary key (id),
+    foreign key (payload_id) references payload(id) on delete cascade
+);
+
+create unique index payload_chunk_index on payload_chunk(payload_id, chunk_index);
+
 create table output_log (
     id bigint not null auto_increment,
     parent_id bigint not null,
@@ -16,12 +16,19 @@
 
 package io.rainfall.store.controllers;
 
+import io.rainfall.store.core.ClientJob;
+import io.rainfall.store.core.ClientJobBatch;
+import io.rainfall.store.core.OperationOutput;
+import io.rainfall.store.data.Payload;
 import io.rainfall.store.dataset.CaseDataset;
 import io.rainfall.store.dataset.JobDataset;
+import io.rainfall.store.dataset.JobRecord;
+import io.rainfall.store.dataset.OutputLogRecord;
 import io.rainfall.store.dataset.Record;
 import io.rainfall.store.dataset.RunDataset;
 import io.rainfall.store.values.Case;
 import io.rainfall.store.values.Job;
+import io.rainfall.store.values.OutputLog;
 import io.rainfall.store.values.Run;
 import org.hamcrest.Matcher;
 import org.junit.Before;
@@ -33,12 +40,17 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.ByteArrayOutputStream;
+
 import static io.rainfall.store.values.Run.Status.INCOMPLETE;
 import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.text.MatchesPattern.matchesPattern;
 import static org.junit.Assert.assertThat;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -113,6 +125,53 @@ public class JobControllerIT extends ControllerIT {
     assertThat(saved, is(job));
   }
 
+  @Transactional
+  @Test
+  public void testPostJobBatch() throws Exception {
+    ClientJobBatch batch = ClientJobBatch.builder()
+        .job(ClientJob.builder()
+            .clientNumber(job.getClientNumber())
+            .host(job.getHost())
+            .symbolicName(job.getSymbolicName())
+            .details(job.getDetails())
+            .build())
+        .output(output("GET"))
+        .output(output("MISS"))
+        .build();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    batch.write(body);
+    RequestBuilder post = post("/batches/" + runId)
+        .contentType(APPLICATION_OCTET_STREAM)
+        .content(body.toByteArray());
+    MockHttpServletResponse response = mvc.perform(post)
+        .andExpect(status().isCreated())
+        .andReturn()
+        .getResponse();
+    long jobId = Long.valueOf(response.getContentAsString());
+    assertThat(
+        response.getHeader("Location"),
+        matchesPattern(".*/jobs/" + jobId)
+    );
+    JobRecord saved = jobDataset.getRecord(jobId)
+        .orElseThrow(AssertionError::new);
+    assertThat(saved.getValue(), is(job));
+    assertThat(saved.getParent().getId(), is(runId));
+    assertThat(saved.getOutputLogs()
+            .stream()
+            .map(OutputLogRecord::getValue)
+            .map(OutputLog::getOperation)
+            .collect(toList()),
+        containsInAnyOrder("GET", "MISS"));
+  }
+
+  private static OperationOutput output(String operation) {
+    return OperationOutput.builder()
+        .operation(operation)
+        .format("hlog")
+        .payload(Payload.raw("data"))
+        .build();
+  }
+
   @Transactional
   @Test
   public void testGetJobByRunID() throws Exception {
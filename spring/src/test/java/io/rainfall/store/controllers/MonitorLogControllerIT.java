@@ -41,6 +41,7 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.text.MatchesPattern.matchesPattern;
 import static org.junit.Assert.assertThat;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -114,6 +115,28 @@ public class MonitorLogControllerIT extends ControllerIT {
     assertThat(saved, is(log));
   }
 
+  @Transactional
+  @Test
+  public void testPostLogAsOctetStream() throws Exception {
+    Payload payload = log.getPayload();
+    RequestBuilder post = post("/stats/" + runId)
+        .contentType(APPLICATION_OCTET_STREAM)
+        .param("host", log.getHost())
+        .param("type", log.getType())
+        .param("compression", payload.getFormat().name())
+        .param("originalLength", String.valueOf(payload.getOriginalLength()))
+        .content(payload.getData());
+    MockHttpServletResponse response = mvc.perform(post)
+        .andExpect(status().isCreated())
+        .andReturn()
+        .getResponse();
+    long logId = Long.valueOf(response.getContentAsString());
+    MonitorLog saved = logDataset.getRecord(logId)
+        .map(Record::getValue)
+        .orElse(null);
+    assertThat(saved, is(log));
+  }
+
   @Transactional
   @Test
   public void testGetLog() throws Exception {
@@ -54,6 +54,7 @@ import static io.rainfall.store.hdr.Percentile.MAX;
 import static io.rainfall.store.hdr.Percentile.MEDIAN;
 import static io.rainfall.store.values.Run.Status.INCOMPLETE;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
@@ -64,6 +65,7 @@ import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.text.MatchesPattern.matchesPattern;
 import static org.junit.Assert.assertThat;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -154,6 +156,28 @@ public class OutputLogControllerIT extends ControllerIT {
     assertThat(saved.getOperation(), is(outputLog.getOperation()));
   }
 
+  @Transactional
+  @Test
+  public void testPostOutputLogAsOctetStream() throws Exception {
+    byte[] data = "raw data".getBytes(UTF_8);
+    RequestBuilder post = post("/outputs/" + jobId)
+        .contentType(APPLICATION_OCTET_STREAM)
+        .param("operation", "GET")
+        .param("format", "csv")
+        .content(data);
+    MockHttpServletResponse response = mvc.perform(post)
+        .andExpect(status().isCreated())
+        .andReturn()
+        .getResponse();
+    long outputId = Long.valueOf(response.getContentAsString());
+    OutputLog saved = outputLogDataset.getRecord(outputId)
+        .map(Record::getValue)
+        .orElseThrow(AssertionError::new);
+    assertThat(saved.getFormat(), is("csv"));
+    assertThat(saved.getOperation(), is("GET"));
+    assertThat(saved.getPayload(), is(Payload.raw(data)));
+  }
+
   @Transactional
   @Test
   public void testListOutputLogsByJobId() throws Exception {
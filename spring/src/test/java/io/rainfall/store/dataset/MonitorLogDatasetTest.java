@@ -13,6 +13,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.transaction.AfterTransaction;
 
 import java.io.IOException;
 import java.util.List;
@@ -41,6 +42,9 @@ public class MonitorLogDatasetTest {
   @Autowired
   private MonitorLogDataset logDataset;
 
+  @Autowired
+  private PayloadRepository payloadRepository;
+
   private final Run run = Run.builder()
       .status(INCOMPLETE)
       .version("1.1.1.1")
@@ -48,6 +52,14 @@ public class MonitorLogDatasetTest {
       .className("my.Class")
       .build();
 
+  /**
+   * The new payloads are committed apart from the test transaction.
+   */
+  @AfterTransaction
+  public void deletePayloads() {
+    payloadRepository.deleteAll();
+  }
+
   @Test
   public void testSaveWithNonExistentParent() {
     MonitorLog value = MonitorLog.builder()
@@ -2,7 +2,9 @@ package io.rainfall.store.dataset;
 
 import io.rainfall.store.RainfallStoreApp;
 import io.rainfall.store.Utils;
+import io.rainfall.store.data.ChunkedPayload;
 import io.rainfall.store.data.Payload;
+import io.rainfall.store.record.PayloadStats;
 import io.rainfall.store.values.Case;
 import io.rainfall.store.values.Job;
 import io.rainfall.store.values.OutputLog;
@@ -11,16 +13,28 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.transaction.AfterTransaction;
+import org.springframework.util.StreamUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
+import static io.rainfall.store.data.CompressionFormat.LZ4;
+import static io.rainfall.store.data.CompressionServiceFactory.chunkedService;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.instanceOf;
@@ -47,6 +61,15 @@ public class OutputLogDatasetTest {
   @Autowired
   private OutputLogDataset outputLogDataset;
 
+  @Autowired
+  private PayloadDataset payloadDataset;
+
+  @Autowired
+  private PayloadRepository payloadRepository;
+
+  @Autowired
+  private TestEntityManager entityManager;
+
   private final Job job = Job.builder()
       .clientNumber(1)
       .host("localhost")
@@ -56,6 +79,14 @@ public class OutputLogDatasetTest {
 
   private long runId;
 
+  /**
+   * The new payloads are committed apart from the test transaction.
+   */
+  @AfterTransaction
+  public void deletePayloads() {
+    payloadRepository.deleteAll();
+  }
+
   @Test
   public void testSaveWithNonExistentParent() {
     OutputLog value = OutputLog.builder()
@@ -98,6 +129,101 @@ public class OutputLogDatasetTest {
     assertThat(payloadFound, is(payload));
   }
 
+  @Test
+  public void testSaveChunkedPayload() throws IOException {
+    long parentId = saveParent();
+    Payload payload = Utils.readBytes("150.hlog");
+    Payload chunked = chunkedService(LZ4, 64 * 1024).compress(payload.getData());
+    OutputLogRecord record = outputLogDataset.save(parentId, forOp("GET"), p -> chunked);
+    long payloadId = record.getPayloadRecord().getId();
+    entityManager.flush();
+    entityManager.clear();
+
+    Payload found = outputLogDataset.getRecord(record.getId())
+        .map(OutputLogRecord::getPayloadRecord)
+        .map(Record::getValue)
+        .orElse(null);
+    assertThat(found, is(chunked));
+
+    ChunkedPayload chunks = payloadDataset.getChunks(payloadId)
+        .orElseThrow(AssertionError::new);
+    assertThat(chunks.getChunkCount(), is(ChunkedPayload.of(chunked).getChunkCount()));
+    assertThat(readWindow(chunks), is(readWindow(ChunkedPayload.of(chunked))));
+    assertThat(payloadDataset.getStats(), is(new PayloadStats(1, 1, chunked.dataLength(), chunked.dataLength())));
+  }
+
+  @Test
+  public void testSaveDuplicatePayload() {
+    long parentId = saveParent();
+    AtomicInteger encoded = new AtomicInteger();
+    UnaryOperator<Payload> encoder = payload -> {
+      encoded.incrementAndGet();
+      return payload;
+    };
+    OutputLogRecord first = outputLogDataset.save(parentId, forOp("GET"), encoder);
+    OutputLogRecord second = outputLogDataset.save(parentId, forOp("MISS"), encoder);
+
+    assertThat(encoded.get(), is(1));
+    assertThat(second.getPayloadRecord().getId(), is(first.getPayloadRecord().getId()));
+    PayloadRecord payloadRecord = (PayloadRecord)second.getPayloadRecord();
+    assertThat(payloadRecord.getRefCount(), is(2));
+
+    long length = Payload.raw("xxx").getData().length;
+    assertThat(payloadDataset.getStats(), is(new PayloadStats(1, 2, length, 2 * length)));
+  }
+
+  @Test
+  public void testSavePayloadStoredByAnotherUpload() {
+    long parentId = saveParent();
+    Payload payload = Payload.raw("xxx");
+    payloadDataset.insert(new PayloadRecord(payload, payload.contentHash()));
+
+    OutputLogRecord record = outputLogDataset.save(parentId, forOp("GET"), p -> {
+      throw new AssertionError("Encoded again");
+    });
+    PayloadRecord payloadRecord = (PayloadRecord)record.getPayloadRecord();
+    assertThat(payloadRecord.getRefCount(), is(1));
+    assertThat(payloadRecord.getValue(), is(payload));
+  }
+
+  @Test(expected = DataIntegrityViolationException.class)
+  public void testSavePayloadWithDuplicateContentHash() {
+    Payload payload = Payload.raw("xxx");
+    payloadRepository.saveAndFlush(new PayloadRecord(payload, payload.contentHash()));
+    payloadRepository.saveAndFlush(new PayloadRecord(payload, payload.contentHash()));
+  }
+
+  @Test
+  public void testSaveAll() {
+    long parentId = saveParent();
+    AtomicInteger encoded = new AtomicInteger();
+    long saved = outputLogDataset.saveAll(parentId,
+        Stream.of(forOp("GET"), forOp("MISS")),
+        (outputLog, payload) -> {
+          encoded.incrementAndGet();
+          return payload;
+        });
+
+    assertThat(saved, is(2L));
+    assertThat(encoded.get(), is(1));
+    List<OutputLogRecord> children = outputLogDataset.findByParentId(parentId);
+    assertThat(children.stream().map(Record::getValue).map(OutputLog::getOperation).collect(toList()),
+        containsInAnyOrder("GET", "MISS"));
+    JobRecord parentRecord = jobDataset.getRecord(parentId)
+        .orElseThrow(AssertionError::new);
+    assertThat(parentRecord.getOutputLogs(), containsInAnyOrder(children.toArray()));
+  }
+
+  @Test
+  public void testSaveAllWithNonExistentParent() {
+    try {
+      outputLogDataset.saveAll(0L, Stream.of(forOp("GET")), (outputLog, payload) -> payload);
+      fail();
+    } catch (Throwable e) {
+      assertThat(e, instanceOf(IllegalArgumentException.class));
+    }
+  }
+
   @Test
   public void testFindByParentId() {
     long parentId = saveParent();
@@ -166,4 +292,10 @@ public class OutputLogDatasetTest {
         .payload(Payload.raw("xxx"))
         .build();
   }
+
+  private static String readWindow(ChunkedPayload chunks) throws IOException {
+    try (InputStream is = chunks.decompressingStream(600_000, 601_000, ForkJoinPool.commonPool(), 2)) {
+      return StreamUtils.copyToString(is, UTF_8);
+    }
+  }
 }